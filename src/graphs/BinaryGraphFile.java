@@ -0,0 +1,311 @@
+package graphs;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import manager.Settings;
+import processing.core.PVector;
+
+/**
+ * This class reads and writes a compact binary form of a graph and its mapping in one file.
+ * The file holds the vertex ID table, the CSR adjacency arrays, the edge costs, and the vertex
+ * coordinates, so loading it is little more than memory-mapping the file and bulk copying arrays.
+ *
+ * The layout (all big-endian) is:
+ * magic, format version, flags (1 = undirected, 2 = has coordinates), vertex count, arc count,
+ * then ids[vertices], offsets[vertices + 1], targets[arcs], costs[arcs], and xs[vertices], ys[vertices]
+ * if there are coordinates.
+ *
+ * Graphs are usually loaded with forFiles, which reads the binary file next to a text graph file while it
+ * is newer than the text files, and reads the text files (and writes the binary file) when it isn't.
+ *
+ * Running this class converts a text graph and mapping file into a binary file:
+ * BinaryGraphFile [graph file] [mapping file] [output file] (directed)
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class BinaryGraphFile {
+
+	/** The first four bytes of every binary graph file ("GAIG") */
+	private static final int MAGIC = 0x47414947;
+	/** The version of the format this class writes */
+	public static final int FORMAT_VERSION = 1;
+	/** The flag for an undirected graph */
+	private static final int FLAG_UNDIRECTED = 1;
+	/** The flag for a file with vertex coordinates */
+	private static final int FLAG_COORDINATES = 2;
+
+	/** The graph loaded from the file */
+	private final Graph graph;
+	/** The translator loaded from the file (null if the file has no coordinates) */
+	private final Translator translator;
+	/** The CSR snapshot loaded from the file */
+	private final CSRGraph snapshot;
+
+	// This wraps up everything loaded from a file
+	private BinaryGraphFile(Graph graph, Translator translator, CSRGraph snapshot){
+		this.graph = graph;
+		this.translator = translator;
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * A simple getter for the loaded graph.
+	 * @return The graph stored in the file.
+	 */
+	public Graph getGraph(){
+		return graph;
+	}
+
+	/**
+	 * A simple getter for the loaded translator.
+	 * @return The translator stored in the file, or null if the file has no coordinates.
+	 */
+	public Translator getTranslator(){
+		return translator;
+	}
+
+	/**
+	 * A simple getter for the CSR snapshot of the loaded graph. It is up to date with the loaded
+	 * graph (until the graph is changed), and shares its vertex locations with the loaded translator.
+	 * @return The snapshot stored in the file.
+	 */
+	public CSRGraph getSnapshot(){
+		return snapshot;
+	}
+
+	/**
+	 * This loads a graph and its mapping, from the binary file next to the graph file if it is newer than
+	 * both text files, or from the text files if not (writing the binary file for next time).
+	 * Either way the graph remembers the text graph file, so files computed next to it are shared.
+	 * @param graphFile The text graph file.
+	 * @param mapFile The text mapping file.
+	 * @param undirected Whether or not the graph is undirected.
+	 * @return The graph, its translator, and its CSR snapshot.
+	 */
+	public static BinaryGraphFile forFiles(File graphFile, File mapFile, boolean undirected){
+		File f = fileFor(graphFile);
+		if(f.isFile() && (f.lastModified() >= graphFile.lastModified()) && (f.lastModified() >= mapFile.lastModified())){
+			try{
+				BinaryGraphFile stored = read(f);
+				if((stored.graph.isUndirected() == undirected) && (stored.translator != null)){
+					stored.graph.setFile(graphFile);
+					return stored;
+				}
+			} catch(IOException | InvalidGraphFileException e){
+				Settings.fail("Unable to read binary graph file, reading the text files instead!");
+			}
+		}
+		Graph g = new Graph(graphFile, undirected);
+		Translator t = new Translator(g, mapFile);
+		// Don't save a graph that failed to load
+		if(g.getNumberOfVertices() > 0){
+			try{
+				write(g, t, f);
+			} catch(IOException e){
+				Settings.fail("Unable to write binary graph file!");
+			}
+		}
+		return new BinaryGraphFile(g, t, new CSRGraph(g, t));
+	}
+
+	/**
+	 * This gets the file the binary form of a text graph file is stored in.
+	 * @param graphFile The text graph file.
+	 * @return The binary graph file next to it.
+	 */
+	public static File fileFor(File graphFile){
+		return new File(graphFile.getPath() + ".bin");
+	}
+
+	/**
+	 * This writes the given graph and its mapping to a binary file.
+	 * @param g The graph to write.
+	 * @param t The translator for the graph (may be null to leave out coordinates).
+	 * @param f The file to write to.
+	 * @throws IOException If the file can't be written.
+	 */
+	public static void write(Graph g, Translator t, File f) throws IOException{
+		CSRGraph csr = new CSRGraph(g, t);
+		int n = csr.getNumberOfVertices();
+		int flags = (csr.isUndirected() ? FLAG_UNDIRECTED : 0) | (csr.hasCoordinates() ? FLAG_COORDINATES : 0);
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))){
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(flags);
+			out.writeInt(n);
+			out.writeInt(csr.getNumberOfArcs());
+			for(int id : csr.ids)
+				out.writeInt(id);
+			for(int offset : csr.offsets)
+				out.writeInt(offset);
+			for(int target : csr.targets)
+				out.writeInt(target);
+			for(float cost : csr.costs)
+				out.writeFloat(cost);
+			if(csr.hasCoordinates()){
+				for(float x : csr.xs)
+					out.writeFloat(x);
+				for(float y : csr.ys)
+					out.writeFloat(y);
+			}
+		}
+	}
+
+	/**
+	 * This loads a graph, its translator, and its CSR snapshot from a binary file.
+	 * @param f The file to read.
+	 * @return Everything stored in the file.
+	 * @throws IOException If the file can't be read.
+	 * @throws InvalidGraphFileException If the file isn't a binary graph file this version can read.
+	 */
+	public static BinaryGraphFile read(File f) throws IOException{
+		if(!f.isFile())
+			throw new FileNotFoundException(f.getPath());
+		try(RandomAccessFile raf = new RandomAccessFile(f, "r"); FileChannel channel = raf.getChannel()){
+			MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if((bytes.remaining() < 20) || (bytes.getInt() != MAGIC))
+				throw new InvalidGraphFileException("Not a binary graph file: " + f.getPath());
+			int version = bytes.getInt();
+			if(version != FORMAT_VERSION)
+				throw new InvalidGraphFileException("Unsupported binary graph version: " + version);
+			int flags = bytes.getInt();
+			int n = bytes.getInt();
+			int arcs = bytes.getInt();
+			boolean undirected = (flags & FLAG_UNDIRECTED) != 0;
+			boolean coordinates = (flags & FLAG_COORDINATES) != 0;
+			long expected = 4L * (n + (n + 1) + arcs + arcs + (coordinates ? 2 * n : 0));
+			if((n < 0) || (arcs < 0) || (bytes.remaining() != expected))
+				throw new InvalidGraphFileException("Binary graph file is the wrong size: " + f.getPath());
+
+			// Bulk copy the arrays straight out of the mapped file
+			int[] ids = readInts(bytes, n);
+			int[] offsets = readInts(bytes, n + 1);
+			int[] targets = readInts(bytes, arcs);
+			float[] costs = readFloats(bytes, arcs);
+			float[] xs = coordinates ? readFloats(bytes, n) : null;
+			float[] ys = coordinates ? readFloats(bytes, n) : null;
+			if((offsets[0] != 0) || (offsets[n] != arcs))
+				throw new InvalidGraphFileException("Binary graph file has bad edge offsets: " + f.getPath());
+			for(int v = 0 ; v < n ; v++){
+				if(offsets[v + 1] < offsets[v])
+					throw new InvalidGraphFileException("Binary graph file has bad edge offsets: " + f.getPath());
+			}
+
+			// Rebuild the graph objects in index order so indices line up with the snapshot
+			Graph g = new Graph(undirected);
+			g.setFile(f);
+			for(int i = 0 ; i < n ; i++)
+				g.addVertex(new Vertex(ids[i]));
+			for(int v = 0 ; v < n ; v++){
+				for(int e = offsets[v] ; e < offsets[v + 1] ; e++){
+					int w = targets[e];
+					if((w < 0) || (w >= n))
+						throw new InvalidGraphFileException("Binary graph file has a bad edge: " + f.getPath());
+					// Edges can't link a vertex to itself, so a file with one wasn't written from a graph
+					if(w == v)
+						throw new InvalidGraphFileException("Binary graph file has an edge from a vertex to itself: " + f.getPath());
+					// Undirected edges are stored both ways, but only need to be made once
+					if(undirected){
+						if(v < w)
+							g.addLoadedEdge(new UndirectedEdge(g.getVertexAt(v), g.getVertexAt(w), costs[e], false));
+					}
+					else
+						g.addLoadedEdge(new DirectedEdge(g.getVertexAt(v), g.getVertexAt(w), costs[e], false));
+				}
+			}
+
+			// Make sure the graph built matches the arrays: every vertex's row lists each of its edges once, with its cost
+			// (this catches undirected edges stored only one way, and edges stored twice)
+			int[] seen = new int[n];
+			float[] seenCosts = new float[n];
+			Arrays.fill(seen, -1);
+			for(int v = 0 ; v < n ; v++){
+				Vertex vertex = g.getVertexAt(v);
+				if(vertex.edges.size() != offsets[v + 1] - offsets[v])
+					throw new InvalidGraphFileException("Binary graph file's edges don't match each other: " + f.getPath());
+				for(Edge edge : vertex.edges){
+					int w = edge.getOtherVertex(vertex).getIndex();
+					seen[w] = v;
+					seenCosts[w] = edge.getCost();
+				}
+				for(int e = offsets[v] ; e < offsets[v + 1] ; e++){
+					int w = targets[e];
+					if((seen[w] != v) || (seenCosts[w] != costs[e]))
+						throw new InvalidGraphFileException("Binary graph file's edges don't match each other: " + f.getPath());
+					// Each edge can only be listed once
+					seen[w] = -1;
+				}
+			}
+
+			Translator t = null;
+			PVector[] locations = null;
+			if(coordinates){
+				t = new Translator(g, xs, ys);
+				locations = new PVector[n];
+				for(int i = 0 ; i < n ; i++)
+					locations[i] = t.localize(g.getVertexAt(i));
+			}
+			CSRGraph csr = new CSRGraph(offsets, targets, costs, ids, xs, ys, locations, undirected, g.getVersion());
+			return new BinaryGraphFile(g, t, csr);
+		}
+	}
+
+	/**
+	 * This converts a text graph file and mapping file into a binary graph file.
+	 * @param graphFile The text graph file.
+	 * @param mapFile The text mapping file.
+	 * @param out The binary file to write.
+	 * @param undirected Whether or not the graph is undirected.
+	 * @throws IOException If the binary file can't be written.
+	 */
+	public static void convert(File graphFile, File mapFile, File out, boolean undirected) throws IOException{
+		Graph g = new Graph(graphFile, undirected);
+		Translator t = new Translator(g, mapFile);
+		write(g, t, out);
+	}
+
+	/**
+	 * This converts a text graph and mapping file from the command line into a binary graph file.
+	 * @param args The graph file, mapping file, output file, and optionally "directed".
+	 */
+	public static void main(String[] args){
+		if(args.length < 3)
+			Settings.failAndQuit("Usage: BinaryGraphFile [graph file] [mapping file] [output file] (directed)");
+		boolean undirected = !((args.length > 3) && args[3].equalsIgnoreCase("directed"));
+		try{
+			convert(new File(args[0]), new File(args[1]), new File(args[2]), undirected);
+			Settings.statusMessage("Wrote " + args[2]);
+		} catch(IOException e){
+			Settings.failAndQuit("Unable to write binary graph file!");
+		}
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This copies the given number of ints out of the buffer, moving past them
+	private static int[] readInts(MappedByteBuffer bytes, int count){
+		int[] values = new int[count];
+		bytes.asIntBuffer().get(values);
+		bytes.position(bytes.position() + 4 * count);
+		return values;
+	}
+
+	// This copies the given number of floats out of the buffer, moving past them
+	private static float[] readFloats(MappedByteBuffer bytes, int count){
+		float[] values = new float[count];
+		bytes.asFloatBuffer().get(values);
+		bytes.position(bytes.position() + 4 * count);
+		return values;
+	}
+}
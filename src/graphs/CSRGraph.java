@@ -0,0 +1,295 @@
+package graphs;
+
+import processing.core.PVector;
+
+/**
+ * This class is a frozen, compressed-sparse-row copy of a Graph.
+ * Vertices are referred to by their dense index, and the neighbors of vertex i are stored in
+ * targets[offsets[i]] up to (but not including) targets[offsets[i + 1]], with the cost of each
+ * edge in the same position in costs. This keeps the whole graph in a handful of flat arrays,
+ * which is much smaller and much faster to walk than the Vertex and Edge objects.
+ * A snapshot does not change when the graph it was built from changes, so it remembers the
+ * version of the graph it was made from.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class CSRGraph {
+
+	/** Where each vertex's neighbors start in targets (one extra entry marks the end) */
+	final int[] offsets;
+	/** The neighbor at the end of each edge */
+	final int[] targets;
+	/** The cost of each edge */
+	final float[] costs;
+	/** The ID of the vertex at each index */
+	final int[] ids;
+	/** The x coordinate of each vertex (if a translator was given) */
+	final float[] xs;
+	/** The y coordinate of each vertex (if a translator was given) */
+	final float[] ys;
+	/** The world location of each vertex (if a translator was given) */
+	final PVector[] locations;
+	/** Whether or not the edges go both ways */
+	private final boolean undirected;
+	/** The version of the graph this snapshot was built from */
+	private final int version;
+	/** The same graph with every edge flipped (built when first needed) */
+	private CSRGraph reverse = null;
+
+	/**
+	 * This constructs a snapshot of the given graph, without any coordinates.
+	 * @param g The graph to freeze.
+	 */
+	public CSRGraph(Graph g){
+		this(g, null);
+	}
+
+	/**
+	 * This constructs a snapshot of the given graph, using the translator to record where each vertex is.
+	 * @param g The graph to freeze.
+	 * @param t The translator for the graph (may be null).
+	 */
+	public CSRGraph(Graph g, Translator t){
+		int n = g.getNumberOfVertices();
+		undirected = g.isUndirected();
+		version = g.getVersion();
+		ids = new int[n];
+		offsets = new int[n + 1];
+		// Count the edges leaving each vertex to lay out the rows
+		for(int i = 0 ; i < n ; i++){
+			Vertex v = g.getVertexAt(i);
+			ids[i] = v.getID();
+			offsets[i + 1] = offsets[i] + v.edges.size();
+		}
+		targets = new int[offsets[n]];
+		costs = new float[offsets[n]];
+		// Fill in each row
+		for(int i = 0 ; i < n ; i++){
+			Vertex v = g.getVertexAt(i);
+			int slot = offsets[i];
+			for(Edge e : v.edges){
+				targets[slot] = e.getOtherVertex(v).getIndex();
+				costs[slot] = e.getCost();
+				slot++;
+			}
+		}
+		// Record coordinates if we can
+		if(t != null){
+			xs = new float[n];
+			ys = new float[n];
+			locations = new PVector[n];
+			for(int i = 0 ; i < n ; i++){
+				PVector p = t.localize(g.getVertexAt(i));
+				locations[i] = p;
+				if(p != null){
+					xs[i] = p.x;
+					ys[i] = p.y;
+				}
+			}
+		}
+		else{
+			xs = null;
+			ys = null;
+			locations = null;
+		}
+	}
+
+	/**
+	 * This constructs a snapshot directly from its arrays. The arrays are used as they are, not copied.
+	 * @param offsets Where each vertex's neighbors start in targets, with one extra entry at the end.
+	 * @param targets The neighbor at the end of each edge.
+	 * @param costs The cost of each edge.
+	 * @param ids The ID of the vertex at each index.
+	 * @param xs The x coordinate of each vertex (may be null).
+	 * @param ys The y coordinate of each vertex (may be null).
+	 * @param locations The world location of each vertex (may be null).
+	 * @param undirected Whether or not every edge is stored in both directions.
+	 * @param version The version of the graph these arrays came from.
+	 */
+	CSRGraph(int[] offsets, int[] targets, float[] costs, int[] ids, float[] xs, float[] ys, PVector[] locations, boolean undirected, int version){
+		this.offsets = offsets;
+		this.targets = targets;
+		this.costs = costs;
+		this.ids = ids;
+		this.xs = xs;
+		this.ys = ys;
+		this.locations = locations;
+		this.undirected = undirected;
+		this.version = version;
+	}
+
+	/**
+	 * This gets the number of vertices in the snapshot.
+	 * @return The number of vertices.
+	 */
+	public int getNumberOfVertices(){
+		return ids.length;
+	}
+
+	/**
+	 * This gets the number of stored edges. Undirected edges are stored once for each direction.
+	 * @return The number of entries in the adjacency arrays.
+	 */
+	public int getNumberOfArcs(){
+		return targets.length;
+	}
+
+	/**
+	 * This gets the position of the first neighbor of the given vertex.
+	 * @param v The index of the vertex.
+	 * @return The first position of the vertex's neighbors in the edge arrays.
+	 */
+	public int firstEdge(int v){
+		return offsets[v];
+	}
+
+	/**
+	 * This gets the position just past the last neighbor of the given vertex.
+	 * @param v The index of the vertex.
+	 * @return The position after the last of the vertex's neighbors in the edge arrays.
+	 */
+	public int endEdge(int v){
+		return offsets[v + 1];
+	}
+
+	/**
+	 * This gets the vertex an edge leads to.
+	 * @param edge The position of the edge.
+	 * @return The index of the vertex at the end of the edge.
+	 */
+	public int getTarget(int edge){
+		return targets[edge];
+	}
+
+	/**
+	 * This gets the cost of an edge.
+	 * @param edge The position of the edge.
+	 * @return The cost of traveling the edge.
+	 */
+	public float getCost(int edge){
+		return costs[edge];
+	}
+
+	/**
+	 * This gets the ID of the vertex at the given index.
+	 * @param v The index of the vertex.
+	 * @return The ID of the vertex.
+	 */
+	public int getID(int v){
+		return ids[v];
+	}
+
+	/**
+	 * This will determine if the snapshot knows where its vertices are.
+	 * @return True if the snapshot was built with a translator.
+	 */
+	public boolean hasCoordinates(){
+		return xs != null;
+	}
+
+	/**
+	 * This gets the x coordinate of the given vertex.
+	 * @param v The index of the vertex.
+	 * @return The x coordinate of the vertex.
+	 */
+	public float getX(int v){
+		return xs[v];
+	}
+
+	/**
+	 * This gets the y coordinate of the given vertex.
+	 * @param v The index of the vertex.
+	 * @return The y coordinate of the vertex.
+	 */
+	public float getY(int v){
+		return ys[v];
+	}
+
+	/**
+	 * This gets the world location of the given vertex.
+	 * @param v The index of the vertex.
+	 * @return The location of the vertex.
+	 */
+	public PVector getLocation(int v){
+		return locations[v];
+	}
+
+	/**
+	 * This will determine if this snapshot is undirected.
+	 * @return True if every edge is stored in both directions.
+	 */
+	public boolean isUndirected(){
+		return undirected;
+	}
+
+	/**
+	 * This gets the version of the graph this snapshot was built from.
+	 * @return The graph version at the time of the snapshot.
+	 */
+	public int getVersion(){
+		return version;
+	}
+
+	/**
+	 * This gets the snapshot with every edge flipped, for searching backwards.
+	 * An undirected snapshot is its own reverse.
+	 * @return The reversed snapshot.
+	 */
+	public synchronized CSRGraph reverse(){
+		if(undirected)
+			return this;
+		if(reverse == null){
+			int n = ids.length;
+			int[] rOffsets = new int[n + 1];
+			int[] rTargets = new int[targets.length];
+			float[] rCosts = new float[costs.length];
+			// Count incoming edges for each vertex
+			for(int e = 0 ; e < targets.length ; e++)
+				rOffsets[targets[e] + 1]++;
+			for(int i = 0 ; i < n ; i++)
+				rOffsets[i + 1] += rOffsets[i];
+			// Place each edge in the row of the vertex it leads to
+			int[] fill = new int[n];
+			for(int v = 0 ; v < n ; v++){
+				for(int e = offsets[v] ; e < offsets[v + 1] ; e++){
+					int slot = rOffsets[targets[e]] + fill[targets[e]]++;
+					rTargets[slot] = v;
+					rCosts[slot] = costs[e];
+				}
+			}
+			reverse = new CSRGraph(rOffsets, rTargets, rCosts, ids, xs, ys, locations, false, version);
+			reverse.reverse = this;
+		}
+		return reverse;
+	}
+
+	/**
+	 * This computes a checksum of the vertex IDs, edges, and edge costs, so data computed from a
+	 * snapshot and saved to disk can tell whether it still matches the graph it is loaded with.
+	 * @return A hash of the snapshot's structure.
+	 */
+	public long getChecksum(){
+		long hash = 1125899906842597L;
+		hash = 31 * hash + (undirected ? 1 : 0);
+		for(int id : ids)
+			hash = 31 * hash + id;
+		for(int offset : offsets)
+			hash = 31 * hash + offset;
+		for(int target : targets)
+			hash = 31 * hash + target;
+		for(float cost : costs)
+			hash = 31 * hash + Float.floatToIntBits(cost);
+		return hash;
+	}
+
+	/**
+	 * This gives a rough count of the bytes used by the arrays in this snapshot.
+	 * @return The size of the snapshot in bytes.
+	 */
+	public long getMemoryFootprint(){
+		long bytes = 4L * (offsets.length + targets.length + costs.length + ids.length);
+		if(xs != null)
+			bytes += 4L * (xs.length + ys.length + locations.length);
+		return bytes;
+	}
+}
@@ -1,10 +1,10 @@
 package graphs;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Scanner;
 
 import manager.Settings;
 import processing.core.PApplet;
@@ -21,8 +21,14 @@ public class Graph implements Iterable<Edge>{
 	HashSet<Edge> edges = new HashSet<Edge>();
 	/** A list of all the vertices in the graph. */
 	ArrayList<Vertex> verts = new ArrayList<Vertex>();
+	/** A dictionary from vertex IDs to the vertices in the graph, for constant time look-ups */
+	private HashMap<Integer, Vertex> ids = new HashMap<Integer, Vertex>();
 	/** Whether or not this graph is undirected. */
 	private boolean undirected;
+	/** A counter that goes up every time the graph is changed */
+	private int version = 0;
+	/** The file this graph was loaded from (null if it was built in code) */
+	private File file = null;
 
 	/**
 	 * This constructs a graph from a file.
@@ -31,9 +37,10 @@ public class Graph implements Iterable<Edge>{
 	 */
 	public Graph(File f, boolean undirected) {
 		this.undirected = undirected;
+		this.file = f;
 		try {
 			readFile(f, undirected);
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			Settings.fail("Unable to read graph file!");
 			e.printStackTrace();
 		}
@@ -63,12 +70,48 @@ public class Graph implements Iterable<Edge>{
 		return edges.size();
 	}
 	
+	/**
+	 * This will determine if the graph is undirected.
+	 * @return True if the edges of this graph go both ways.
+	 */
+	public boolean isUndirected(){
+		return undirected;
+	}
+	
+	/**
+	 * This gets the version of the graph. The version changes every time a vertex or edge is
+	 * added or removed, so anything built from the graph can tell when it is out of date.
+	 * @return The current version of the graph.
+	 */
+	public int getVersion(){
+		return version;
+	}
+	
+	/**
+	 * This gets the file the graph was loaded from, so data computed from the graph can be stored next to it.
+	 * @return The graph's file, or null if the graph wasn't loaded from one.
+	 */
+	public File getFile(){
+		return file;
+	}
+	
+	/**
+	 * This records the file the graph was loaded from.
+	 * @param f The graph's file.
+	 */
+	void setFile(File f){
+		file = f;
+	}
+	
 	/**
 	 * This method will add the given vertex to the graph.
 	 * @param v The vertex to add to the graph.
 	 */
 	public void addVertex(Vertex v){
+		v.setIndex(verts.size());
 		verts.add(v);
+		ids.put(v.getID(), v);
+		version++;
 	}
 	
 	/**
@@ -77,6 +120,24 @@ public class Graph implements Iterable<Edge>{
 	 */
 	public void addEdge(Edge e){
 		edges.add(e);
+		version++;
+	}
+	
+	/**
+	 * This method adds a freshly made edge (built without adding itself to its vertices) while loading a graph.
+	 * Only edges that are new to the graph are handed to their vertices, so the vertices don't have to look
+	 * through their own lists for duplicates.
+	 * @param e The edge to add.
+	 * @return True if the edge was new to the graph.
+	 */
+	boolean addLoadedEdge(Edge e){
+		if(!edges.add(e))
+			return false;
+		e.v0.addNewEdge(e);
+		if(e instanceof UndirectedEdge)
+			e.v1.addNewEdge(e);
+		version++;
+		return true;
 	}
 	
 	/**
@@ -85,7 +146,16 @@ public class Graph implements Iterable<Edge>{
 	 * @return True if the given vertex is in the graph.
 	 */
 	public boolean hasVertex(Vertex v){
-		return verts.contains(v);
+		return ids.containsKey(v.getID());
+	}
+	
+	/**
+	 * This will determine if a vertex with the given ID exists in the graph.
+	 * @param id The ID to look for.
+	 * @return True if there is a vertex with the given ID in the graph.
+	 */
+	public boolean hasVertex(int id){
+		return ids.containsKey(id);
 	}
 	
 	/**
@@ -123,9 +193,15 @@ public class Graph implements Iterable<Edge>{
 	 * @return The vertex with the given ID.
 	 */
 	public Vertex getVertex(int id){
-		int index = verts.indexOf(new Vertex(id));
-		if(index < 0)
-			return null;
+		return ids.get(id);
+	}
+	
+	/**
+	 * This method will get the vertex at the given dense index in the graph.
+	 * @param index The index of the vertex, between 0 and the number of vertices.
+	 * @return The vertex with the given index.
+	 */
+	public Vertex getVertexAt(int index){
 		return verts.get(index);
 	}
 	
@@ -148,6 +224,7 @@ public class Graph implements Iterable<Edge>{
 		else
 			((UndirectedEdge) e).getV0().remove(e);
 		e.clear(edges);
+		version++;
 	}
 	
 	/**
@@ -155,8 +232,17 @@ public class Graph implements Iterable<Edge>{
 	 * @param v The vertex to remove (if present in the graph)
 	 */
 	public void removeVertex(Vertex v){
-		verts.remove(v);
-		v.removeFromGraph(edges);
+		Vertex removed = ids.remove(v.getID());
+		if(removed == null)
+			return;
+		int index = removed.getIndex();
+		verts.remove(index);
+		removed.removeFromGraph(edges);
+		removed.setIndex(-1);
+		// Shift the indices of every vertex after the removed one down to keep them dense
+		for(int i = index ; i < verts.size() ; i++)
+			verts.get(i).setIndex(i);
+		version++;
 	}
 	
 	/**
@@ -212,72 +298,52 @@ public class Graph implements Iterable<Edge>{
 	}
 	
 	// This method will read in a file of edges and build the graph accordingly
-	private void readFile(File f, boolean undirected) throws FileNotFoundException{
-		// Try to make a scanner for the file
-		Scanner s = new Scanner(f);
+	private void readFile(File f, boolean undirected) throws IOException{
 		String failMessage = "Each line of the file must specify three in values : Start ID, Destination ID, and Edge cost";
-
-		// Loop while pairs of integers are available in the file
-		while(s.hasNextLine()){
-			String lineText = s.nextLine();
-			Scanner line = new Scanner(lineText);
-			// Make a vertex object from the number
-			
-			if(!line.hasNextInt()){
-				stopReading(line, s, failMessage);
-				return;
+		// Parse the whole file up front
+		MappedFileParser.Rows rows;
+		try{
+			rows = MappedFileParser.parseEdges(f);
+		} catch(InvalidGraphFileException e){
+			stopReading(failMessage + " (" + e.getMessage() + ")");
+			return;
+		}
+		
+		// Build the graph from the parsed rows in file order
+		for(int i = 0 ; i < rows.size ; i++){
+			// Look for each vertex ID in our list of vertices, adding it if it isn't there
+			Vertex start = ids.get(rows.ids[i]);
+			if(start == null){
+				start = new Vertex(rows.ids[i]);
+				addVertex(start);
 			}
-			
-			Vertex start = new Vertex(line.nextInt());
-			
-			// Look for that vertex ID in our list of vertices
-			int index1 = verts.indexOf(start);
-			// If the vertex is in our list already, get it
-			if(index1 >= 0)
-				start = verts.get(index1);
-			// Otherwise add it to the list
-			else 
-				verts.add(start);
-			
-			// Look for a second int, failing if it isn't available
-			if(!line.hasNextInt()){
-				stopReading(line, s, failMessage);
-				return;
+			Vertex dest = ids.get(rows.ints[i]);
+			if(dest == null){
+				dest = new Vertex(rows.ints[i]);
+				addVertex(dest);
 			}
 			
-			// Go through the same look-up/checking process with the second vertex
-			Vertex dest = new Vertex(line.nextInt());
-			int index2 = verts.indexOf(dest);
-			if(index2 >= 0)
-				dest = verts.get(index2);
-			else
-				verts.add(dest);
-			
-			float cost = 1;
-			
-			if(line.hasNextFloat())
-				cost = line.nextFloat();
-			if(cost < 1)
+			float cost = rows.floats[i];
+			if(Float.isNaN(cost) || (cost < 1))
 				cost = 1;
 
 			// Make an edge with both vertices and add that edge to our list
+			Edge e;
 			if(undirected)
-				edges.add(new UndirectedEdge(dest, start, cost, true));
+				e = new UndirectedEdge(dest, start, cost, false);
 			else
-				edges.add(new DirectedEdge(start, dest, cost, true));
-			line.close();
+				e = new DirectedEdge(start, dest, cost, false);
+			addLoadedEdge(e);
 		}
-		// Close the file scanner
-		s.close();
 	}
 	
 	// This method helps with ending reading of a file
-	private void stopReading(Scanner close0, Scanner close1, String reason){
-		close0.close();
-		close1.close();
+	private void stopReading(String reason){
 		Settings.fail(reason);
 		verts.clear();
+		ids.clear();
 		edges.clear();
+		version++;
 	}
 
 }
@@ -7,7 +7,10 @@ public class Heuristic {
 	public enum H_MODE{
 		EUCLIDEAN,
 		MANHATTAN,
-		CLUSTER
+		/** Cluster to cluster distances. This needs precomputed tables, so only PathFinding can evaluate it. */
+		CLUSTER,
+		/** Landmark distances (ALT). This needs precomputed tables, so only PathFinding can evaluate it. */
+		LANDMARK
 	}
 	
 	public static float getHeuristic(Vertex current, Vertex goal, Translator t, H_MODE mode){
@@ -15,10 +18,40 @@ public class Heuristic {
 			case EUCLIDEAN:		return euclideanDistance(current, goal, t);
 			case MANHATTAN:		return manhattanDistance(current, goal, t);
 			case CLUSTER:		break;
+			case LANDMARK:		break;
 		}
 		return 0.0f;
 	}
 	
+	/**
+	 * This gets the heuristic value between two vertices of a CSR snapshot, using the coordinates
+	 * stored in the snapshot instead of looking them up in a translator.
+	 * @param g The snapshot the vertices belong to. It must have coordinates.
+	 * @param current The index of the vertex to estimate from.
+	 * @param goal The index of the vertex to estimate to.
+	 * @param mode The type of heuristic to use.
+	 * @return The estimated cost from the current vertex to the goal.
+	 */
+	public static float getHeuristic(CSRGraph g, int current, int goal, H_MODE mode){
+		switch(mode){
+			case EUCLIDEAN:		return euclideanDistance(g, current, goal);
+			case MANHATTAN:		return manhattanDistance(g, current, goal);
+			case CLUSTER:		break;
+			case LANDMARK:		break;
+		}
+		return 0.0f;
+	}
+	
+	public static float euclideanDistance(CSRGraph g, int current, int goal){
+		float dx = g.xs[goal] - g.xs[current];
+		float dy = g.ys[goal] - g.ys[current];
+		return (float) Math.sqrt(dx * dx + dy * dy);
+	}
+	
+	public static float manhattanDistance(CSRGraph g, int current, int goal){
+		return Math.abs(g.xs[goal] - g.xs[current]) + Math.abs(g.ys[goal] - g.ys[current]);
+	}
+	
 	public static float euclideanDistance(Vertex current, Vertex goal, Translator t){
 		PVector currentPosition = t.localize(current);
 		PVector goalPosition = t.localize(goal);
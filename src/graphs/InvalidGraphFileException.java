@@ -0,0 +1,29 @@
+package graphs;
+
+/**
+ * This class provides an easy way to flag a badly formatted
+ * graph or graph-mapping file.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class InvalidGraphFileException extends IllegalArgumentException {
+
+	/** This thing makes eclipse happy */
+	private static final long serialVersionUID = 3183305478813617410L;
+
+	/**
+	 * Construct a generic exception.
+	 */
+	public InvalidGraphFileException() {
+		super();
+	}
+
+	/**
+	 * Create an exception with the given message.
+	 * @param message The message to report when the exception is thrown.
+	 */
+	public InvalidGraphFileException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,224 @@
+package graphs;
+
+/**
+ * This class implements a static 2D k-d tree over a set of points, for finding the nearest
+ * point (or k nearest points) to a location in O(log n) time.
+ * The tree is stored implicitly: the points are reordered so that the median of every range
+ * is the splitting node for that range, alternating between x and y with each level.
+ * Points are referred to by the position they were given in when the tree was built.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class KDTree {
+
+	/** The x coordinate of each point, in tree order */
+	private final float[] xs;
+	/** The y coordinate of each point, in tree order */
+	private final float[] ys;
+	/** The original position of each point, in tree order */
+	private final int[] items;
+
+	/**
+	 * This builds a tree over the given points.
+	 * @param x The x coordinate of each point.
+	 * @param y The y coordinate of each point.
+	 */
+	public KDTree(float[] x, float[] y){
+		int n = x.length;
+		xs = new float[n];
+		ys = new float[n];
+		items = new int[n];
+		for(int i = 0 ; i < n ; i++)
+			items[i] = i;
+		build(x, y, 0, n, 0);
+		for(int i = 0 ; i < n ; i++){
+			xs[i] = x[items[i]];
+			ys[i] = y[items[i]];
+		}
+	}
+
+	/**
+	 * This gets the number of points in the tree.
+	 * @return The number of points.
+	 */
+	public int size(){
+		return items.length;
+	}
+
+	/**
+	 * This finds the point closest to the given location.
+	 * @param x The x coordinate of the location.
+	 * @param y The y coordinate of the location.
+	 * @return The original position of the nearest point, or -1 if the tree is empty.
+	 */
+	public int nearest(float x, float y){
+		if(items.length == 0)
+			return -1;
+		Best best = new Best();
+		nearest(x, y, 0, items.length, 0, best);
+		return items[best.node];
+	}
+
+	/**
+	 * This finds the k points closest to the given location.
+	 * @param x The x coordinate of the location.
+	 * @param y The y coordinate of the location.
+	 * @param k How many points to find.
+	 * @return The original positions of the nearest points, closest first. There are fewer than k if the tree is smaller than k.
+	 */
+	public int[] nearest(float x, float y, int k){
+		k = Math.min(k, items.length);
+		if(k <= 0)
+			return new int[0];
+		// A max-heap of the best points so far, so the worst one is easy to replace
+		int[] heap = new int[k];
+		float[] dists = new float[k];
+		int size = kNearest(x, y, 0, items.length, 0, heap, dists, 0, k);
+		// Sort the results by distance by popping the heap from the back
+		int[] result = new int[size];
+		for(int i = size - 1 ; i >= 0 ; i--){
+			result[i] = items[heap[0]];
+			heap[0] = heap[i];
+			dists[0] = dists[i];
+			siftDown(heap, dists, 0, i);
+		}
+		return result;
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This method puts the median of the given range in the middle, split on the given axis, and recurses
+	private void build(float[] x, float[] y, int from, int to, int axis){
+		if(to - from <= 1)
+			return;
+		int mid = (from + to) >>> 1;
+		select(axis == 0 ? x : y, from, to - 1, mid);
+		build(x, y, from, mid, axis ^ 1);
+		build(x, y, mid + 1, to, axis ^ 1);
+	}
+
+	// This method partially sorts items in [lo, hi] so that the k-th one is in its sorted place (quickselect)
+	private void select(float[] coords, int lo, int hi, int k){
+		while(hi > lo){
+			float pivot = coords[items[(lo + hi) >>> 1]];
+			int i = lo;
+			int j = hi;
+			while(i <= j){
+				while(coords[items[i]] < pivot)
+					i++;
+				while(coords[items[j]] > pivot)
+					j--;
+				if(i <= j){
+					int temp = items[i];
+					items[i++] = items[j];
+					items[j--] = temp;
+				}
+			}
+			if(k <= j)
+				hi = j;
+			else if(k >= i)
+				lo = i;
+			else
+				return;
+		}
+	}
+
+	// This method searches the given range of the tree for the nearest point
+	private void nearest(float x, float y, int from, int to, int axis, Best best){
+		if(from >= to)
+			return;
+		int mid = (from + to) >>> 1;
+		float dx = xs[mid] - x;
+		float dy = ys[mid] - y;
+		float dist = dx * dx + dy * dy;
+		if(dist < best.dist){
+			best.dist = dist;
+			best.node = mid;
+		}
+		// Search the side of the split the location is on first, then the other side if it could be closer
+		float diff = (axis == 0) ? x - xs[mid] : y - ys[mid];
+		if(diff < 0){
+			nearest(x, y, from, mid, axis ^ 1, best);
+			if(diff * diff < best.dist)
+				nearest(x, y, mid + 1, to, axis ^ 1, best);
+		}
+		else{
+			nearest(x, y, mid + 1, to, axis ^ 1, best);
+			if(diff * diff < best.dist)
+				nearest(x, y, from, mid, axis ^ 1, best);
+		}
+	}
+
+	// This method searches the given range of the tree for the k nearest points, returning the new heap size
+	private int kNearest(float x, float y, int from, int to, int axis, int[] heap, float[] dists, int size, int k){
+		if(from >= to)
+			return size;
+		int mid = (from + to) >>> 1;
+		float dx = xs[mid] - x;
+		float dy = ys[mid] - y;
+		float dist = dx * dx + dy * dy;
+		if(size < k){
+			// Add to the heap and move it up into place
+			int pos = size++;
+			while(pos > 0){
+				int parent = (pos - 1) >>> 1;
+				if(dists[parent] >= dist)
+					break;
+				heap[pos] = heap[parent];
+				dists[pos] = dists[parent];
+				pos = parent;
+			}
+			heap[pos] = mid;
+			dists[pos] = dist;
+		}
+		else if(dist < dists[0]){
+			// Replace the farthest point so far
+			heap[0] = mid;
+			dists[0] = dist;
+			siftDown(heap, dists, 0, size);
+		}
+		float diff = (axis == 0) ? x - xs[mid] : y - ys[mid];
+		int near0 = (diff < 0) ? from : mid + 1;
+		int near1 = (diff < 0) ? mid : to;
+		int far0 = (diff < 0) ? mid + 1 : from;
+		int far1 = (diff < 0) ? to : mid;
+		size = kNearest(x, y, near0, near1, axis ^ 1, heap, dists, size, k);
+		if((size < k) || (diff * diff < dists[0]))
+			size = kNearest(x, y, far0, far1, axis ^ 1, heap, dists, size, k);
+		return size;
+	}
+
+	// This method moves an entry of a max-heap down into place
+	private static void siftDown(int[] heap, float[] dists, int pos, int size){
+		int node = heap[pos];
+		float dist = dists[pos];
+		while(true){
+			int child = (pos << 1) + 1;
+			if(child >= size)
+				break;
+			if((child + 1 < size) && (dists[child + 1] > dists[child]))
+				child++;
+			if(dists[child] <= dist)
+				break;
+			heap[pos] = heap[child];
+			dists[pos] = dists[child];
+			pos = child;
+		}
+		heap[pos] = node;
+		dists[pos] = dist;
+	}
+
+	/**
+	 * This class holds the best point found so far in a nearest neighbor search.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	private static class Best {
+		/** The tree position of the best point */
+		int node = -1;
+		/** The squared distance to the best point */
+		float dist = Float.MAX_VALUE;
+	}
+}
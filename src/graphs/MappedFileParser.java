@@ -0,0 +1,368 @@
+package graphs;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class reads graph and graph-mapping files by memory-mapping them and parsing numbers
+ * straight out of the mapped bytes. Big files are split into chunks on line boundaries and the
+ * chunks are parsed in parallel on a ForkJoin pool, then stitched back together in file order,
+ * so the rows come out exactly as a line-by-line read would give them.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class MappedFileParser {
+
+	/** Chunks smaller than this many bytes are parsed without splitting any further */
+	private static final int CHUNK_SIZE = 64 * 1024;
+	/** The format of a line in a graph file: start ID, destination ID, and an optional cost */
+	private static final boolean EDGES = true;
+	/** The format of a line in a mapping file: vertex ID, x, and y */
+	private static final boolean MAPPING = false;
+
+	/**
+	 * This class holds the parsed rows of a file as columns of primitives.
+	 * For a graph file the columns are (ids, ints, floats) holding the start ID, destination ID and cost
+	 * (NaN when a line has no cost). For a mapping file they are (ids, xs, floats) holding the vertex ID, x and y.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	public static class Rows {
+		/** The number of rows */
+		public int size = 0;
+		/** The first column of every row (always an ID) */
+		public int[] ids;
+		/** The second column of every row of a graph file */
+		public int[] ints;
+		/** The second column of every row of a mapping file */
+		public float[] xs;
+		/** The last column of every row */
+		public float[] floats;
+
+		// This makes an empty set of rows with room for the given number of rows
+		private Rows(int capacity, boolean format){
+			ids = new int[capacity];
+			floats = new float[capacity];
+			if(format == EDGES)
+				ints = new int[capacity];
+			else
+				xs = new float[capacity];
+		}
+
+		// This makes sure there is room for one more row
+		private void grow(){
+			if(size < ids.length)
+				return;
+			int capacity = Math.max(16, ids.length * 2);
+			ids = Arrays.copyOf(ids, capacity);
+			floats = Arrays.copyOf(floats, capacity);
+			if(ints != null)
+				ints = Arrays.copyOf(ints, capacity);
+			else
+				xs = Arrays.copyOf(xs, capacity);
+		}
+
+		// This adds all the rows in the given set to the end of this one
+		private void append(Rows other){
+			int total = size + other.size;
+			ids = Arrays.copyOf(ids, total);
+			floats = Arrays.copyOf(floats, total);
+			System.arraycopy(other.ids, 0, ids, size, other.size);
+			System.arraycopy(other.floats, 0, floats, size, other.size);
+			if(ints != null){
+				ints = Arrays.copyOf(ints, total);
+				System.arraycopy(other.ints, 0, ints, size, other.size);
+			}
+			else{
+				xs = Arrays.copyOf(xs, total);
+				System.arraycopy(other.xs, 0, xs, size, other.size);
+			}
+			size = total;
+		}
+	}
+
+	/**
+	 * This parses a graph file, where each line holds a start ID, a destination ID, and an optional edge cost.
+	 * @param f The file to read.
+	 * @return The parsed rows. Lines without a cost have NaN in the floats column.
+	 * @throws IOException If the file can't be read.
+	 * @throws InvalidGraphFileException If a line isn't formatted properly.
+	 */
+	public static Rows parseEdges(File f) throws IOException{
+		return parse(f, EDGES);
+	}
+
+	/**
+	 * This parses a mapping file, where each line holds a vertex ID, an x coordinate, and a y coordinate.
+	 * @param f The file to read.
+	 * @return The parsed rows.
+	 * @throws IOException If the file can't be read.
+	 * @throws InvalidGraphFileException If a line isn't formatted properly.
+	 */
+	public static Rows parseMapping(File f) throws IOException{
+		return parse(f, MAPPING);
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This maps the given file and parses it in parallel chunks
+	private static Rows parse(File f, boolean format) throws IOException{
+		if(!f.isFile())
+			throw new FileNotFoundException(f.getPath());
+		try(RandomAccessFile raf = new RandomAccessFile(f, "r"); FileChannel channel = raf.getChannel()){
+			long length = channel.size();
+			if(length > Integer.MAX_VALUE)
+				throw new IOException("File is too large to map: " + f.getPath());
+			MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			return ForkJoinPool.commonPool().invoke(new ChunkParser(bytes, 0, (int) length, format));
+		}
+	}
+
+	/**
+	 * This task parses every line that starts inside a range of the mapped file, splitting
+	 * the range in half on a line boundary while it is bigger than a chunk.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	@SuppressWarnings("serial")
+	private static class ChunkParser extends RecursiveTask<Rows> {
+
+		/** The mapped file */
+		private final MappedByteBuffer bytes;
+		/** The first byte of the range */
+		private final int from;
+		/** The byte after the end of the range */
+		private final int to;
+		/** The format of each line */
+		private final boolean format;
+		/** The position of the byte being parsed */
+		private int pos;
+
+		/**
+		 * This constructs a parser for the given range of the file. The range must start at the beginning of a line.
+		 * @param bytes The mapped file.
+		 * @param from The first byte of the range.
+		 * @param to The byte after the end of the range.
+		 * @param format The format of each line.
+		 */
+		ChunkParser(MappedByteBuffer bytes, int from, int to, boolean format){
+			this.bytes = bytes;
+			this.from = from;
+			this.to = to;
+			this.format = format;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveTask#compute()
+		 */
+		@Override
+		protected Rows compute(){
+			if(to - from > CHUNK_SIZE){
+				// Find the end of the line the middle of the range falls on
+				int mid = (from + to) >>> 1;
+				while((mid < to) && (bytes.get(mid - 1) != '\n'))
+					mid++;
+				if(mid < to){
+					ChunkParser second = new ChunkParser(bytes, mid, to, format);
+					second.fork();
+					Rows rows = new ChunkParser(bytes, from, mid, format).compute();
+					rows.append(second.join());
+					return rows;
+				}
+			}
+			return parseRange();
+		}
+
+		// This parses every line in the range, in order
+		private Rows parseRange(){
+			// Guess the number of rows from the size of the range
+			Rows rows = new Rows(Math.max(16, (to - from) / 16), format);
+			pos = from;
+			while(pos < to){
+				skipSpaces();
+				// Skip blank lines
+				if((pos >= to) || (bytes.get(pos) == '\n')){
+					pos++;
+					continue;
+				}
+				rows.grow();
+				int row = rows.size;
+				rows.ids[row] = parseInt();
+				if(format == EDGES){
+					rows.ints[row] = parseInt();
+					skipSpaces();
+					// The cost is optional, and like the original scanner a cost that isn't a number is ignored
+					rows.floats[row] = Float.NaN;
+					if((pos < to) && (bytes.get(pos) != '\n')){
+						try{
+							rows.floats[row] = parseFloat();
+						} catch(InvalidGraphFileException e){
+							rows.floats[row] = Float.NaN;
+						}
+					}
+				}
+				else{
+					rows.xs[row] = parseFloat();
+					rows.floats[row] = parseFloat();
+				}
+				// Ignore anything else on the line, like the original scanner did
+				while((pos < to) && (bytes.get(pos) != '\n'))
+					pos++;
+				rows.size++;
+			}
+			return rows;
+		}
+
+		// This moves past spaces, tabs, and carriage returns (but not newlines)
+		private void skipSpaces(){
+			while(pos < to){
+				byte b = bytes.get(pos);
+				if((b != ' ') && (b != '\t') && (b != '\r'))
+					return;
+				pos++;
+			}
+		}
+
+		// This parses the next whitespace-separated token on the line as an integer
+		private int parseInt(){
+			skipSpaces();
+			boolean negative = false;
+			if((pos < to) && ((bytes.get(pos) == '-') || (bytes.get(pos) == '+')))
+				negative = bytes.get(pos++) == '-';
+			int start = pos;
+			long value = 0;
+			while((pos < to) && isDigit(bytes.get(pos))){
+				value = value * 10 + (bytes.get(pos++) - '0');
+				if(value > (long) Integer.MAX_VALUE + 1)
+					throw badToken("integer");
+			}
+			if((pos == start) || !atTokenEnd())
+				throw badToken("integer");
+			value = negative ? -value : value;
+			if(value > Integer.MAX_VALUE)
+				throw badToken("integer");
+			return (int) value;
+		}
+
+		// This parses the next whitespace-separated token on the line as a float
+		private float parseFloat(){
+			skipSpaces();
+			int start = pos;
+			boolean negative = false;
+			if((pos < to) && ((bytes.get(pos) == '-') || (bytes.get(pos) == '+')))
+				negative = bytes.get(pos++) == '-';
+			long mantissa = 0;
+			int digits = 0;
+			int exponent = 0;
+			boolean seenDigit = false;
+			// Whole part
+			while((pos < to) && isDigit(bytes.get(pos))){
+				seenDigit = true;
+				if(digits < 18){
+					mantissa = mantissa * 10 + (bytes.get(pos) - '0');
+					if(mantissa != 0)
+						digits++;
+				}
+				else
+					exponent++;
+				pos++;
+			}
+			// Fractional part
+			if((pos < to) && (bytes.get(pos) == '.')){
+				pos++;
+				while((pos < to) && isDigit(bytes.get(pos))){
+					seenDigit = true;
+					if(digits < 18){
+						mantissa = mantissa * 10 + (bytes.get(pos) - '0');
+						if(mantissa != 0)
+							digits++;
+						exponent--;
+					}
+					pos++;
+				}
+			}
+			// Exponent
+			if(seenDigit && (pos < to) && ((bytes.get(pos) == 'e') || (bytes.get(pos) == 'E'))){
+				pos++;
+				boolean negativeExp = false;
+				if((pos < to) && ((bytes.get(pos) == '-') || (bytes.get(pos) == '+')))
+					negativeExp = bytes.get(pos++) == '-';
+				int exp = 0;
+				int expStart = pos;
+				while((pos < to) && isDigit(bytes.get(pos))){
+					exp = Math.min(exp * 10 + (bytes.get(pos++) - '0'), 100000);
+				}
+				if(pos == expStart)
+					throw badToken("float");
+				exponent += negativeExp ? -exp : exp;
+			}
+			if(!seenDigit || !atTokenEnd())
+				return slowFloat(start);
+			// Doubles hold up to 15 digits and powers of ten up to 22 exactly, so this is exact
+			if((digits <= 15) && (exponent >= -22) && (exponent <= 22)){
+				double value = (exponent < 0) ? mantissa / POWERS[-exponent] : mantissa * POWERS[exponent];
+				return (float) (negative ? -value : value);
+			}
+			return slowFloat(start);
+		}
+
+		// This parses the token starting at the given position with the standard library (for rare and unusual tokens)
+		private float slowFloat(int start){
+			pos = start;
+			while((pos < to) && !isSpace(bytes.get(pos)))
+				pos++;
+			byte[] token = new byte[pos - start];
+			for(int i = 0 ; i < token.length ; i++)
+				token[i] = bytes.get(start + i);
+			try{
+				return Float.parseFloat(new String(token, StandardCharsets.US_ASCII));
+			} catch(NumberFormatException e){
+				throw badToken("float");
+			}
+		}
+
+		// This determines if the current position ends a token
+		private boolean atTokenEnd(){
+			return (pos >= to) || isSpace(bytes.get(pos));
+		}
+
+		// This makes an exception for a bad token, reporting which line it was on
+		private InvalidGraphFileException badToken(String expected){
+			int line = 1;
+			for(int i = 0 ; i < pos && i < to ; i++){
+				if(bytes.get(i) == '\n')
+					line++;
+			}
+			return new InvalidGraphFileException("Expected " + expected + " on line " + line);
+		}
+	}
+
+	/** Powers of ten that doubles hold exactly */
+	private static final double[] POWERS = new double[23];
+	static{
+		POWERS[0] = 1;
+		for(int i = 1 ; i < POWERS.length ; i++)
+			POWERS[i] = POWERS[i - 1] * 10;
+	}
+
+	// This determines if a byte is a decimal digit
+	private static boolean isDigit(byte b){
+		return (b >= '0') && (b <= '9');
+	}
+
+	// This determines if a byte separates tokens
+	private static boolean isSpace(byte b){
+		return (b == ' ') || (b == '\t') || (b == '\r') || (b == '\n');
+	}
+}
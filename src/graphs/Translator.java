@@ -1,9 +1,9 @@
 package graphs;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.HashMap;
-import java.util.Scanner;
+import java.util.Map;
 
 import manager.Settings;
 import processing.core.PVector;
@@ -20,6 +20,12 @@ public class Translator {
 	private HashMap<Vertex, PVector> vertexMapping = new HashMap<Vertex, PVector>();
 	/** A dictionary that maps vectors to vertices */
 	private HashMap<PVector, Vertex> vectorMapping = new HashMap<PVector, Vertex>();
+	/** The graph this translator translates */
+	private Graph graph;
+	/** A spatial index over the mapped vectors, for quick quantization */
+	private KDTree spatialIndex = new KDTree(new float[0], new float[0]);
+	/** The vertex for each point in the spatial index */
+	private Vertex[] indexedVertices = new Vertex[0];
 	
 	/**
 	 * This constructs a Translator object with the given graph and mapping file.
@@ -27,30 +33,68 @@ public class Translator {
 	 * @param scheme The file containing the mapping scheme for the given graph.
 	 */
 	public Translator(Graph g, File scheme){
+		graph = g;
 		try {
 			readFile(g, scheme);
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			Settings.fail("Unable to read graph-mapping file!");
 			e.printStackTrace();
 		}
 	}
 	
+	/**
+	 * This constructs a Translator from coordinates that are already loaded, such as from a binary graph file.
+	 * @param g The graph this translator will translate.
+	 * @param xs The x coordinate of each vertex, by index.
+	 * @param ys The y coordinate of each vertex, by index.
+	 */
+	Translator(Graph g, float[] xs, float[] ys){
+		graph = g;
+		for(int i = 0 ; i < xs.length ; i++){
+			Vertex v = g.getVertexAt(i);
+			PVector p = new PVector(xs[i], ys[i]);
+			vertexMapping.put(v, p);
+			vectorMapping.put(p, v);
+		}
+		buildSpatialIndex();
+	}
+	
 	/**
 	 * This will quantize the given vector to the nearest vertex.
 	 * @param vector The vector to quantize.
 	 * @return The vertex with the closest mapping.
 	 */
 	public Vertex quantize(PVector vector){
-		float minDist = Float.MAX_VALUE;
-		PVector minKey = null;
-		for(PVector p : vectorMapping.keySet()){
-			float dist = PVector.dist(vector, p);
-			if(dist < minDist){
-				minDist = dist;
-				minKey = p;
-			}
-		}
-		return vectorMapping.get(minKey);
+		int nearest = spatialIndex.nearest(vector.x, vector.y);
+		if(nearest < 0)
+			return null;
+		return indexedVertices[nearest];
+	}
+	
+	/**
+	 * This will find the given number of vertices closest to the given vector.
+	 * @param vector The vector to quantize.
+	 * @param k How many vertices to find.
+	 * @return The k vertices with the closest mappings, closest first.
+	 */
+	public Vertex[] quantize(PVector vector, int k){
+		int[] nearest = spatialIndex.nearest(vector.x, vector.y, k);
+		Vertex[] result = new Vertex[nearest.length];
+		for(int i = 0 ; i < nearest.length ; i++)
+			result[i] = indexedVertices[nearest[i]];
+		return result;
+	}
+	
+	/**
+	 * This will quantize every given vector to its nearest vertex at once.
+	 * @param vectors The vectors to quantize.
+	 * @return The vertex with the closest mapping for each vector, in the same order.
+	 */
+	public Vertex[] quantizeAll(PVector[] vectors){
+		Vertex[] result = new Vertex[vectors.length];
+		for(int i = 0 ; i < vectors.length ; i++)
+			result[i] = quantize(vectors[i]);
+		return result;
 	}
 	
 	/**
@@ -62,6 +106,14 @@ public class Translator {
 		return vertexMapping.get(vertex);
 	}
 	
+	/**
+	 * A simple getter for the graph this translator was built for.
+	 * @return The graph whose vertices this translator maps.
+	 */
+	public Graph getGraph(){
+		return graph;
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Object#toString()
@@ -80,61 +132,58 @@ public class Translator {
 	
 	
 	// This method will read in a given mapping file and create a Translator from it
-	private void readFile(Graph g, File f) throws FileNotFoundException{
+	private void readFile(Graph g, File f) throws IOException{
 		// Clear the current mapping
 		vertexMapping.clear();
 		vectorMapping.clear();
 		// Error messages
 		String invalidFormat = "Invalid graph-mapping file format!";
 		String invalidID = "Invalid vertex ID!";
-		Scanner s = new Scanner(f);
-		// Read the file line by line
-		while(s.hasNextLine()){
-			Scanner line = new Scanner(s.nextLine());
-			
-			// Try to read in the vertex ID
-			if(!line.hasNextInt()){
-				stopReading(s, line, invalidFormat);
-				return;
-			}
-			int id = line.nextInt();
-			
+		// Parse the whole file up front
+		MappedFileParser.Rows rows;
+		try{
+			rows = MappedFileParser.parseMapping(f);
+		} catch(InvalidGraphFileException e){
+			stopReading(invalidFormat);
+			return;
+		}
+		for(int i = 0 ; i < rows.size ; i++){
 			// Check for the ID in the graph
-			if(!g.hasVertex(new Vertex(id))){
-				stopReading(s, line, invalidID);
+			Vertex v = g.getVertex(rows.ids[i]);
+			if(v == null){
+				stopReading(invalidID);
 				return;
 			}
 			
-			// Try to read in x coordinate
-			if(!line.hasNextFloat()){
-				stopReading(s, line, invalidFormat);
-				return;
-			}
-			float x = line.nextFloat();
-			
-			// Try to read in y coordinate
-			if(!line.hasNextFloat()){
-				stopReading(s, line, invalidFormat);
-				return;
-			}
-			float y = line.nextFloat();
-			
 			// Map the vertex and vector to each other
-			Vertex v = g.getVertex(id);
-			PVector p = new PVector(x, y);
+			PVector p = new PVector(rows.xs[i], rows.floats[i]);
 			vertexMapping.put(v, p);
 			vectorMapping.put(p, v);
-			line.close();
 		}
-		s.close();
+		buildSpatialIndex();
+	}
+	
+	// This method builds the spatial index over all the mapped vectors
+	private void buildSpatialIndex(){
+		int n = vertexMapping.size();
+		float[] x = new float[n];
+		float[] y = new float[n];
+		indexedVertices = new Vertex[n];
+		int i = 0;
+		for(Map.Entry<Vertex, PVector> entry : vertexMapping.entrySet()){
+			indexedVertices[i] = entry.getKey();
+			x[i] = entry.getValue().x;
+			y[i] = entry.getValue().y;
+			i++;
+		}
+		spatialIndex = new KDTree(x, y);
 	}
 	
 	// This method helps to stop reading a file quickly
-	private void stopReading(Scanner close0, Scanner close1, String reason){
-		close0.close();
-		close1.close();
+	private void stopReading(String reason){
 		Settings.fail(reason);
 		vertexMapping.clear();
 		vectorMapping.clear();
+		buildSpatialIndex();
 	}
 }
@@ -18,6 +18,8 @@ public class Vertex implements Comparable<Vertex> {
 	private boolean undirected = false;
 	/** A way to remember if the type of edge has been set */
 	private boolean edgeTypeSet = false;
+	/** The dense position of this vertex in its graph, or -1 if it isn't in one */
+	private int index = -1;
 	
 	/**
 	 * This constructs a new vertex with the given ID.
@@ -45,6 +47,22 @@ public class Vertex implements Comparable<Vertex> {
 		
 	}
 	
+	/**
+	 * This method adds an edge that is known not to be in this vertex's set of edges yet,
+	 * skipping the search for duplicates. This is for bulk loading, where the graph's master
+	 * set of edges already tells us about duplicates.
+	 * @param e The Edge object to add.
+	 */
+	void addNewEdge(Edge e){
+		if(!edgeTypeSet){
+			undirected = e instanceof UndirectedEdge;
+			edgeTypeSet = true;
+		}
+		else if((undirected && (e instanceof DirectedEdge)) || (!undirected && (e instanceof UndirectedEdge)))
+			throw new IllegalArgumentException("Invalid edge type!" );
+		edges.add(e);
+	}
+	
 	
 	// Getter methods
 	
@@ -57,6 +75,24 @@ public class Vertex implements Comparable<Vertex> {
 		return id;
 	}
 	
+	/**
+	 * A simple getter for the vertex's dense index in the graph that owns it.
+	 * Indices run from 0 to the number of vertices in the graph, and are what the
+	 * array-based path finding code uses in place of hashing vertices.
+	 * @return The index of this vertex, or -1 if it hasn't been added to a graph.
+	 */
+	public int getIndex(){
+		return index;
+	}
+	
+	/**
+	 * This sets the dense index of this vertex. Only the owning graph should do this.
+	 * @param index The new index for this vertex.
+	 */
+	protected void setIndex(int index){
+		this.index = index;
+	}
+	
 	/**
 	 * A simple getter for the vertex's degree (number of incident edges).
 	 * @return The degree of this vertex.
@@ -6,19 +6,31 @@ import java.awt.Container;
 import java.awt.Dimension;
 import java.io.File;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import javax.swing.BorderFactory;
 import javax.swing.JFrame;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
+import graphs.BinaryGraphFile;
 import graphs.Graph;
+import graphs.Vertex;
 import graphs.Heuristic.H_MODE;
 import graphs.Translator;
+import thinking.paths.AllPairsTable;
+import thinking.paths.BatchResult;
+import thinking.paths.ARAStar;
+import thinking.paths.FlowField;
+import thinking.paths.GoalBounds;
 import thinking.paths.Path;
 import thinking.paths.PathFinding;
+import thinking.paths.PathFinding.Query;
+import thinking.paths.RealTimeSearch;
 
 /**
  * This class presents to user with a console like screen to view
- * the algorithm comparisons of Dijkstra and A*.
+ * the algorithm comparisons of Dijkstra and A*, one way and bidirectional.
  * @author Derek Batts - dsbatts@ncsu.edu
  *
  */
@@ -53,7 +65,7 @@ public class AlgCompare extends JFrame implements Runnable{
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 	}
 	
-	// This method runs comparisons between A* and Dijkstra
+	// This method runs comparisons between A* and Dijkstra, one way and bidirectional
 	private void runTests(){
 		Runtime rt = Runtime.getRuntime();
 		String graph0 = "graphfiles/biggraph0.graph";
@@ -62,7 +74,9 @@ public class AlgCompare extends JFrame implements Runnable{
 		String map1 = "graphfiles/biggraph1.map";
 		console.println("Importing first large graph at: " + graph0);
 		console.flush();
-		Graph g0 = new Graph(new File(graph0), true);
+		// The binary graph file is read instead of the text files while it is up to date
+		BinaryGraphFile file0 = BinaryGraphFile.forFiles(new File(graph0), new File(map0), true);
+		Graph g0 = file0.getGraph();
 		int graph0_verts = g0.getNumberOfVertices();
 		int graph0_edges = g0.getNumberOfEdges();
 		console.println("Done importing!");
@@ -72,12 +86,14 @@ public class AlgCompare extends JFrame implements Runnable{
 		console.println("Number of Vertices: " + graph0_verts);
 		console.println("Number of Edges: " + graph0_edges);
 		console.println("Importing translator for graph: " + graph0 + "\nLooking for: " + map0);
-		Translator t0 = new Translator(g0, new File(map0));
+		Translator t0 = file0.getTranslator();
 		console.println("Done importing!");
 		
 		console.println("Importing second large graph at: " + graph1);
 		console.flush();
-		Graph g1 = new Graph(new File(graph1), true);
+		// The binary graph file is read instead of the text files while it is up to date
+		BinaryGraphFile file1 = BinaryGraphFile.forFiles(new File(graph1), new File(map1), true);
+		Graph g1 = file1.getGraph();
 		int graph1_verts = g1.getNumberOfVertices();
 		int graph1_edges = g1.getNumberOfEdges();
 		console.println("Done importing!");
@@ -85,14 +101,16 @@ public class AlgCompare extends JFrame implements Runnable{
 		console.println("Number of Vertices: " + graph1_verts);
 		console.println("Number of Edges: " + graph1_edges);
 		console.println("Importing translator for graph: " + graph1 + "\nLooking for: " + map1);
-		Translator t1 = new Translator(g1, new File(map1));
+		Translator t1 = file1.getTranslator();
 		console.println("Done importing!");
 		
 		usedMB = ((rt.totalMemory() - rt.freeMemory()) / 1024 /1024);
 		console.println("Total Memory Used: " + usedMB);
 		
-		PathFinding pFinder0 = new PathFinding(t0);
-		PathFinding pFinder1 = new PathFinding(t1);
+		PathFinding pFinder0 = new PathFinding(t0, file0.getSnapshot());
+		PathFinding pFinder1 = new PathFinding(t1, file1.getSnapshot());
+		pFinder0.collectStats = true;
+		pFinder1.collectStats = true;
 		
 		int g0_goal = 3;
 		int g1_goal = 3;
@@ -104,7 +122,7 @@ public class AlgCompare extends JFrame implements Runnable{
 		console.println("Done!\n"
 					  + "Number of Vertices in Path: " + p_g0_d.size() + "\n"
 					  + "Number of Vertices Visited: " + p_g0_d.verticesVistedOnCreation + "\n"
-					  + "Max Memory Usage: " + p_g0_d.megsUsed + "\n"
+					  + p_g0_d.stats + "\n"
 					  + "Took: " + timer / 1000000 + "ms");
 		
 		console.println("Running Dijkstra's on second graph...");
@@ -114,7 +132,7 @@ public class AlgCompare extends JFrame implements Runnable{
 		console.println("Done!\n"
 					  + "Number of Vertices in Path: " + p_g1_d.size() + "\n"
 					  + "Number of Vertices Visited: " + p_g1_d.verticesVistedOnCreation + "\n"
-					  + "Max Memory Usage: " + p_g1_d.megsUsed + "\n"
+					  + p_g1_d.stats + "\n"
 					  + "Took: " + timer / 1000000 + "ms");
 		
 		console.println("Running A* on first graph with Euclidean heuristic...");
@@ -124,7 +142,7 @@ public class AlgCompare extends JFrame implements Runnable{
 		console.println("Done!\n"
 				  	  + "Number of Vertices in Path: " + p_g0_a_e.size() + "\n"
 				  	  + "Number of Vertices Visited: " + p_g0_a_e.verticesVistedOnCreation + "\n"
-				  	  + "Max Memory Usage: " + p_g0_a_e.megsUsed + "\n"
+				  	  + p_g0_a_e.stats + "\n"
 				  	  + "Took: " + timer / 1000000 + "ms");
 		
 		console.println("Running A* on first graph with Manhattan heuristic...");
@@ -134,7 +152,7 @@ public class AlgCompare extends JFrame implements Runnable{
 		console.println("Done!\n"
 				  	  + "Number of Vertices in Path: " + p_g0_a_m.size() + "\n"
 				  	  + "Number of Vertices Visited: " + p_g0_a_m.verticesVistedOnCreation + "\n"
-				  	  + "Max Memory Usage: " + p_g0_a_m.megsUsed + "\n"
+				  	  + p_g0_a_m.stats + "\n"
 				  	  + "Took: " + timer / 1000000 + "ms");
 		
 		console.println("Running A* on second graph with Euclidean heuristic...");
@@ -144,7 +162,7 @@ public class AlgCompare extends JFrame implements Runnable{
 		console.println("Done!\n"
 				  	  + "Number of Vertices in Path: " + p_g1_a_e.size() + "\n"
 				  	  + "Number of Vertices Visited: " + p_g1_a_e.verticesVistedOnCreation + "\n"
-				  	  + "Max Memory Usage: " + p_g1_a_e.megsUsed + "\n"
+				  	  + p_g1_a_e.stats + "\n"
 				  	  + "Took: " + timer / 1000000 + "ms");
 		
 		console.println("Running A* on second graph with Manhattan heuristic...");
@@ -154,9 +172,359 @@ public class AlgCompare extends JFrame implements Runnable{
 		console.println("Done!\n"
 				  	  + "Number of Vertices in Path: " + p_g1_a_m.size() + "\n"
 				  	  + "Number of Vertices Visited: " + p_g1_a_m.verticesVistedOnCreation + "\n"
-				  	  + "Max Memory Usage: " + p_g1_a_m.megsUsed + "\n"
+				  	  + p_g1_a_m.stats + "\n"
 				  	  + "Took: " + timer / 1000000 + "ms");
 		
+		console.println("Running A* on first graph with Landmark heuristic...");
+		timer = System.nanoTime();
+		Path p_g0_a_l = pFinder0.aStar(g0.getVertex(0), g0.getVertex(g0_goal), H_MODE.LANDMARK);
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices in Path: " + p_g0_a_l.size() + "\n"
+				  	  + "Number of Vertices Visited: " + p_g0_a_l.verticesVistedOnCreation + "\n"
+				  	  + p_g0_a_l.stats + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Running A* on second graph with Landmark heuristic...");
+		timer = System.nanoTime();
+		Path p_g1_a_l = pFinder1.aStar(g1.getVertex(0), g1.getVertex(g1_goal), H_MODE.LANDMARK);
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices in Path: " + p_g1_a_l.size() + "\n"
+				  	  + "Number of Vertices Visited: " + p_g1_a_l.verticesVistedOnCreation + "\n"
+				  	  + p_g1_a_l.stats + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Running A* on first graph with Cluster heuristic...");
+		timer = System.nanoTime();
+		Path p_g0_a_c = pFinder0.aStar(g0.getVertex(0), g0.getVertex(g0_goal), H_MODE.CLUSTER);
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices in Path: " + p_g0_a_c.size() + "\n"
+				  	  + "Number of Vertices Visited: " + p_g0_a_c.verticesVistedOnCreation + "\n"
+				  	  + p_g0_a_c.stats + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Running A* on second graph with Cluster heuristic...");
+		timer = System.nanoTime();
+		Path p_g1_a_c = pFinder1.aStar(g1.getVertex(0), g1.getVertex(g1_goal), H_MODE.CLUSTER);
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices in Path: " + p_g1_a_c.size() + "\n"
+				  	  + "Number of Vertices Visited: " + p_g1_a_c.verticesVistedOnCreation + "\n"
+				  	  + p_g1_a_c.stats + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Running Contraction Hierarchy query on first graph (builds the hierarchy the first time)...");
+		timer = System.nanoTime();
+		Path p_g0_ch = pFinder0.contractionHierarchy(g0.getVertex(0), g0.getVertex(g0_goal));
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices in Path: " + p_g0_ch.size() + "\n"
+				  	  + "Number of Vertices Visited: " + p_g0_ch.verticesVistedOnCreation + "\n"
+				  	  + p_g0_ch.stats + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Running Contraction Hierarchy query on second graph (builds the hierarchy the first time)...");
+		timer = System.nanoTime();
+		Path p_g1_ch = pFinder1.contractionHierarchy(g1.getVertex(0), g1.getVertex(g1_goal));
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices in Path: " + p_g1_ch.size() + "\n"
+				  	  + "Number of Vertices Visited: " + p_g1_ch.verticesVistedOnCreation + "\n"
+				  	  + p_g1_ch.stats + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Running hierarchical search on first graph (builds the abstract graph the first time)...");
+		timer = System.nanoTime();
+		Path p_g0_h = pFinder0.hierarchical(g0.getVertex(0), g0.getVertex(g0_goal));
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices in First Hop: " + p_g0_h.size() + "\n"
+				  	  + "Number of Vertices Visited: " + p_g0_h.verticesVistedOnCreation + "\n"
+				  	  + p_g0_h.stats + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Running hierarchical search on second graph (builds the abstract graph the first time)...");
+		timer = System.nanoTime();
+		Path p_g1_h = pFinder1.hierarchical(g1.getVertex(0), g1.getVertex(g1_goal));
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices in First Hop: " + p_g1_h.size() + "\n"
+				  	  + "Number of Vertices Visited: " + p_g1_h.verticesVistedOnCreation + "\n"
+				  	  + p_g1_h.stats + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Running bidirectional Dijkstra's on first graph...");
+		timer = System.nanoTime();
+		Path p_g0_bd = pFinder0.bidirectionalDijkstras(g0.getVertex(0), g0.getVertex(g0_goal));
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices in Path: " + p_g0_bd.size() + "\n"
+				  	  + "Number of Vertices Visited: " + p_g0_bd.verticesVistedOnCreation + "\n"
+				  	  + p_g0_bd.stats + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Running bidirectional Dijkstra's on second graph...");
+		timer = System.nanoTime();
+		Path p_g1_bd = pFinder1.bidirectionalDijkstras(g1.getVertex(0), g1.getVertex(g1_goal));
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices in Path: " + p_g1_bd.size() + "\n"
+				  	  + "Number of Vertices Visited: " + p_g1_bd.verticesVistedOnCreation + "\n"
+				  	  + p_g1_bd.stats + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Running bidirectional A* on first graph with Euclidean heuristic...");
+		timer = System.nanoTime();
+		Path p_g0_ba_e = pFinder0.bidirectionalAStar(g0.getVertex(0), g0.getVertex(g0_goal), H_MODE.EUCLIDEAN);
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices in Path: " + p_g0_ba_e.size() + "\n"
+				  	  + "Number of Vertices Visited: " + p_g0_ba_e.verticesVistedOnCreation + "\n"
+				  	  + p_g0_ba_e.stats + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Running bidirectional A* on second graph with Euclidean heuristic...");
+		timer = System.nanoTime();
+		Path p_g1_ba_e = pFinder1.bidirectionalAStar(g1.getVertex(0), g1.getVertex(g1_goal), H_MODE.EUCLIDEAN);
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices in Path: " + p_g1_ba_e.size() + "\n"
+				  	  + "Number of Vertices Visited: " + p_g1_ba_e.verticesVistedOnCreation + "\n"
+				  	  + p_g1_ba_e.stats + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Running weighted A* on first graph with Landmark heuristic (weight " + pFinder0.weight + ")...");
+		timer = System.nanoTime();
+		Path p_g0_wa_l = pFinder0.weightedAStar(g0.getVertex(0), g0.getVertex(g0_goal), H_MODE.LANDMARK);
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices in Path: " + p_g0_wa_l.size() + "\n"
+				  	  + "Number of Vertices Visited: " + p_g0_wa_l.verticesVistedOnCreation + "\n"
+				  	  + "Bound: " + p_g0_wa_l.bound + "\n"
+				  	  + p_g0_wa_l.stats + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Running weighted A* on second graph with Landmark heuristic (weight " + pFinder1.weight + ")...");
+		timer = System.nanoTime();
+		Path p_g1_wa_l = pFinder1.weightedAStar(g1.getVertex(0), g1.getVertex(g1_goal), H_MODE.LANDMARK);
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices in Path: " + p_g1_wa_l.size() + "\n"
+				  	  + "Number of Vertices Visited: " + p_g1_wa_l.verticesVistedOnCreation + "\n"
+				  	  + "Bound: " + p_g1_wa_l.bound + "\n"
+				  	  + p_g1_wa_l.stats + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Running ARA* on first graph with Landmark heuristic, printing every path it finds...");
+		ARAStar ara0 = pFinder0.beginAnytime(g0.getVertex(0), g0.getVertex(g0_goal), H_MODE.LANDMARK);
+		timer = System.nanoTime();
+		Path p_g0_ara = ara0.improve();
+		while(p_g0_ara != null){
+			console.println("Weight: " + ara0.getWeight() + "\n"
+					  	  + "Bound: " + p_g0_ara.bound + "\n"
+					  	  + "Number of Vertices in Path: " + p_g0_ara.size() + "\n"
+					  	  + "Number of Vertices Visited (so far): " + p_g0_ara.verticesVistedOnCreation + "\n"
+					  	  + "Took (so far): " + (System.nanoTime() - timer) / 1000 + "us");
+			if(ara0.isOptimal())
+				break;
+			p_g0_ara = ara0.improve();
+		}
+		console.println("Done!");
+		
+		console.println("Running ARA* on second graph with Landmark heuristic, printing every path it finds...");
+		ARAStar ara1 = pFinder1.beginAnytime(g1.getVertex(0), g1.getVertex(g1_goal), H_MODE.LANDMARK);
+		timer = System.nanoTime();
+		Path p_g1_ara = ara1.improve();
+		while(p_g1_ara != null){
+			console.println("Weight: " + ara1.getWeight() + "\n"
+					  	  + "Bound: " + p_g1_ara.bound + "\n"
+					  	  + "Number of Vertices in Path: " + p_g1_ara.size() + "\n"
+					  	  + "Number of Vertices Visited (so far): " + p_g1_ara.verticesVistedOnCreation + "\n"
+					  	  + "Took (so far): " + (System.nanoTime() - timer) / 1000 + "us");
+			if(ara1.isOptimal())
+				break;
+			p_g1_ara = ara1.improve();
+		}
+		console.println("Done!");
+		
+		console.println("Building a flow field on first graph...");
+		timer = System.nanoTime();
+		FlowField field0 = pFinder0.getFlowField(g0.getVertex(g0_goal));
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices Visited: " + field0.getVisited() + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		console.println("Following the flow field from 100 starts on first graph...");
+		int hops0 = 0;
+		timer = System.nanoTime();
+		for(int i = 0 ; i < 100 ; i++){
+			for(int v = i ; field0.nextHop(v) >= 0 ; v = field0.nextHop(v))
+				hops0++;
+		}
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Hops: " + hops0 + "\n"
+				  	  + "Took: " + timer / 1000 + "us");
+		console.println("Moving the flow field's goal one step on first graph...");
+		Vertex moved0 = g0.getVertex(g0_goal).edges.get(0).getOtherVertex(g0.getVertex(g0_goal));
+		timer = System.nanoTime();
+		field0 = pFinder0.getFlowField(moved0);
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices Visited: " + field0.getVisited() + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Building a flow field on second graph...");
+		timer = System.nanoTime();
+		FlowField field1 = pFinder1.getFlowField(g1.getVertex(g1_goal));
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices Visited: " + field1.getVisited() + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		console.println("Following the flow field from 100 starts on second graph...");
+		int hops1 = 0;
+		timer = System.nanoTime();
+		for(int i = 0 ; i < 100 ; i++){
+			for(int v = i ; field1.nextHop(v) >= 0 ; v = field1.nextHop(v))
+				hops1++;
+		}
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Hops: " + hops1 + "\n"
+				  	  + "Took: " + timer / 1000 + "us");
+		console.println("Moving the flow field's goal one step on second graph...");
+		Vertex moved1 = g1.getVertex(g1_goal).edges.get(0).getOtherVertex(g1.getVertex(g1_goal));
+		timer = System.nanoTime();
+		field1 = pFinder1.getFlowField(moved1);
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices Visited: " + field1.getVisited() + "\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Building an all-pairs table on first graph (refused above " + pFinder0.allPairsLimit + " vertices)...");
+		AllPairsTable pairs0 = pFinder0.getAllPairs(pFinder0.getSnapshot());
+		console.println((pairs0 == null) ? "Refused!" : "Done!");
+		
+		String room = "graphfiles/custom.graph";
+		console.println("Importing small graph at: " + room);
+		BinaryGraphFile file2 = BinaryGraphFile.forFiles(new File(room), new File("graphfiles/custom.map"), true);
+		Graph g2 = file2.getGraph();
+		Translator t2 = file2.getTranslator();
+		PathFinding pFinder2 = new PathFinding(t2, file2.getSnapshot());
+		pFinder2.cache = null;
+		int graph2_verts = g2.getNumberOfVertices();
+		console.println("Building an all-pairs table on small graph...");
+		timer = System.nanoTime();
+		AllPairsTable pairs2 = pFinder2.getAllPairs(pFinder2.getSnapshot());
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Table Size: " + pairs2.getMemoryFootprint() + " bytes\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		console.println("Finding paths between every pair of vertices on small graph with the table...");
+		timer = System.nanoTime();
+		for(int i = 0 ; i < graph2_verts ; i++){
+			for(int j = 0 ; j < graph2_verts ; j++)
+				pFinder2.allPairs(g2.getVertexAt(i), g2.getVertexAt(j), H_MODE.EUCLIDEAN);
+		}
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		console.println("Finding paths between every pair of vertices on small graph with A*...");
+		timer = System.nanoTime();
+		for(int i = 0 ; i < graph2_verts ; i++){
+			for(int j = 0 ; j < graph2_verts ; j++)
+				pFinder2.aStar(g2.getVertexAt(i), g2.getVertexAt(j), H_MODE.EUCLIDEAN);
+		}
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		
+		console.println("Making 200 random queries on first graph with Landmark heuristic...");
+		Random random = new Random(0);
+		List<Query> queries = new ArrayList<Query>();
+		for(int i = 0 ; i < 200 ; i++)
+			queries.add(new Query(g0.getVertexAt(random.nextInt(graph0_verts)), g0.getVertexAt(random.nextInt(graph0_verts)), H_MODE.LANDMARK));
+		console.println("Running the queries one at a time...");
+		pFinder0.collectStats = false;
+		timer = System.nanoTime();
+		for(Query q : queries)
+			pFinder0.aStar(q.start, q.goal, q.heuristic);
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		console.println("Running the queries as a batch...");
+		BatchResult batch = pFinder0.findAll(queries);
+		console.println("Done!\n"
+				  	  + batch);
+		
+		console.println("Running A* with Landmark heuristic on second graph...");
+		timer = System.nanoTime();
+		Path p_g1_seq = pFinder1.aStar(g1.getVertex(0), g1.getVertex(g1_goal), H_MODE.LANDMARK);
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Number of Vertices Visited: " + p_g1_seq.verticesVistedOnCreation + "\n"
+				  	  + "Took: " + timer / 1000 + "us");
+		int cores = Runtime.getRuntime().availableProcessors();
+		for(int threads = 1 ; threads <= cores ; threads = ((threads < cores) && (threads * 2 > cores)) ? cores : threads * 2){
+			console.println("Running parallel A* with Landmark heuristic on second graph with " + threads + " of " + cores + " cores...");
+			timer = System.nanoTime();
+			Path p_g1_par = pFinder1.parallelAStar(pFinder1.getSnapshot(), g1.getVertex(0).getIndex(), g1.getVertex(g1_goal).getIndex(), H_MODE.LANDMARK, threads);
+			timer = System.nanoTime() - timer;
+			console.println("Done!\n"
+					  	  + "Number of Vertices Visited: " + p_g1_par.verticesVistedOnCreation + "\n"
+					  	  + "Took: " + timer / 1000 + "us");
+		}
+		
+		console.println("Following a real-time search 5 times on first graph with Landmark heuristic (lookahead " + pFinder0.lookahead + ")...");
+		RealTimeSearch realTime0 = pFinder0.getRealTimeSearch(g0.getVertex(g0_goal), H_MODE.LANDMARK);
+		for(int trip = 1 ; trip <= 5 ; trip++){
+			long visitedBefore = realTime0.getVisited();
+			int steps = 0;
+			timer = System.nanoTime();
+			Path p_g0_rt = pFinder0.realTime(g0.getVertex(0), g0.getVertex(g0_goal), H_MODE.LANDMARK);
+			while(!p_g0_rt.isEmpty()){
+				p_g0_rt.removeFirst();
+				steps++;
+			}
+			timer = System.nanoTime() - timer;
+			console.println("Trip " + trip + " done!\n"
+					  	  + "Number of Steps: " + steps + "\n"
+					  	  + "Number of Vertices Visited: " + (realTime0.getVisited() - visitedBefore) + "\n"
+					  	  + "Took: " + timer / 1000 + "us");
+		}
+		
+		console.println("Computing (or loading) goal bounds on first graph...");
+		timer = System.nanoTime();
+		GoalBounds bounds0 = pFinder0.getGoalBounds(pFinder0.getSnapshot());
+		timer = System.nanoTime() - timer;
+		console.println("Done!\n"
+				  	  + "Boxes Size: " + bounds0.getMemoryFootprint() + " bytes\n"
+				  	  + "Took: " + timer / 1000000 + "ms");
+		console.println("Running the 200 queries with A* and Landmark heuristic on first graph, without and with goal bounding...");
+		long visitedPlain = 0;
+		long visitedBounded = 0;
+		long timerBounded = 0;
+		timer = 0;
+		for(Query q : queries){
+			long lap = System.nanoTime();
+			Path plain = pFinder0.aStar(q.start, q.goal, q.heuristic);
+			timer += System.nanoTime() - lap;
+			pFinder0.goalBounding = true;
+			lap = System.nanoTime();
+			Path bounded = pFinder0.aStar(q.start, q.goal, q.heuristic);
+			timerBounded += System.nanoTime() - lap;
+			pFinder0.goalBounding = false;
+			if(plain != null)
+				visitedPlain += plain.verticesVistedOnCreation;
+			if(bounded != null)
+				visitedBounded += bounded.verticesVistedOnCreation;
+		}
+		console.println("Done!\n"
+				  	  + "Number of Vertices Visited: " + visitedPlain + " without, " + visitedBounded + " with\n"
+				  	  + "Took: " + timer / 1000000 + "ms without, " + timerBounded / 1000000 + "ms with");
+		
 	}
 
 	/* (non-Javadoc)
@@ -12,6 +12,7 @@ import java.awt.event.WindowEvent;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -64,6 +65,12 @@ public class Runner extends JFrame implements ActionListener{
 	JRadioButton b_heuristic_man = new JRadioButton("Manhattan Distance");
 	/** A button for choosing a the Euclidean heuristic */
 	JRadioButton b_heuristic_ecd = new JRadioButton("Euclidean Distance");
+	/** A button for choosing a the landmark (ALT) heuristic */
+	JRadioButton b_heuristic_alt = new JRadioButton("Landmarks");
+	/** A button for choosing a the cluster heuristic */
+	JRadioButton b_heuristic_cls = new JRadioButton("Clusters");
+	/** A check box for finding paths with time-sliced searches */
+	JCheckBox b_timeSliced = new JCheckBox("Time-Sliced Searches");
 	/** Card panel to swap between homework deliverables */
 	JPanel pnl_hwoptions = new JPanel(new CardLayout());
 	/** The panel for homework 1 deliverables */
@@ -76,6 +83,8 @@ public class Runner extends JFrame implements ActionListener{
 	public static SKETCHMODE lastMode = SKETCHMODE.STEERINGSEEK;
 	/** The type of heuristic to use for A* */
 	public static H_MODE heuristic = H_MODE.EUCLIDEAN;
+	/** Whether or not characters find paths with time-sliced searches */
+	public static boolean timeSliced = false;
 	
 	
 	/**
@@ -105,7 +114,10 @@ public class Runner extends JFrame implements ActionListener{
 		heuristic.setBorder(BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Color.BLACK), "Heuristic"));
 		heuristic.add(b_heuristic_man);
 		heuristic.add(b_heuristic_ecd);
+		heuristic.add(b_heuristic_alt);
+		heuristic.add(b_heuristic_cls);
 		pnl_hw2.add(heuristic);
+		pnl_hw2.add(b_timeSliced);
 		pnl_hw2.add(b_compare);
 		
 		pnl_hw3.add(b_decisionTree);
@@ -123,6 +135,9 @@ public class Runner extends JFrame implements ActionListener{
 		b_compare.addActionListener(this);
 		b_heuristic_man.addActionListener(this);
 		b_heuristic_ecd.addActionListener(this);
+		b_heuristic_alt.addActionListener(this);
+		b_heuristic_cls.addActionListener(this);
+		b_timeSliced.addActionListener(this);
 		combo_homeworks.setSelectedItem(card_hw3);
 		b_heuristic_ecd.setSelected(true);
 		b_decisionTree.addActionListener(this);
@@ -187,12 +202,31 @@ public class Runner extends JFrame implements ActionListener{
 		}
 		else if(e.getSource().equals(b_heuristic_man)){
 			b_heuristic_ecd.setSelected(false);
+			b_heuristic_alt.setSelected(false);
+			b_heuristic_cls.setSelected(false);
 			heuristic = H_MODE.MANHATTAN;
 		}
 		else if(e.getSource().equals(b_heuristic_ecd)){
 			b_heuristic_man.setSelected(false);
+			b_heuristic_alt.setSelected(false);
+			b_heuristic_cls.setSelected(false);
 			heuristic = H_MODE.EUCLIDEAN;
 		}
+		else if(e.getSource().equals(b_heuristic_alt)){
+			b_heuristic_man.setSelected(false);
+			b_heuristic_ecd.setSelected(false);
+			b_heuristic_cls.setSelected(false);
+			heuristic = H_MODE.LANDMARK;
+		}
+		else if(e.getSource().equals(b_heuristic_cls)){
+			b_heuristic_man.setSelected(false);
+			b_heuristic_ecd.setSelected(false);
+			b_heuristic_alt.setSelected(false);
+			heuristic = H_MODE.CLUSTER;
+		}
+		else if(e.getSource().equals(b_timeSliced)){
+			timeSliced = b_timeSliced.isSelected();
+		}
 		else if(e.getSource().equals(b_compare)){
 			AlgCompare a = new AlgCompare();
 			try {
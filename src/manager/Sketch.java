@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 
+import graphs.BinaryGraphFile;
 import graphs.Graph;
 import graphs.Heuristic.H_MODE;
 import graphs.Translator;
@@ -13,6 +14,8 @@ import thinking.*;
 import thinking.NormalAI.PATHMODE;
 import thinking.paths.Path;
 import thinking.paths.PathFinding;
+import thinking.paths.PathRequestService;
+import thinking.paths.SearchScheduler;
 import thinking.trees.TreeLearner;
 import thinking.trees.behaviortrees.MonsterBehaviorTree;
 import thinking.trees.decisiontrees.LearnedDecisionTree;
@@ -62,6 +65,10 @@ public class Sketch extends PApplet{
 	public LinkedList<Animation> animations = new LinkedList<Animation>();
 	/** Active paths to draw */
 	public LinkedList<Path> activePaths = new LinkedList<Path>();
+	/** The service that finds paths for characters off the game loop (null to find them right away) */
+	public PathRequestService pathRequests = new PathRequestService();
+	/** The scheduler that runs time-sliced searches for characters (null to use the path request service instead) */
+	public SearchScheduler searchScheduler = null;
 	/** The updater component this this game */
 	public Updater u = new SimpleUpdater();
 	/** The queue of objects to add to the game */
@@ -100,6 +107,8 @@ public class Sketch extends PApplet{
 	@Override
 	public void settings(){
 		heuristic = Runner.heuristic;
+		if(Runner.timeSliced)
+			searchScheduler = new SearchScheduler();
 		bg = loadImage("backgrounds/room.jpg");
 		mode = Runner.lastMode;
 		size(WIDTH,  HEIGHT);
@@ -138,6 +147,12 @@ public class Sketch extends PApplet{
 			image(bg, 0, 0);
 		else
 			background(50);
+		// Hand out the paths found since the last frame
+		if(pathRequests != null)
+			pathRequests.deliver();
+		// Run this frame's share of the time-sliced searches
+		if(searchScheduler != null)
+			searchScheduler.tick();
 		// Add and remove objects to the game
 		for(GameObject g : removeQueue)
 			objects.remove(g);
@@ -266,6 +281,18 @@ public class Sketch extends PApplet{
 		removeQueue.add(g);
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * @see processing.core.PApplet#dispose()
+	 */
+	@Override
+	public void dispose(){
+		// Stop the path workers, so each sketch doesn't leave its threads behind
+		if(pathRequests != null)
+			pathRequests.shutdown();
+		super.dispose();
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see processing.core.PApplet#mouseClicked(processing.event.MouseEvent)
@@ -289,7 +316,8 @@ public class Sketch extends PApplet{
 		// Set up a controlled path-following character for certain demo modes
 		else if((mode == SKETCHMODE.PATHFOLLOWING) || (mode == SKETCHMODE.BEHAVIORTREE) || (mode == SKETCHMODE.L_DECISIONTREE)){
 			if((controlledCharacter != null) && (controlledCharacter.thinker instanceof NormalAI) && (((Actor) controlledCharacter).isAlive)){
-				activePaths.add(((NormalAI) controlledCharacter.thinker).pathFollowTo(new Target(new PVector(event.getX(), event.getY())), PATHMODE.FORGET));
+				((NormalAI) controlledCharacter.thinker).drawsPaths = true;
+				((NormalAI) controlledCharacter.thinker).pathFollowTo(new Target(new PVector(event.getX(), event.getY())), PATHMODE.FORGET);
 				int[] filler = {255, 0, 0, 255};
 				animations.add(new Circle(filler, 0, 30, 90, translator.localize(translator.quantize(new PVector(event.getX(), event.getY())))));
 			}
@@ -380,11 +408,17 @@ public class Sketch extends PApplet{
 		((NormalAI) controlledCharacter.thinker).steeringWander(600);
 	}
 	
+	// This method loads the room's graph and mapping (from the binary graph file when it's up to date) and makes a path finder for it
+	private PathFinding loadRoom(){
+		BinaryGraphFile room = BinaryGraphFile.forFiles(new File("graphfiles/custom.graph"), new File("graphfiles/custom.map"), true);
+		graph = room.getGraph();
+		translator = room.getTranslator();
+		return new PathFinding(translator, room.getSnapshot());
+	}
+	
 	// This method sets up the pathfinding demo
 	private void setupPathFollowing() {
-		graph = new Graph(new File("graphfiles/custom.graph"), true);
-		translator = new Translator(graph, new File("graphfiles/custom.map"));
-		PathFinding p = new PathFinding(translator);
+		PathFinding p = loadRoom();
 		GameObject g = new Actor(this, guidMarker++);
 		g.updater = u;
 		g.thinker = new NormalAI(g, p);
@@ -397,9 +431,7 @@ public class Sketch extends PApplet{
 	
 	// This method sets up the decision tree demo
 	private void setupDecisionTree(){
-		graph = new Graph(new File("graphfiles/custom.graph"), true);
-		translator = new Translator(graph, new File("graphfiles/custom.map"));
-		PathFinding p = new PathFinding(translator);
+		PathFinding p = loadRoom();
 		GameObject g = new Face(this, guidMarker++);
 		g.updater = u;
 		g.thinker = new NormalAI(g, p);
@@ -411,9 +443,7 @@ public class Sketch extends PApplet{
 	}
 	
 	private void setupBehaviorTree(){
-		graph = new Graph(new File("graphfiles/custom.graph"), true);
-		translator = new Translator(graph, new File("graphfiles/custom.map"));
-		PathFinding p = new PathFinding(translator);
+		PathFinding p = loadRoom();
 		GameObject g = new Monster(this, guidMarker++);
 		g.setFill(0, 255, 0, 255);
 		g.layer = 1;
@@ -444,9 +474,7 @@ public class Sketch extends PApplet{
 	
 	// This method sets up for loading and running a learned decision tree for the monster
 	private void setupLearningTree(){
-		graph = new Graph(new File("graphfiles/custom.graph"), true);
-		translator = new Translator(graph, new File("graphfiles/custom.map"));
-		PathFinding p = new PathFinding(translator);
+		PathFinding p = loadRoom();
 		GameObject g = new Monster(this, guidMarker++);
 		g.setFill(0, 255, 0, 255);
 		g.layer = 1;
@@ -4,6 +4,9 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 import graphs.Vertex;
 import thinking.kinematic.Kinematic;
@@ -11,13 +14,17 @@ import thinking.kinematic.KinematicArrive;
 import thinking.kinematic.KinematicFace;
 import thinking.kinematic.KinematicSeek;
 import thinking.kinematic.KinematicWander;
+import thinking.paths.DStarLite;
+import thinking.paths.FlowField;
 import thinking.paths.Path;
 import thinking.paths.PathFinding;
+import thinking.paths.TimeSlicedSearch;
 import thinking.steering.Steering;
 import thinking.steering.SteeringAlign;
 import thinking.steering.SteeringArrive;
 import thinking.steering.SteeringSeek;
 import thinking.steering.SteeringWander;
+import manager.Settings;
 import model.GameObject;
 import model.Monster;
 import model.Target;
@@ -32,7 +39,13 @@ public class NormalAI implements AI{
 	public enum PATHMODE{
 		FORGET,
 		PREEMPT,
-		QUEUE
+		QUEUE,
+		/** Follow a moving target, repairing the last search instead of starting a new one */
+		REPLAN,
+		/** Follow the flow field toward the target, which is shared by every character heading to the same place */
+		FLOW,
+		/** Start moving at once, working out each step with a real-time search that learns as it is followed */
+		REALTIME
 	}
 	
 	/** The number of implemented behaviors */
@@ -72,6 +85,20 @@ public class NormalAI implements AI{
 	private Path currentPath = null;
 	/** The path finding component tied to this AI component */
 	protected PathFinding pathFinder = null;
+	/** The path asked for but not delivered yet (null if not waiting on one) */
+	private CompletableFuture<Path> pendingPath = null;
+	/** The time-sliced search for the next path, while it is running (null if not searching) */
+	private TimeSlicedSearch slicedSearch = null;
+	/** The planner that keeps its search tree for following a moving target (made when first needed) */
+	private DStarLite replanner = null;
+	/** The index of the goal vertex the replanner last planned to (-1 if none) */
+	private int replanGoal = -1;
+	/** The index of the goal vertex of the flow field being followed (-1 if none) */
+	private int flowGoal = -1;
+	/** The index of the goal vertex of the real-time search being followed (-1 if none) */
+	private int realTimeGoal = -1;
+	/** Whether or not the paths this character follows are drawn */
+	public boolean drawsPaths = false;
 	/** A list of irregular behaviors the AI should be running */
 	private LinkedList<Behavior> otherBehaviors = new LinkedList<Behavior>();
 	
@@ -103,26 +130,33 @@ public class NormalAI implements AI{
 	 * This method will tell this AI instance to find a path to the
 	 * given target and follow it. It also gives you the option to forget
 	 * the current path, preempt it, or queue the new path.
-	 * (forget mode is the only supported mode as of now)
+	 * (forget mode is the only supported mode as of now, besides replan mode for chasing a moving target,
+	 * which is cheap enough to call every tick: it only replans when the target reaches a new vertex, and
+	 * flow mode, which is just as cheap and lets many characters share one search toward the same target, and
+	 * real-time mode, which starts moving at once and only searches a bounded number of vertices per step)
+	 * If the sketch has a search scheduler, the path is found a little each tick by a time-sliced search,
+	 * or if it has a path request service, the path is found in the background. Either way the character
+	 * keeps following its current path until the new one is ready.
 	 * @param t The Target to find a path to.
 	 * @param queueMode How should we handle the new path and the current path?
-	 * @return The new path made (if any).
+	 * @return The path being followed now (the new path, unless it is still being found).
 	 */
 	public Path pathFollowTo(Target t, PATHMODE queueMode){
 		if(pathFinder == null)
 			return null;
 		switch(queueMode){
-			case FORGET:	if(currentPath != null){
-								// Fade away the current path
-								if(!(g instanceof Monster)){
-									g.parent.animations.addAll(currentPath.fadePath());
-									g.parent.activePaths.remove(currentPath);
-								}
-							}
-							// Clear any queued paths
+			case FORGET:	// Clear any queued paths
 							queuedPathTargets.clear();
-							// Immediately find a path to the target and follow it
-							doPathNow(t);
+							replanGoal = -1;
+							flowGoal = -1;
+							realTimeGoal = -1;
+							// Find a path to the target and follow it as soon as it's found
+							if(g.parent.searchScheduler != null)
+								slicePath(t);
+							else if(g.parent.pathRequests != null)
+								requestPath(t);
+							else
+								doPathNow(t);
 							break;
 			case PREEMPT:	/**if(currentPathNode != null)
 								queuedPathTargets.addFirst(currentPathNode);
@@ -130,6 +164,15 @@ public class NormalAI implements AI{
 							break;
 			case QUEUE:		//queuedPathTargets.addLast(t);
 							break;
+			case REPLAN:	queuedPathTargets.clear();
+							replanTo(t);
+							break;
+			case FLOW:		queuedPathTargets.clear();
+							flowTo(t);
+							break;
+			case REALTIME:	queuedPathTargets.clear();
+							realTimeTo(t);
+							break;
 			default:		break;
 		}
 		// Re-target all active behaviors
@@ -137,6 +180,35 @@ public class NormalAI implements AI{
 		return currentPath;
 	}
 	
+	/**
+	 * This method will tell this AI instance to find a path to whichever of the given targets is closest
+	 * and follow it, forgetting the current path. All of the targets are searched for at once, so this
+	 * costs about as much as finding a path to the closest one alone.
+	 * If the sketch has a path request service, the path is found in the background, and the character
+	 * keeps following its current path until the new one is ready.
+	 * @param targets The Targets to find the closest of.
+	 * @return The path being followed now (the new path, unless it is still being found; null if none of the targets can be reached).
+	 */
+	public Path pathFollowToNearest(Collection<Target> targets){
+		if(pathFinder == null)
+			return null;
+		queuedPathTargets.clear();
+		stopSearch();
+		pendingPath = null;
+		replanGoal = -1;
+		flowGoal = -1;
+		realTimeGoal = -1;
+		List<Vertex> goals = new LinkedList<Vertex>();
+		for(Target t : targets)
+			goals.add(pathFinder.translator.quantize(t.position));
+		if(g.parent.pathRequests != null)
+			requestNearest(goals);
+		else
+			doNearestNow(goals);
+		retarget();
+		return currentPath;
+	}
+	
 	/**
 	 * This gets the current path the character is following.
 	 * @return The current path.
@@ -145,6 +217,14 @@ public class NormalAI implements AI{
 		return currentPath;
 	}
 	
+	/**
+	 * This will determine if the character has a path to follow, or is waiting for one to be found.
+	 * @return True if there is a current path or one on the way.
+	 */
+	public boolean hasPath(){
+		return (currentPath != null) || (pendingPath != null) || (slicedSearch != null);
+	}
+	
 	/**
 	 * This clears all behaviors queued for this character.
 	 */
@@ -186,6 +266,12 @@ public class NormalAI implements AI{
 	 */
 	@Override
 	public boolean runBehaviors(){
+		// Switch to the new path once its search is done
+		if((slicedSearch != null) && slicedSearch.isDone()){
+			Path p = slicedSearch.getPath();
+			slicedSearch = null;
+			followPath(p);
+		}
 		for(int i = 0 ; i < NUM_BEHAVIORS ; i++)
 			doBehaviorFor(targetMaps[i].values(), i);
 		doBehaviorFor(otherBehaviors, -1);
@@ -514,7 +600,7 @@ public class NormalAI implements AI{
 				if(!queuedPathTargets.isEmpty()){
 					Vertex start = pathFinder.translator.quantize(g.position);
 					Vertex end = pathFinder.translator.quantize(queuedPathTargets.removeFirst().position);
-					currentPath = pathFinder.aStar(start, end, g.parent.heuristic);
+					currentPath = pathFinder.findPath(start, end, g.parent.heuristic);
 					currentPathNode = currentPath.getFirst();
 				}
 				// Otherwise we are done path following
@@ -560,13 +646,135 @@ public class NormalAI implements AI{
 		// Quantize the target
 		Vertex quantizedTarget = pathFinder.translator.quantize(t.position);
 		// Compute a path to the target
-		Path newPath = pathFinder.aStar(pathFinder.translator.quantize(g.position), quantizedTarget, g.parent.heuristic);
+		followPath(pathFinder.findPath(pathFinder.translator.quantize(g.position), quantizedTarget, g.parent.heuristic));
+	}
+	
+	// This will ask for a path to the given target, and follow it once it is delivered (unless another was asked for since)
+	private void requestPath(final Target t){
+		stopSearch();
+		Vertex quantizedTarget = pathFinder.translator.quantize(t.position);
+		followWhenDelivered(g.parent.pathRequests.request(pathFinder, pathFinder.translator.quantize(g.position), quantizedTarget, g.parent.heuristic), new Runnable(){
+			@Override
+			public void run(){
+				doPathNow(t);
+			}
+		});
+	}
+	
+	// This will compute a path to the closest of the given goals and immediately follow it
+	private void doNearestNow(List<Vertex> goals){
+		followPath(pathFinder.findNearest(pathFinder.translator.quantize(g.position), goals, g.parent.heuristic));
+	}
+	
+	// This will ask for a path to the closest of the given goals, and follow it once it is delivered (unless another was asked for since)
+	private void requestNearest(final List<Vertex> goals){
+		followWhenDelivered(g.parent.pathRequests.requestNearest(pathFinder, pathFinder.translator.quantize(g.position), goals, g.parent.heuristic), new Runnable(){
+			@Override
+			public void run(){
+				doNearestNow(goals);
+			}
+		});
+	}
+	
+	// This will wait on a path asked for, and follow it once it is delivered (unless another was asked for since)
+	// If the search fails, the fallback is run to find the path right away instead
+	private void followWhenDelivered(final CompletableFuture<Path> request, final Runnable fallback){
+		pendingPath = request;
+		request.whenComplete(new BiConsumer<Path, Throwable>(){
+			@Override
+			public void accept(Path p, Throwable error){
+				if(pendingPath != request)
+					return;
+				pendingPath = null;
+				if(error != null){
+					Settings.fail("Unable to find a path in the background (" + error + "), finding it now!");
+					fallback.run();
+					return;
+				}
+				followPath(p);
+			}
+		});
+	}
+	
+	// This will start a time-sliced search for a path to the given target, replacing any search still running
+	private void slicePath(Target t){
+		stopSearch();
+		pendingPath = null;
+		Vertex quantizedTarget = pathFinder.translator.quantize(t.position);
+		slicedSearch = g.parent.searchScheduler.submit(pathFinder, pathFinder.translator.quantize(g.position), quantizedTarget, g.parent.heuristic);
+	}
+	
+	// This will repair the path to a target that may have moved since the last plan, and follow it
+	private void replanTo(Target t){
+		int goal = pathFinder.translator.quantize(t.position).getIndex();
+		// Nothing to do if the target is still at the same vertex
+		if((currentPath != null) && (goal == replanGoal) && (pendingPath == null) && (slicedSearch == null))
+			return;
+		stopSearch();
+		pendingPath = null;
+		// Start a new tree if the graph or heuristic changed
+		if((replanner == null) || (replanner.getGraph() != pathFinder.getSnapshot()) || (replanner.getHeuristic() != g.parent.heuristic))
+			replanner = pathFinder.beginReplanning(g.parent.heuristic);
+		replanGoal = goal;
+		flowGoal = -1;
+		realTimeGoal = -1;
+		followPath(replanner.findPath(pathFinder.translator.quantize(g.position).getIndex(), goal));
+	}
+	
+	// This will follow the shared flow field toward a target, unless it is already being followed to the same vertex
+	private void flowTo(Target t){
+		Vertex goal = pathFinder.translator.quantize(t.position);
+		if((currentPath != null) && (goal.getIndex() == flowGoal) && (pendingPath == null) && (slicedSearch == null))
+			return;
+		stopSearch();
+		pendingPath = null;
+		FlowField field = pathFinder.getFlowField(goal);
+		flowGoal = goal.getIndex();
+		replanGoal = -1;
+		realTimeGoal = -1;
+		followPath(field.pathFrom(pathFinder.translator.quantize(g.position).getIndex()));
+	}
+	
+	// This will follow a real-time search toward a target, unless it is already being followed to the same vertex
+	private void realTimeTo(Target t){
+		Vertex goal = pathFinder.translator.quantize(t.position);
+		if((currentPath != null) && (goal.getIndex() == realTimeGoal) && (pendingPath == null) && (slicedSearch == null))
+			return;
+		stopSearch();
+		pendingPath = null;
+		realTimeGoal = goal.getIndex();
+		replanGoal = -1;
+		flowGoal = -1;
+		followPath(pathFinder.realTime(pathFinder.translator.quantize(g.position), goal, g.parent.heuristic));
+	}
+	
+	// This will stop the time-sliced search, if one is running
+	private void stopSearch(){
+		if(slicedSearch != null){
+			g.parent.searchScheduler.cancel(slicedSearch);
+			slicedSearch = null;
+		}
+	}
+	
+	// This will replace the current path with a new one and start following it
+	private void followPath(Path newPath){
+		if(currentPath != null){
+			// Fade away the current path
+			if(!(g instanceof Monster)){
+				g.parent.animations.addAll(currentPath.fadePath());
+				g.parent.activePaths.remove(currentPath);
+			}
+		}
 		// Set the active path and target
 		currentPath = newPath;
-		currentPathNode = newPath.getFirst();
+		currentPathNode = (newPath == null) ? null : newPath.getFirst();
 		// Clear active behaviors and generate new ones
 		clearQueuedBehaviors();
 		clearActiveBehaviors();
+		if(currentPath == null)
+			return;
+		if(drawsPaths)
+			g.parent.activePaths.add(currentPath);
 		if(currentPath.isLast(currentPathNode))
 			steeringArrive(currentPathNode);
 		else
@@ -576,6 +784,11 @@ public class NormalAI implements AI{
 	public void clearPaths() {
 		this.currentPath = null;
 		this.currentPathNode = null;
+		this.pendingPath = null;
+		this.replanGoal = -1;
+		this.flowGoal = -1;
+		this.realTimeGoal = -1;
+		stopSearch();
 		this.queuedPathTargets.clear();
 	}
 }
@@ -0,0 +1,239 @@
+package thinking.paths;
+
+import java.util.Arrays;
+
+import graphs.CSRGraph;
+import graphs.Heuristic;
+import graphs.Heuristic.H_MODE;
+
+/**
+ * This class runs Anytime Repairing A* (ARA*). The first call to improve runs weighted A* with the
+ * starting weight, which finds a path quickly whose cost is at most that weight times the shortest.
+ * Each later call lowers the weight and searches again, reusing the costs already found: only the
+ * vertices whose costs went down since they were expanded (and the open list) are searched from, so
+ * each better path costs much less than a fresh search. Once the weight reaches 1 the path is the shortest.
+ * The bound reported with each path is the weight, or less when the costs found so far prove a tighter one.
+ * The heuristic should be admissible for the bounds to hold.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class ARAStar {
+
+	/** The cost of a vertex that hasn't been reached */
+	private static final float INF = Float.POSITIVE_INFINITY;
+
+	/** The snapshot being searched */
+	private final CSRGraph graph;
+	/** The index of the start vertex */
+	private final int start;
+	/** The index of the goal vertex */
+	private final int goal;
+	/** The type of heuristic used */
+	private final H_MODE heuristic;
+	/** The precomputed tables for the heuristic (null if it only needs coordinates) */
+	private final PrecomputedHeuristic tables;
+	/** How much the weight is lowered after each path */
+	private final float step;
+	/** The cost so far of each vertex */
+	private final float[] g;
+	/** The parent of each vertex on the search tree */
+	private final int[] parents;
+	/** The pass each vertex was last expanded in (vertices expanded in this pass are closed) */
+	private final int[] closed;
+	/** Whether or not each vertex is on the inconsistent list */
+	private final boolean[] inconsistent;
+	/** The vertices whose cost went down after they were expanded in this pass */
+	private int[] incons = new int[16];
+	/** The number of vertices on the inconsistent list */
+	private int inconsSize = 0;
+	/** The open list, keyed by cost so far plus the weighted heuristic */
+	private final IndexedHeap open;
+	/** The current weight on the heuristic */
+	private float weight;
+	/** The number of the current pass (starting at 1) */
+	private int pass = 0;
+	/** The total number of vertices expanded over every pass */
+	private int visited = 0;
+	/** The bound proven for the last path found */
+	private float bound = INF;
+	/** The stats collected over every pass (null if not collecting) */
+	private final SearchStats stats;
+
+	/**
+	 * This constructs a search, ready for its first pass.
+	 * @param graph The snapshot to search. It must have coordinates for the heuristic and path.
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the vertex to find a path to.
+	 * @param heuristic The type of heuristic to use.
+	 * @param tables The precomputed tables for the heuristic (null if it only needs coordinates).
+	 * @param weight The weight to use for the first pass (at least 1).
+	 * @param step How much to lower the weight after each pass (more than 0).
+	 * @param stats The stats to count every pass into (null to not count). They are kept on the paths.
+	 */
+	public ARAStar(CSRGraph graph, int start, int goal, H_MODE heuristic, PrecomputedHeuristic tables, float weight, float step, SearchStats stats){
+		int n = graph.getNumberOfVertices();
+		this.graph = graph;
+		this.start = start;
+		this.goal = goal;
+		this.heuristic = heuristic;
+		this.tables = tables;
+		this.weight = Math.max(1, weight);
+		this.step = step;
+		this.stats = stats;
+		g = new float[n];
+		parents = new int[n];
+		closed = new int[n];
+		inconsistent = new boolean[n];
+		open = new IndexedHeap(n);
+		Arrays.fill(g, INF);
+		g[start] = 0;
+		parents[start] = -1;
+		if(stats != null)
+			stats.offer(open, start);
+		open.insertOrDecrease(start, key(start));
+	}
+
+	/**
+	 * This runs the next pass, with a lower weight than the last one (except for the first pass).
+	 * @return The path found, with its bound and the total vertices expanded so far, or null if there is no path.
+	 */
+	public Path improve(){
+		if(stats != null)
+			stats.resume();
+		if(pass > 0){
+			weight = Math.max(1, weight - step);
+			reopen();
+		}
+		pass++;
+		search();
+		if(stats != null)
+			stats.stop();
+		if(g[goal] == INF)
+			return null;
+		bound = Math.min(weight, provenBound());
+		int length = 1;
+		for(int v = goal ; v != start ; v = parents[v])
+			length++;
+		int[] vertices = new int[length];
+		vertices[0] = start;
+		for(int i = length - 1, v = goal ; i > 0 ; i--, v = parents[v])
+			vertices[i] = v;
+		Path p = Path.through(graph, vertices);
+		p.verticesVistedOnCreation = visited;
+		p.bound = bound;
+		p.stats = stats;
+		return p;
+	}
+
+	/**
+	 * This will determine if the last path found is known to be the shortest.
+	 * @return True once a pass has run with a weight of 1, or the costs found prove a bound of 1.
+	 */
+	public boolean isOptimal(){
+		return (pass > 0) && ((weight <= 1) || (bound <= 1));
+	}
+
+	/**
+	 * This gets the weight the last pass used.
+	 * @return The weight.
+	 */
+	public float getWeight(){
+		return weight;
+	}
+
+	/**
+	 * This gets the bound proven for the last path found.
+	 * @return The most the last path's cost can be over the shortest path's cost, as a multiple.
+	 */
+	public float getBound(){
+		return bound;
+	}
+
+	/**
+	 * This gets the number of vertices expanded over every pass.
+	 * @return The number of vertices expanded.
+	 */
+	public int getVisited(){
+		return visited;
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This expands vertices until nothing on the open list could give the goal a lower key than it has
+	private void search(){
+		while(!open.isEmpty() && (open.peekKey() < key(goal))){
+			int x = open.pop();
+			closed[x] = pass;
+			visited++;
+			if(stats != null){
+				stats.expanded++;
+				stats.relaxed += graph.endEdge(x) - graph.firstEdge(x);
+			}
+			for(int e = graph.firstEdge(x), end = graph.endEdge(x) ; e < end ; e++){
+				int y = graph.getTarget(e);
+				float cost = g[x] + graph.getCost(e);
+				if(cost < g[y]){
+					g[y] = cost;
+					parents[y] = x;
+					// Vertices already expanded in this pass wait for the next one instead of being expanded again
+					if(closed[y] != pass){
+						if(stats != null)
+							stats.offer(open, y);
+						open.update(y, key(y));
+					}
+					else if(!inconsistent[y]){
+						inconsistent[y] = true;
+						if(inconsSize == incons.length)
+							incons = Arrays.copyOf(incons, inconsSize * 2);
+						incons[inconsSize++] = y;
+					}
+				}
+			}
+		}
+	}
+
+	// This puts the open list back together for the next pass: every vertex on it and on the inconsistent list, keyed with the new weight
+	private void reopen(){
+		int[] waiting = new int[open.size() + inconsSize];
+		int size = 0;
+		for(int i = 0, end = open.size() ; i < end ; i++)
+			waiting[size++] = open.get(i);
+		for(int i = 0 ; i < inconsSize ; i++){
+			inconsistent[incons[i]] = false;
+			waiting[size++] = incons[i];
+		}
+		inconsSize = 0;
+		for(int i = 0 ; i < size ; i++)
+			open.update(waiting[i], key(waiting[i]));
+	}
+
+	// This proves a bound from the lowest unweighted f-score of any vertex that could still improve the path
+	private float provenBound(){
+		float lowest = INF;
+		for(int i = 0, end = open.size() ; i < end ; i++)
+			lowest = Math.min(lowest, g[open.get(i)] + estimate(open.get(i)));
+		for(int i = 0 ; i < inconsSize ; i++)
+			lowest = Math.min(lowest, g[incons[i]] + estimate(incons[i]));
+		if(lowest == INF)
+			return 1;
+		if(lowest <= 0)
+			return INF;
+		return Math.max(1, g[goal] / lowest);
+	}
+
+	// This gets the key of a vertex: its cost so far plus the weighted heuristic
+	private float key(int v){
+		return g[v] + weight * estimate(v);
+	}
+
+	// This gets the heuristic value from a vertex to the goal
+	private float estimate(int v){
+		if(heuristic == null)
+			return 0;
+		if(tables != null)
+			return tables.estimate(v, goal);
+		return Heuristic.getHeuristic(graph, v, goal, heuristic);
+	}
+}
@@ -0,0 +1,190 @@
+package thinking.paths;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+import graphs.CSRGraph;
+
+/**
+ * This class holds the shortest paths between every pair of vertices of a small snapshot: the
+ * distance from each vertex to each other vertex, and the first vertex to go to on the way. A path
+ * is then built by following the first hops from the start to the goal, with no search at all.
+ * The tables are computed with one Dijkstra's search from every vertex, in parallel. They take
+ * n * n entries each, so they are only built for graphs up to a limit on the number of vertices.
+ * The first hops are kept as shorts when the vertex indices fit, to halve their size.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class AllPairsTable {
+
+	/** The most vertices to build tables for if no other limit is given */
+	public static final int DEFAULT_LIMIT = 2048;
+
+	/** The snapshot these tables were computed for */
+	private final CSRGraph graph;
+	/** The number of vertices */
+	private final int n;
+	/** The distance from each vertex to each vertex, at [from * n + to] */
+	private final float[] dist;
+	/** The first hop from each vertex to each vertex, at [from * n + to] (null if the indices don't fit in a short) */
+	private final short[] shortHops;
+	/** The first hop from each vertex to each vertex, at [from * n + to] (null if shortHops is used) */
+	private final int[] intHops;
+
+	// This makes empty tables for a snapshot, to be filled in by the row tasks
+	private AllPairsTable(CSRGraph graph){
+		this.graph = graph;
+		this.n = graph.getNumberOfVertices();
+		dist = new float[n * n];
+		if(n <= Short.MAX_VALUE){
+			shortHops = new short[n * n];
+			intHops = null;
+		}
+		else{
+			shortHops = null;
+			intHops = new int[n * n];
+		}
+	}
+
+	/**
+	 * This computes the tables for a snapshot, unless it has too many vertices.
+	 * @param g The snapshot to compute tables for.
+	 * @param limit The most vertices to compute tables for.
+	 * @return The tables, or null if the snapshot has more vertices than the limit.
+	 */
+	public static AllPairsTable compute(CSRGraph g, int limit){
+		int n = g.getNumberOfVertices();
+		// The tables are indexed with ints, so they can't go past that either
+		if((n > limit) || ((long) n * n > Integer.MAX_VALUE))
+			return null;
+		AllPairsTable table = new AllPairsTable(g);
+		ParallelRows<Void> rows = new ParallelRows<Void>(n);
+		for(int s = 0 ; s < n ; s++)
+			rows.submit(table.new RowTask(s));
+		rows.join();
+		return table;
+	}
+
+	/**
+	 * This gets the cost of the shortest path from one vertex to another.
+	 * @param from The index of the vertex to start at.
+	 * @param to The index of the vertex to go to.
+	 * @return The distance, or Float.POSITIVE_INFINITY if there is no path.
+	 */
+	public float getDistance(int from, int to){
+		return dist[from * n + to];
+	}
+
+	/**
+	 * This gets the first vertex to go to on the shortest path from one vertex to another.
+	 * @param from The index of the vertex to start at.
+	 * @param to The index of the vertex to go to.
+	 * @return The index of the next vertex, or -1 if the vertices are the same or there is no path.
+	 */
+	public int nextHop(int from, int to){
+		return (shortHops != null) ? shortHops[from * n + to] : intHops[from * n + to];
+	}
+
+	/**
+	 * This builds the shortest path between two vertices by following the first hops.
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the vertex to go to.
+	 * @return A path object representing the shortest path, or null if there isn't one.
+	 */
+	public Path findPath(int start, int goal){
+		if(getDistance(start, goal) == Float.POSITIVE_INFINITY)
+			return null;
+		int length = 1;
+		for(int v = start ; v != goal ; v = nextHop(v, goal))
+			length++;
+		int[] vertices = new int[length];
+		vertices[0] = start;
+		for(int i = 1 ; i < length ; i++)
+			vertices[i] = nextHop(vertices[i - 1], goal);
+		return Path.through(graph, vertices);
+	}
+
+	/**
+	 * This gets the snapshot these tables were computed for.
+	 * @return The snapshot.
+	 */
+	public CSRGraph getGraph(){
+		return graph;
+	}
+
+	/**
+	 * This gives a rough count of the bytes used by the tables.
+	 * @return The size of the tables in bytes.
+	 */
+	public long getMemoryFootprint(){
+		long cells = (long) n * n;
+		return 4L * cells + ((shortHops != null) ? 2L * cells : 4L * cells);
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This sets the first hop from one vertex to another
+	private void setHop(int from, int to, int hop){
+		if(shortHops != null)
+			shortHops[from * n + to] = (short) hop;
+		else
+			intHops[from * n + to] = hop;
+	}
+
+	/**
+	 * This class fills in the row of the tables for one vertex with a Dijkstra's search from it.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	@SuppressWarnings("serial")
+	private class RowTask extends RecursiveAction {
+
+		/** The vertex to search from */
+		private final int source;
+
+		/**
+		 * This constructs a task to fill in the row for a vertex.
+		 * @param source The index of the vertex.
+		 */
+		RowTask(int source){
+			this.source = source;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute(){
+			int row = source * n;
+			Arrays.fill(dist, row, row + n, Float.POSITIVE_INFINITY);
+			for(int v = 0 ; v < n ; v++)
+				setHop(source, v, -1);
+			SearchWorkspace ws = SearchWorkspace.forThread(n);
+			ws.reach(source, 0, -1);
+			ws.open.insertOrDecrease(source, 0);
+			while(!ws.open.isEmpty()){
+				int x = ws.open.pop();
+				ws.close(x);
+				float csf = ws.getCost(x);
+				dist[row + x] = csf;
+				// Vertices come off the open list after their parents, so the parent's first hop is already known
+				int parent = ws.getParent(x);
+				if(parent == source)
+					setHop(source, x, x);
+				else if(parent >= 0)
+					setHop(source, x, nextHop(source, parent));
+				for(int e = graph.firstEdge(x), end = graph.endEdge(x) ; e < end ; e++){
+					int y = graph.getTarget(e);
+					float cost = csf + graph.getCost(e);
+					if(!ws.isClosed(y) && (cost < ws.getCost(y))){
+						ws.reach(y, cost, x);
+						ws.open.insertOrDecrease(y, cost);
+					}
+				}
+			}
+		}
+	}
+}
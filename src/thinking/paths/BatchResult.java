@@ -0,0 +1,62 @@
+package thinking.paths;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds the paths found by a batch of queries run together by PathFinding.findAll, in the
+ * order the queries were given, along with totals for the whole batch: how many paths were found, how
+ * many vertices were expanded, how many threads shared the work, and how long the batch took.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class BatchResult {
+
+	/** The path for each query, in the order they were given (null where there is no path) */
+	public final List<Path> paths;
+	/** The number of queries that found a path */
+	public int found = 0;
+	/** The number of vertices expanded by every query together */
+	public long expanded = 0;
+	/** The number of threads the queries were spread over */
+	public int threads = 1;
+	/** The time from the first query starting to the last one finishing, in nanoseconds */
+	public long nanos = 0;
+
+	/**
+	 * This constructs the results for a batch from the paths found.
+	 * @param paths The path for each query, in order (null where there is no path).
+	 */
+	BatchResult(Path[] paths){
+		this.paths = Collections.unmodifiableList(Arrays.asList(paths));
+		for(Path p : paths){
+			if(p != null){
+				found++;
+				expanded += p.verticesVistedOnCreation;
+			}
+		}
+	}
+
+	/**
+	 * This gets how many queries the batch got through per second.
+	 * @return The number of queries per second (0 if no time was measured).
+	 */
+	public double getThroughput(){
+		return (nanos == 0) ? 0 : paths.size() * 1e9 / nanos;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString(){
+		return "Queries: " + paths.size() + "\n"
+			 + "Paths Found: " + found + "\n"
+			 + "Vertices Expanded: " + expanded + "\n"
+			 + "Threads: " + threads + "\n"
+			 + "Batch Time: " + (nanos / 1000000) + "ms\n"
+			 + "Throughput: " + Math.round(getThroughput()) + " queries/s";
+	}
+}
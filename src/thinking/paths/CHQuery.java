@@ -0,0 +1,235 @@
+package thinking.paths;
+
+import java.util.Arrays;
+
+import graphs.CSRGraph;
+
+/**
+ * This class answers shortest path queries on a Contraction Hierarchy.
+ * It runs Dijkstra's algorithm upward from the start and (against the edges) upward from the goal at
+ * the same time. The highest ranked vertex on the shortest path is reached by both searches, so the
+ * best meeting point found gives the shortest path. Each search stops once its open list can't beat
+ * the best meeting point, and vertices that can be reached more cheaply from a higher ranked vertex
+ * are stalled (not expanded), since they can't be on a shortest path up the hierarchy.
+ * The shortcuts on the path are then unpacked back into the original edges.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class CHQuery {
+
+	/** The hierarchy to search */
+	private final ContractionHierarchy ch;
+	/** The snapshot the hierarchy was built for, used for the vertex locations */
+	private final CSRGraph graph;
+
+	/**
+	 * This constructs a query engine for a hierarchy.
+	 * @param ch The hierarchy to search. The snapshot it was built for must have coordinates to build paths from.
+	 */
+	public CHQuery(ContractionHierarchy ch){
+		this.ch = ch;
+		this.graph = ch.getGraph();
+	}
+
+	/**
+	 * This gets the snapshot the hierarchy was built for.
+	 * @return The snapshot.
+	 */
+	public CSRGraph getGraph(){
+		return graph;
+	}
+
+	/**
+	 * This finds the shortest path between two vertices.
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the vertex to find the shortest path to.
+	 * @return A path object representing the shortest path, or null if there isn't one.
+	 */
+	public Path findPath(int start, int goal){
+		return findPath(start, goal, null);
+	}
+
+	/**
+	 * This finds the shortest path between two vertices, counting the work done.
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the vertex to find the shortest path to.
+	 * @param stats The stats to count into (null to not count). They are stopped and kept on the path.
+	 * @return A path object representing the shortest path, or null if there isn't one.
+	 */
+	public Path findPath(int start, int goal, SearchStats stats){
+		int n = graph.getNumberOfVertices();
+		SearchWorkspace fwd = SearchWorkspace.forThread(n, SearchWorkspace.FORWARD);
+		SearchWorkspace bwd = SearchWorkspace.forThread(n, SearchWorkspace.BACKWARD);
+		int[] visited = new int[1];
+		int meet = search(start, goal, fwd, bwd, visited, stats);
+		if(meet < 0)
+			return null;
+		Path p = Path.through(graph, unpack(meet, fwd, bwd));
+		p.verticesVistedOnCreation = visited[0];
+		if(stats != null){
+			stats.stop();
+			p.stats = stats;
+		}
+		return p;
+	}
+
+	/**
+	 * This finds the vertices on the shortest path between two vertices.
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the vertex to find the shortest path to.
+	 * @return The index of every vertex on the shortest path in order, or null if there isn't one.
+	 */
+	public int[] findVertices(int start, int goal){
+		int n = graph.getNumberOfVertices();
+		SearchWorkspace fwd = SearchWorkspace.forThread(n, SearchWorkspace.FORWARD);
+		SearchWorkspace bwd = SearchWorkspace.forThread(n, SearchWorkspace.BACKWARD);
+		int meet = search(start, goal, fwd, bwd, new int[1], null);
+		return (meet < 0) ? null : unpack(meet, fwd, bwd);
+	}
+
+	/**
+	 * This finds the cost of the shortest path between two vertices, without unpacking the path.
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the vertex to find the distance to.
+	 * @return The cost of the shortest path, or Float.POSITIVE_INFINITY if there isn't one.
+	 */
+	public float distance(int start, int goal){
+		int n = graph.getNumberOfVertices();
+		SearchWorkspace fwd = SearchWorkspace.forThread(n, SearchWorkspace.FORWARD);
+		SearchWorkspace bwd = SearchWorkspace.forThread(n, SearchWorkspace.BACKWARD);
+		int meet = search(start, goal, fwd, bwd, new int[1], null);
+		return (meet < 0) ? Float.POSITIVE_INFINITY : fwd.getCost(meet) + bwd.getCost(meet);
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This runs both upward searches and returns the best meeting vertex (or -1), counting expanded vertices in visited[0]
+	// (and everything else in the stats, if there are any)
+	private int search(int s, int t, SearchWorkspace fwd, SearchWorkspace bwd, int[] visited, SearchStats stats){
+		float best = Float.MAX_VALUE;
+		int meet = -1;
+		fwd.reach(s, 0, -1);
+		fwd.open.insertOrDecrease(s, 0);
+		bwd.reach(t, 0, -1);
+		bwd.open.insertOrDecrease(t, 0);
+		boolean forward = false;
+		while(true){
+			boolean fwdDone = fwd.open.isEmpty() || (fwd.open.peekKey() >= best);
+			boolean bwdDone = bwd.open.isEmpty() || (bwd.open.peekKey() >= best);
+			if(fwdDone && bwdDone)
+				break;
+			// Take turns, unless one side is finished
+			forward = bwdDone || (!fwdDone && !forward);
+			SearchWorkspace ws = forward ? fwd : bwd;
+			SearchWorkspace other = forward ? bwd : fwd;
+			int x = ws.open.pop();
+			ws.close(x);
+			visited[0]++;
+			float csf = ws.getCost(x);
+			if(other.isReached(x) && (csf + other.getCost(x) < best)){
+				best = csf + other.getCost(x);
+				meet = x;
+			}
+			int reached = forward ? expand(x, csf, fwd, other, ch.upOffsets, ch.upTargets, ch.upCosts, ch.downOffsets, ch.downSources, ch.downCosts, best, stats)
+								  : expand(x, csf, bwd, other, ch.downOffsets, ch.downSources, ch.downCosts, ch.upOffsets, ch.upTargets, ch.upCosts, best, stats);
+			// Meeting the other search while relaxing finds a good path early, so both searches can stop sooner
+			if(reached >= 0){
+				best = ws.getCost(reached) + other.getCost(reached);
+				meet = reached;
+			}
+		}
+		return meet;
+	}
+
+	// This relaxes the upward edges of a vertex, unless a higher ranked vertex already reaches it more cheaply (stall-on-demand)
+	// It returns the vertex making the best new connection with the other search that beats the given cost, or -1
+	private int expand(int x, float csf, SearchWorkspace ws, SearchWorkspace other, int[] offsets, int[] targets, float[] costs,
+			int[] stallOffsets, int[] stallVertices, float[] stallCosts, float best, SearchStats stats){
+		if(stats != null)
+			stats.expanded++;
+		// Core vertices are searched with plain Dijkstra's, which already reaches them as cheaply as their neighbors can
+		if(ch.rank[x] < ch.coreRank){
+			for(int e = stallOffsets[x], end = stallOffsets[x + 1] ; e < end ; e++){
+				int u = stallVertices[e];
+				if(ws.isReached(u) && (ws.getCost(u) + stallCosts[e] < csf))
+					return -1;
+			}
+		}
+		int meet = -1;
+		if(stats != null)
+			stats.relaxed += offsets[x + 1] - offsets[x];
+		for(int e = offsets[x], end = offsets[x + 1] ; e < end ; e++){
+			int y = targets[e];
+			if(ws.isClosed(y))
+				continue;
+			float cost = csf + costs[e];
+			if(cost < ws.getCost(y)){
+				ws.reach(y, cost, x);
+				if(stats != null)
+					stats.offer(ws.open, y);
+				ws.open.insertOrDecrease(y, cost);
+				if(other.isReached(y) && (cost + other.getCost(y) < best)){
+					best = cost + other.getCost(y);
+					meet = y;
+				}
+			}
+		}
+		return meet;
+	}
+
+	// This rebuilds the full path of original vertices from the two search trees
+	private int[] unpack(int meet, SearchWorkspace fwd, SearchWorkspace bwd){
+		// Collect the hierarchy path: up from the start to the meeting vertex, then down to the goal
+		int[] packed = new int[16];
+		int size = 0;
+		for(int v = meet ; v != -1 ; v = fwd.getParent(v)){
+			if(size == packed.length)
+				packed = Arrays.copyOf(packed, size * 2);
+			packed[size++] = v;
+		}
+		reverse(packed, size);
+		for(int v = bwd.getParent(meet) ; v != -1 ; v = bwd.getParent(v)){
+			if(size == packed.length)
+				packed = Arrays.copyOf(packed, size * 2);
+			packed[size++] = v;
+		}
+		// Expand every shortcut into the two edges it replaced, until only original edges are left
+		int[] path = new int[Math.max(16, size * 2)];
+		int length = 0;
+		int[] stack = new int[32];
+		path[length++] = packed[0];
+		for(int i = 1 ; i < size ; i++){
+			int top = 0;
+			stack[top++] = packed[i];
+			int from = packed[i - 1];
+			while(top > 0){
+				int to = stack[top - 1];
+				int middle = ch.getMiddle(from, to);
+				if(middle < 0){
+					if(length == path.length)
+						path = Arrays.copyOf(path, length * 2);
+					path[length++] = to;
+					from = to;
+					top--;
+				}
+				else{
+					if(top == stack.length)
+						stack = Arrays.copyOf(stack, top * 2);
+					stack[top++] = middle;
+				}
+			}
+		}
+		return Arrays.copyOf(path, length);
+	}
+
+	// This reverses the first size entries of an array
+	private static void reverse(int[] a, int size){
+		for(int i = 0, j = size - 1 ; i < j ; i++, j--){
+			int temp = a[i];
+			a[i] = a[j];
+			a[j] = temp;
+		}
+	}
+}
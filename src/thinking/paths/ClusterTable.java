@@ -0,0 +1,398 @@
+package thinking.paths;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+import graphs.CSRGraph;
+import graphs.Heuristic;
+import manager.Settings;
+
+/**
+ * This class holds the tables for the cluster heuristic.
+ * The graph is split into clusters of vertices that are close to each other along the edges, and the
+ * shortest distance from each cluster to every other cluster (the cheapest path from any vertex in one
+ * to any vertex in the other) is computed ahead of time. That distance is a lower bound on the cost
+ * between any two vertices in those clusters, so estimating is one lookup in a dense matrix. Inside the
+ * goal's own cluster the table can't tell vertices apart, so the Euclidean distance is used instead,
+ * scaled down by the lowest cost per unit of length of any edge so it never overestimates either.
+ *
+ * The estimate follows walls and dead ends the way the actual edges do, so it expands far fewer vertices
+ * than the Euclidean distance on maze-like maps. It is admissible but not consistent (it can drop by more
+ * than an edge's cost when a path crosses into a cluster nearer the goal), so searches using it have to
+ * be willing to reopen closed vertices.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class ClusterTable implements PrecomputedHeuristic {
+
+	/** The number of clusters to make if no other number is given */
+	public static final int DEFAULT_COUNT = 128;
+	/** The first four bytes of every cluster file ("GACL") */
+	private static final int MAGIC = 0x4741434c;
+	/** The version of the format this class writes */
+	public static final int FORMAT_VERSION = 1;
+
+	/** The snapshot these tables were computed for */
+	private final CSRGraph graph;
+	/** The cluster of each vertex (-1 for vertices no cluster could reach) */
+	private final int[] clusters;
+	/** The number of clusters */
+	private final int count;
+	/** The distance from each cluster to each cluster, at [from * count + to] */
+	private final float[] table;
+	/** The lowest cost per unit of length of any edge (0 if the graph has no coordinates) */
+	private final float scale;
+
+	// This wraps up a finished set of tables
+	private ClusterTable(CSRGraph graph, int[] clusters, int count, float[] table){
+		this.graph = graph;
+		this.clusters = clusters;
+		this.count = count;
+		this.table = table;
+		this.scale = lowestCostPerLength(graph);
+	}
+
+	/**
+	 * This gets the cluster tables for a snapshot, loading them from the file next to the graph
+	 * file if they are there and still match the graph, or computing them (and saving them there) if not.
+	 * @param g The snapshot to get tables for.
+	 * @param graphFile The file the graph was loaded from (may be null to skip the disk).
+	 * @param count The number of clusters to make if the tables have to be computed.
+	 * @return The tables for the snapshot.
+	 */
+	public static ClusterTable forGraph(CSRGraph g, File graphFile, int count){
+		File f = (graphFile == null) ? null : fileFor(graphFile);
+		if((f != null) && f.isFile()){
+			try{
+				ClusterTable stored = load(g, f);
+				if(stored != null)
+					return stored;
+			} catch(IOException e){
+				Settings.fail("Unable to read cluster file, recomputing it!");
+			}
+		}
+		ClusterTable computed = compute(g, count);
+		if(f != null){
+			try{
+				computed.save(f);
+			} catch(IOException e){
+				Settings.fail("Unable to write cluster file!");
+			}
+		}
+		return computed;
+	}
+
+	/**
+	 * This gets the file the cluster tables for a graph file are stored in.
+	 * @param graphFile The graph file.
+	 * @return The cluster file next to it.
+	 */
+	public static File fileFor(File graphFile){
+		return new File(graphFile.getPath() + ".clusters");
+	}
+
+	/**
+	 * This splits a snapshot into clusters and computes the distances between them.
+	 * The clusters are grown around seed vertices picked farthest-point first, with each vertex going
+	 * to the seed it is closest to, so they come out compact along the edges rather than in space.
+	 * Small pieces of the graph that no seed reaches are left out of the clusters (and fall back on the
+	 * scaled Euclidean distance), so the clusters aren't used up on them.
+	 * Each row of the table is then one Dijkstra's search from every vertex of a cluster at once,
+	 * and the rows are computed in parallel.
+	 * @param g The snapshot to compute tables for.
+	 * @param count The number of clusters to make (fewer are made if the graph is smaller).
+	 * @return The tables for the snapshot.
+	 */
+	public static ClusterTable compute(CSRGraph g, int count){
+		int n = g.getNumberOfVertices();
+		int[] clusters = new int[n];
+		count = partition(g, Math.max(0, Math.min(count, n)), clusters);
+
+		// List the vertices of each cluster together so each search can start from all of them
+		int[] starts = new int[count + 1];
+		for(int v = 0 ; v < n ; v++){
+			if(clusters[v] >= 0)
+				starts[clusters[v] + 1]++;
+		}
+		for(int c = 0 ; c < count ; c++)
+			starts[c + 1] += starts[c];
+		int[] members = new int[starts[count]];
+		int[] next = Arrays.copyOf(starts, count);
+		for(int v = 0 ; v < n ; v++){
+			if(clusters[v] >= 0)
+				members[next[clusters[v]]++] = v;
+		}
+
+		ParallelRows<float[]> rows = new ParallelRows<float[]>(count);
+		for(int c = 0 ; c < count ; c++)
+			rows.submit(new RowTask(g, clusters, count, members, starts[c], starts[c + 1]));
+		float[] table = new float[count * count];
+		List<float[]> results = rows.join();
+		for(int c = 0 ; c < count ; c++)
+			System.arraycopy(results.get(c), 0, table, c * count, count);
+		return new ClusterTable(g, clusters, count, table);
+	}
+
+	/**
+	 * This loads cluster tables from a file, if they were made for the given snapshot.
+	 * @param g The snapshot the tables should belong to.
+	 * @param f The file to read.
+	 * @return The tables, or null if the file was made for a different graph.
+	 * @throws IOException If the file can't be read.
+	 */
+	public static ClusterTable load(CSRGraph g, File f) throws IOException{
+		try(RandomAccessFile raf = new RandomAccessFile(f, "r"); FileChannel channel = raf.getChannel()){
+			MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if((bytes.remaining() < 28) || (bytes.getInt() != MAGIC) || (bytes.getInt() != FORMAT_VERSION))
+				return null;
+			int n = bytes.getInt();
+			int arcs = bytes.getInt();
+			long checksum = bytes.getLong();
+			int count = bytes.getInt();
+			if((n != g.getNumberOfVertices()) || (arcs != g.getNumberOfArcs()) || (checksum != g.getChecksum()))
+				return null;
+			long expected = 4L * (n + (long) count * count);
+			if((count < 0) || (bytes.remaining() != expected))
+				return null;
+			int[] clusters = new int[n];
+			bytes.asIntBuffer().get(clusters);
+			bytes.position(bytes.position() + 4 * n);
+			float[] table = new float[count * count];
+			bytes.asFloatBuffer().get(table);
+			return new ClusterTable(g, clusters, count, table);
+		}
+	}
+
+	/**
+	 * This saves the tables to a file, along with enough about the graph to tell if they still match it later.
+	 * @param f The file to write.
+	 * @throws IOException If the file can't be written.
+	 */
+	public void save(File f) throws IOException{
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))){
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(graph.getNumberOfVertices());
+			out.writeInt(graph.getNumberOfArcs());
+			out.writeLong(graph.getChecksum());
+			out.writeInt(count);
+			for(int c : clusters)
+				out.writeInt(c);
+			for(float d : table)
+				out.writeFloat(d);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see thinking.paths.PrecomputedHeuristic#estimate(int, int)
+	 */
+	@Override
+	public float estimate(int v, int goal){
+		float straight = (scale > 0) ? scale * Heuristic.euclideanDistance(graph, v, goal) : 0;
+		int from = clusters[v];
+		int to = clusters[goal];
+		if((from != to) && (from >= 0) && (to >= 0)){
+			// A goal cluster this one can't reach doesn't bound anything
+			float d = table[from * count + to];
+			if((d > straight) && (d != Float.POSITIVE_INFINITY))
+				return d;
+		}
+		return straight;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see thinking.paths.PrecomputedHeuristic#getGraph()
+	 */
+	@Override
+	public CSRGraph getGraph(){
+		return graph;
+	}
+
+	/**
+	 * This gets the number of clusters.
+	 * @return The number of clusters.
+	 */
+	public int getCount(){
+		return count;
+	}
+
+	/**
+	 * This gets the cluster a vertex belongs to.
+	 * @param v The index of the vertex.
+	 * @return The cluster of the vertex, or -1 if it isn't in one.
+	 */
+	public int getCluster(int v){
+		return clusters[v];
+	}
+
+	/**
+	 * This gives a rough count of the bytes used by the tables.
+	 * @return The size of the tables in bytes.
+	 */
+	public long getMemoryFootprint(){
+		return 4L * (clusters.length + table.length);
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This finds the lowest cost per unit of length of any edge, so the scaled Euclidean distance is a lower bound
+	private static float lowestCostPerLength(CSRGraph g){
+		if(!g.hasCoordinates())
+			return 0;
+		float lowest = Float.POSITIVE_INFINITY;
+		for(int v = 0, n = g.getNumberOfVertices() ; v < n ; v++){
+			for(int e = g.firstEdge(v), end = g.endEdge(v) ; e < end ; e++){
+				float length = Heuristic.euclideanDistance(g, v, g.getTarget(e));
+				if(length > 0)
+					lowest = Math.min(lowest, g.getCost(e) / length);
+			}
+		}
+		return (lowest == Float.POSITIVE_INFINITY) ? 0 : lowest;
+	}
+
+	// This assigns each vertex to the closest of up to count seeds, returning the number of clusters made
+	// Pieces of the graph too small to be worth a cluster of their own, that no seed reaches, are left out (-1)
+	static int partition(CSRGraph g, int count, int[] clusters){
+		int n = g.getNumberOfVertices();
+		Arrays.fill(clusters, -1);
+		// The distance from each vertex to the seed of its cluster
+		float[] closest = new float[n];
+		Arrays.fill(closest, Float.POSITIVE_INFINITY);
+		int unreached = n;
+		SearchWorkspace ws = SearchWorkspace.forThread(n);
+		for(int c = 0 ; c < count ; c++){
+			int seed = -1;
+			if((long) unreached * count >= n){
+				// Enough of the graph isn't reached yet for a cluster, so seed it from its best connected vertex
+				for(int v = 0 ; v < n ; v++){
+					if((closest[v] == Float.POSITIVE_INFINITY) && ((seed < 0) || (g.endEdge(v) - g.firstEdge(v) > g.endEdge(seed) - g.firstEdge(seed))))
+						seed = v;
+				}
+			}
+			else{
+				// Otherwise seed the vertex farthest from every seed so far
+				for(int v = 0 ; v < n ; v++){
+					if((closest[v] != Float.POSITIVE_INFINITY) && (closest[v] > 0) && ((seed < 0) || (closest[v] > closest[seed])))
+						seed = v;
+				}
+			}
+			// Every vertex that can be reached is already a seed
+			if(seed < 0)
+				return c;
+
+			// Take over every vertex that is closer to the new seed, which can only be reached through others it takes over
+			ws.begin(n);
+			ws.reach(seed, 0, -1);
+			ws.open.insertOrDecrease(seed, 0);
+			while(!ws.open.isEmpty()){
+				int x = ws.open.pop();
+				ws.close(x);
+				float csf = ws.getCost(x);
+				if(csf >= closest[x])
+					continue;
+				if(closest[x] == Float.POSITIVE_INFINITY)
+					unreached--;
+				closest[x] = csf;
+				clusters[x] = c;
+				for(int e = g.firstEdge(x), end = g.endEdge(x) ; e < end ; e++){
+					int y = g.getTarget(e);
+					float cost = csf + g.getCost(e);
+					if(!ws.isClosed(y) && (cost < closest[y]) && (cost < ws.getCost(y))){
+						ws.reach(y, cost, x);
+						ws.open.insertOrDecrease(y, cost);
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * This task computes one row of the table: the distance from one cluster to every cluster.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	@SuppressWarnings("serial")
+	private static class RowTask extends RecursiveTask<float[]> {
+
+		/** The graph to search */
+		private final CSRGraph graph;
+		/** The cluster of each vertex */
+		private final int[] clusters;
+		/** The number of clusters */
+		private final int count;
+		/** The vertices of every cluster, listed cluster by cluster */
+		private final int[] members;
+		/** Where this cluster's vertices start in the members list */
+		private final int first;
+		/** Where this cluster's vertices end in the members list */
+		private final int last;
+
+		/**
+		 * This constructs a task to measure the distances from a cluster.
+		 * @param graph The graph to search.
+		 * @param clusters The cluster of each vertex.
+		 * @param count The number of clusters.
+		 * @param members The vertices of every cluster, listed cluster by cluster.
+		 * @param first Where the cluster's vertices start in the members list.
+		 * @param last Where the cluster's vertices end in the members list.
+		 */
+		RowTask(CSRGraph graph, int[] clusters, int count, int[] members, int first, int last){
+			this.graph = graph;
+			this.clusters = clusters;
+			this.count = count;
+			this.members = members;
+			this.first = first;
+			this.last = last;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveTask#compute()
+		 */
+		@Override
+		protected float[] compute(){
+			float[] row = new float[count];
+			Arrays.fill(row, Float.POSITIVE_INFINITY);
+			SearchWorkspace ws = SearchWorkspace.forThread(graph.getNumberOfVertices());
+			for(int i = first ; i < last ; i++){
+				ws.reach(members[i], 0, -1);
+				ws.open.insertOrDecrease(members[i], 0);
+			}
+			// Vertices come off the open list cheapest first, so the first one seen in a cluster is its distance
+			int found = 0;
+			while(!ws.open.isEmpty() && (found < count)){
+				int x = ws.open.pop();
+				ws.close(x);
+				float csf = ws.getCost(x);
+				int c = clusters[x];
+				if((c >= 0) && (row[c] == Float.POSITIVE_INFINITY)){
+					row[c] = csf;
+					found++;
+				}
+				for(int e = graph.firstEdge(x), end = graph.endEdge(x) ; e < end ; e++){
+					int y = graph.getTarget(e);
+					float cost = csf + graph.getCost(e);
+					if(!ws.isClosed(y) && (cost < ws.getCost(y))){
+						ws.reach(y, cost, x);
+						ws.open.insertOrDecrease(y, cost);
+					}
+				}
+			}
+			return row;
+		}
+	}
+}
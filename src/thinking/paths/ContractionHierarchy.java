@@ -0,0 +1,672 @@
+package thinking.paths;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import graphs.CSRGraph;
+import graphs.Graph;
+import manager.Settings;
+
+/**
+ * This class builds and holds a Contraction Hierarchy for a graph.
+ * Vertices are contracted one at a time, least important first. Contracting a vertex removes it from
+ * the graph and adds a shortcut between each pair of its neighbors whose shortest path went through it
+ * (unless a witness search finds another path that is just as short). The order a vertex was contracted
+ * in is its rank, and every original edge and shortcut ends up pointing up (to a higher ranked vertex)
+ * from one of its ends. A shortest path query then only has to search upward from both ends, which
+ * touches a tiny part of the graph (see CHQuery).
+ *
+ * Vertices are ordered by edge difference (the shortcuts contracting a vertex would add, minus the
+ * edges it would remove) plus the number of its neighbors already contracted, which spreads the
+ * contractions out evenly. Priorities are updated for the neighbors of every contracted vertex and
+ * checked again lazily when a vertex comes up for contraction.
+ *
+ * Graphs with a few very well connected hubs would need huge numbers of shortcuts to contract the
+ * hubs, so contraction stops once the vertices left are densely connected. Those vertices (the core)
+ * are ranked above everything else and keep all of their edges to each other in both directions, so
+ * a query searches the core with plain bidirectional Dijkstra's once it gets there.
+ *
+ * Each shortcut remembers the vertex it skips over, so paths can be unpacked back into original edges.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class ContractionHierarchy {
+
+	/** The first four bytes of every hierarchy file ("GACH") */
+	private static final int MAGIC = 0x47414348;
+	/** The version of the format this class writes */
+	public static final int FORMAT_VERSION = 1;
+	/** The most edges a witness search looks at before giving up (and adding the shortcut to be safe) */
+	private static final int WITNESS_EDGE_LIMIT = 1000;
+	/** Vertices with more neighbor pairs than this get an estimated priority instead of running witness searches */
+	private static final int SIMULATION_PAIR_LIMIT = 4096;
+	/** Contraction stops once the vertices left have more than this many edges each on average */
+	private static final int CORE_AVERAGE_DEGREE = 64;
+
+	/** The snapshot this hierarchy was built for */
+	private final CSRGraph graph;
+	/** The order each vertex was contracted in */
+	final int[] rank;
+	/** The lowest rank in the core (the number of vertices if every vertex was contracted) */
+	final int coreRank;
+	/** Where each vertex's upward edges start (one extra entry marks the end) */
+	final int[] upOffsets;
+	/** The higher ranked vertex at the end of each upward edge */
+	final int[] upTargets;
+	/** The cost of each upward edge */
+	final float[] upCosts;
+	/** The vertex each upward edge skips over, or -1 if it is an original edge */
+	final int[] upMiddles;
+	/** Where each vertex's downward edges start (one extra entry marks the end) */
+	final int[] downOffsets;
+	/** The higher ranked vertex at the start of each edge coming down to a vertex */
+	final int[] downSources;
+	/** The cost of each downward edge */
+	final float[] downCosts;
+	/** The vertex each downward edge skips over, or -1 if it is an original edge */
+	final int[] downMiddles;
+
+	// This wraps up a finished hierarchy (the downward arrays are the upward ones for an undirected graph)
+	private ContractionHierarchy(CSRGraph graph, int[] rank, int coreRank, int[] upOffsets, int[] upTargets, float[] upCosts, int[] upMiddles,
+			int[] downOffsets, int[] downSources, float[] downCosts, int[] downMiddles){
+		this.graph = graph;
+		this.rank = rank;
+		this.coreRank = coreRank;
+		this.upOffsets = upOffsets;
+		this.upTargets = upTargets;
+		this.upCosts = upCosts;
+		this.upMiddles = upMiddles;
+		this.downOffsets = downOffsets;
+		this.downSources = downSources;
+		this.downCosts = downCosts;
+		this.downMiddles = downMiddles;
+	}
+
+	/**
+	 * This builds a hierarchy for a graph.
+	 * @param g The graph to contract. Vertices in the hierarchy are referred to by their index in this graph.
+	 * @return The finished hierarchy.
+	 */
+	public static ContractionHierarchy build(Graph g){
+		return build(new CSRGraph(g));
+	}
+
+	/**
+	 * This builds a hierarchy for a snapshot of a graph.
+	 * @param g The snapshot to contract.
+	 * @return The finished hierarchy.
+	 */
+	public static ContractionHierarchy build(CSRGraph g){
+		return new Contractor(g).run();
+	}
+
+	/**
+	 * This gets the hierarchy for a snapshot, loading it from the file next to the graph file if it is
+	 * there and still matches the graph, or building it (and saving it there) if not.
+	 * @param g The snapshot to get a hierarchy for.
+	 * @param graphFile The file the graph was loaded from (may be null to skip the disk).
+	 * @return The hierarchy for the snapshot.
+	 */
+	public static ContractionHierarchy forGraph(CSRGraph g, File graphFile){
+		File f = (graphFile == null) ? null : fileFor(graphFile);
+		if((f != null) && f.isFile()){
+			try{
+				ContractionHierarchy stored = load(g, f);
+				if(stored != null)
+					return stored;
+			} catch(IOException e){
+				Settings.fail("Unable to read contraction hierarchy file, rebuilding it!");
+			}
+		}
+		ContractionHierarchy built = build(g);
+		if(f != null){
+			try{
+				built.save(f);
+			} catch(IOException e){
+				Settings.fail("Unable to write contraction hierarchy file!");
+			}
+		}
+		return built;
+	}
+
+	/**
+	 * This gets the file the hierarchy for a graph file is stored in.
+	 * @param graphFile The graph file.
+	 * @return The hierarchy file next to it.
+	 */
+	public static File fileFor(File graphFile){
+		return new File(graphFile.getPath() + ".ch");
+	}
+
+	/**
+	 * This loads a hierarchy from a file, if it was built for the given snapshot.
+	 * @param g The snapshot the hierarchy should belong to.
+	 * @param f The file to read.
+	 * @return The hierarchy, or null if the file was made for a different graph.
+	 * @throws IOException If the file can't be read.
+	 */
+	public static ContractionHierarchy load(CSRGraph g, File f) throws IOException{
+		try(RandomAccessFile raf = new RandomAccessFile(f, "r"); FileChannel channel = raf.getChannel()){
+			MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if((bytes.remaining() < 36) || (bytes.getInt() != MAGIC) || (bytes.getInt() != FORMAT_VERSION))
+				return null;
+			int n = bytes.getInt();
+			int arcs = bytes.getInt();
+			long checksum = bytes.getLong();
+			int ups = bytes.getInt();
+			int downs = bytes.getInt();
+			int coreRank = bytes.getInt();
+			if((n != g.getNumberOfVertices()) || (arcs != g.getNumberOfArcs()) || (checksum != g.getChecksum()))
+				return null;
+			boolean undirected = g.isUndirected();
+			long expected = 4L * (n + (n + 1) + 3L * ups + (undirected ? 0 : (n + 1) + 3L * downs));
+			if((ups < 0) || (downs < 0) || (bytes.remaining() != expected))
+				return null;
+			int[] rank = readInts(bytes, n);
+			int[] upOffsets = readInts(bytes, n + 1);
+			int[] upTargets = readInts(bytes, ups);
+			float[] upCosts = readFloats(bytes, ups);
+			int[] upMiddles = readInts(bytes, ups);
+			if(undirected)
+				return new ContractionHierarchy(g, rank, coreRank, upOffsets, upTargets, upCosts, upMiddles, upOffsets, upTargets, upCosts, upMiddles);
+			int[] downOffsets = readInts(bytes, n + 1);
+			int[] downSources = readInts(bytes, downs);
+			float[] downCosts = readFloats(bytes, downs);
+			int[] downMiddles = readInts(bytes, downs);
+			return new ContractionHierarchy(g, rank, coreRank, upOffsets, upTargets, upCosts, upMiddles, downOffsets, downSources, downCosts, downMiddles);
+		}
+	}
+
+	/**
+	 * This saves the hierarchy to a file, along with enough about the graph to tell if it still matches it later.
+	 * @param f The file to write.
+	 * @throws IOException If the file can't be written.
+	 */
+	public void save(File f) throws IOException{
+		boolean undirected = graph.isUndirected();
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))){
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(graph.getNumberOfVertices());
+			out.writeInt(graph.getNumberOfArcs());
+			out.writeLong(graph.getChecksum());
+			out.writeInt(upTargets.length);
+			out.writeInt(undirected ? 0 : downSources.length);
+			out.writeInt(coreRank);
+			writeInts(out, rank);
+			writeInts(out, upOffsets);
+			writeInts(out, upTargets);
+			writeFloats(out, upCosts);
+			writeInts(out, upMiddles);
+			if(!undirected){
+				writeInts(out, downOffsets);
+				writeInts(out, downSources);
+				writeFloats(out, downCosts);
+				writeInts(out, downMiddles);
+			}
+		}
+	}
+
+	/**
+	 * This gets the snapshot this hierarchy was built for.
+	 * @return The snapshot.
+	 */
+	public CSRGraph getGraph(){
+		return graph;
+	}
+
+	/**
+	 * This gets the rank of a vertex (the order it was contracted in).
+	 * @param v The index of the vertex.
+	 * @return The rank of the vertex.
+	 */
+	public int getRank(int v){
+		return rank[v];
+	}
+
+	/**
+	 * This gets the number of vertices left uncontracted in the core at the top of the hierarchy.
+	 * @return The size of the core.
+	 */
+	public int getCoreSize(){
+		return rank.length - coreRank;
+	}
+
+	/**
+	 * This gets the number of edges in the hierarchy, counting each direction of an undirected edge once.
+	 * @return The number of original edges and shortcuts kept in the hierarchy.
+	 */
+	public int getNumberOfArcs(){
+		return upTargets.length + ((downSources == upTargets) ? 0 : downSources.length);
+	}
+
+	/**
+	 * This gives a rough count of the bytes used by the hierarchy.
+	 * @return The size of the hierarchy in bytes.
+	 */
+	public long getMemoryFootprint(){
+		long bytes = 4L * (rank.length + upOffsets.length + 3L * upTargets.length);
+		if(downSources != upTargets)
+			bytes += 4L * (downOffsets.length + 3L * downSources.length);
+		return bytes;
+	}
+
+	/**
+	 * This gets the vertex skipped over by the hierarchy edge from one vertex to another.
+	 * @param from The index of the vertex the edge starts at.
+	 * @param to The index of the vertex the edge ends at.
+	 * @return The skipped vertex, or -1 if the edge is an original edge.
+	 */
+	int getMiddle(int from, int to){
+		if(rank[from] < rank[to]){
+			for(int e = upOffsets[from] ; e < upOffsets[from + 1] ; e++){
+				if(upTargets[e] == to)
+					return upMiddles[e];
+			}
+		}
+		else{
+			for(int e = downOffsets[to] ; e < downOffsets[to + 1] ; e++){
+				if(downSources[e] == from)
+					return downMiddles[e];
+			}
+		}
+		return -1;
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This copies the given number of ints out of the buffer, moving past them
+	private static int[] readInts(MappedByteBuffer bytes, int count){
+		int[] values = new int[count];
+		bytes.asIntBuffer().get(values);
+		bytes.position(bytes.position() + 4 * count);
+		return values;
+	}
+
+	// This copies the given number of floats out of the buffer, moving past them
+	private static float[] readFloats(MappedByteBuffer bytes, int count){
+		float[] values = new float[count];
+		bytes.asFloatBuffer().get(values);
+		bytes.position(bytes.position() + 4 * count);
+		return values;
+	}
+
+	// This writes every int in the array
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException{
+		for(int value : values)
+			out.writeInt(value);
+	}
+
+	// This writes every float in the array
+	private static void writeFloats(DataOutputStream out, float[] values) throws IOException{
+		for(float value : values)
+			out.writeFloat(value);
+	}
+
+	/**
+	 * This class holds the edges between one vertex and its neighbors that haven't been contracted yet.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	private static class Arcs {
+		/** The neighbor at the other end of each edge */
+		int[] vertices = new int[4];
+		/** The cost of each edge */
+		float[] costs = new float[4];
+		/** The vertex each edge skips over, or -1 if it is an original edge */
+		int[] middles = new int[4];
+		/** The number of edges */
+		int size = 0;
+
+		// This adds an edge without checking for one to the same neighbor
+		void append(int v, float cost, int middle){
+			if(size == vertices.length){
+				vertices = Arrays.copyOf(vertices, size * 2);
+				costs = Arrays.copyOf(costs, size * 2);
+				middles = Arrays.copyOf(middles, size * 2);
+			}
+			vertices[size] = v;
+			costs[size] = cost;
+			middles[size] = middle;
+			size++;
+		}
+
+		// This adds an edge, or lowers the cost of the edge already to that neighbor, returning true if the edge is new
+		boolean addOrLower(int v, float cost, int middle){
+			for(int i = 0 ; i < size ; i++){
+				if(vertices[i] == v){
+					if(cost < costs[i]){
+						costs[i] = cost;
+						middles[i] = middle;
+					}
+					return false;
+				}
+			}
+			append(v, cost, middle);
+			return true;
+		}
+
+		// This removes the edge to the given neighbor
+		void remove(int v){
+			for(int i = 0 ; i < size ; i++){
+				if(vertices[i] == v){
+					size--;
+					vertices[i] = vertices[size];
+					costs[i] = costs[size];
+					middles[i] = middles[size];
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * This class does the work of contracting a graph into a hierarchy.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	private static class Contractor {
+
+		/** The snapshot being contracted */
+		private final CSRGraph graph;
+		/** The number of vertices */
+		private final int n;
+		/** Whether or not the graph is undirected (then each vertex's in and out edges are the same list) */
+		private final boolean undirected;
+		/** The edges leaving each vertex to neighbors that are still in the graph */
+		private final Arcs[] outs;
+		/** The edges coming into each vertex from neighbors that are still in the graph */
+		private final Arcs[] ins;
+		/** The number of each vertex's neighbors that have been contracted */
+		private final int[] deleted;
+		/** The rank of each vertex (-1 until it is contracted) */
+		private final int[] rank;
+		/** The number of edges between vertices that haven't been contracted (counting each direction of an undirected edge) */
+		private long liveArcs = 0;
+		/** The rank of the first vertex left in the core */
+		private int coreRank;
+		/** The upward edges of each contracted vertex */
+		private final Arcs[] ups;
+		/** The downward edges of each contracted vertex */
+		private final Arcs[] downs;
+
+		/** The distances found by the witness search (only valid if stamped with the current search) */
+		private final float[] dist;
+		/** The witness search each vertex was last reached in */
+		private final int[] stamps;
+		/** The witness search each vertex was last a target of */
+		private final int[] targetStamps;
+		/** The current witness search */
+		private int search = 0;
+		/** The open list of the witness search */
+		private final IndexedHeap witnessOpen;
+
+		/** The vertex each shortcut found by the last call to findShortcuts starts at */
+		private int[] shortcutFrom = new int[16];
+		/** The vertex each shortcut found by the last call to findShortcuts ends at */
+		private int[] shortcutTo = new int[16];
+		/** The cost of each shortcut found by the last call to findShortcuts */
+		private float[] shortcutCost = new float[16];
+		/** The number of shortcuts found by the last call to findShortcuts */
+		private int shortcuts = 0;
+
+		/**
+		 * This sets up the contraction of a snapshot.
+		 * @param graph The snapshot to contract.
+		 */
+		Contractor(CSRGraph graph){
+			this.graph = graph;
+			n = graph.getNumberOfVertices();
+			undirected = graph.isUndirected();
+			outs = new Arcs[n];
+			ins = undirected ? outs : new Arcs[n];
+			deleted = new int[n];
+			rank = new int[n];
+			Arrays.fill(rank, -1);
+			ups = new Arcs[n];
+			downs = undirected ? ups : new Arcs[n];
+			dist = new float[n];
+			stamps = new int[n];
+			targetStamps = new int[n];
+			witnessOpen = new IndexedHeap(n);
+			for(int v = 0 ; v < n ; v++){
+				outs[v] = new Arcs();
+				if(!undirected)
+					ins[v] = new Arcs();
+			}
+			// Copy the edges, keeping only the cheapest edge between any two vertices
+			int[] seen = new int[n];
+			Arrays.fill(seen, -1);
+			int[] slot = new int[n];
+			for(int v = 0 ; v < n ; v++){
+				Arcs out = outs[v];
+				for(int e = graph.firstEdge(v), end = graph.endEdge(v) ; e < end ; e++){
+					int w = graph.getTarget(e);
+					float cost = graph.getCost(e);
+					if(w == v)
+						continue;
+					if(seen[w] == v){
+						if(cost < out.costs[slot[w]])
+							out.costs[slot[w]] = cost;
+						continue;
+					}
+					seen[w] = v;
+					slot[w] = out.size;
+					out.append(w, cost, -1);
+				}
+			}
+			for(int v = 0 ; v < n ; v++){
+				Arcs out = outs[v];
+				liveArcs += out.size;
+				if(!undirected){
+					for(int i = 0 ; i < out.size ; i++)
+						ins[out.vertices[i]].append(v, out.costs[i], -1);
+				}
+			}
+		}
+
+		/**
+		 * This contracts every vertex and lays out the finished hierarchy.
+		 * @return The hierarchy.
+		 */
+		ContractionHierarchy run(){
+			IndexedHeap order = new IndexedHeap(n);
+			for(int v = 0 ; v < n ; v++)
+				order.insertOrDecrease(v, priority(v));
+			int next = 0;
+			while(!order.isEmpty()){
+				// Leave the rest as the core once it gets dense
+				if(liveArcs > (long) CORE_AVERAGE_DEGREE * order.size())
+					break;
+				int v = order.pop();
+				// Priorities can go stale, so check this one again before contracting it
+				float p = priority(v);
+				if(!order.isEmpty() && (p > order.peekKey())){
+					order.insertOrDecrease(v, p);
+					continue;
+				}
+				rank[v] = next++;
+				contract(v);
+				// Contracting a vertex changes the priorities of its neighbors
+				Arcs out = ups[v];
+				for(int i = 0 ; i < out.size ; i++)
+					order.update(out.vertices[i], priority(out.vertices[i]));
+				if(!undirected){
+					Arcs in = downs[v];
+					for(int i = 0 ; i < in.size ; i++)
+						order.update(in.vertices[i], priority(in.vertices[i]));
+				}
+			}
+			// The core keeps all its edges, going both up and down between core vertices
+			coreRank = next;
+			while(!order.isEmpty()){
+				int v = order.pop();
+				rank[v] = next++;
+				ups[v] = outs[v];
+				downs[v] = ins[v];
+			}
+			return layOut();
+		}
+
+		// This computes the priority of a vertex: its edge difference plus its contracted neighbors
+		private float priority(int v){
+			int removed = undirected ? outs[v].size : (outs[v].size + ins[v].size);
+			// Assume every pair of a hub's neighbors needs a shortcut rather than searching for witnesses
+			long pairs = (long) ins[v].size * outs[v].size;
+			int added = (pairs > SIMULATION_PAIR_LIMIT) ? (int) Math.min(pairs, Integer.MAX_VALUE) : findShortcuts(v);
+			return (float) added - removed + deleted[v];
+		}
+
+		// This removes a vertex from the graph, keeping its remaining edges as its hierarchy edges and adding shortcuts around it
+		private void contract(int v){
+			Arcs out = outs[v];
+			Arcs in = ins[v];
+			findShortcuts(v);
+			for(int i = 0 ; i < shortcuts ; i++){
+				int from = shortcutFrom[i];
+				int to = shortcutTo[i];
+				if(outs[from].addOrLower(to, shortcutCost[i], v))
+					liveArcs++;
+				if(ins[to].addOrLower(from, shortcutCost[i], v) && undirected)
+					liveArcs++;
+			}
+			// Take this vertex out of its neighbors' lists
+			liveArcs -= undirected ? 2 * out.size : out.size + in.size;
+			for(int i = 0 ; i < out.size ; i++){
+				ins[out.vertices[i]].remove(v);
+				deleted[out.vertices[i]]++;
+			}
+			if(!undirected){
+				for(int i = 0 ; i < in.size ; i++){
+					outs[in.vertices[i]].remove(v);
+					deleted[in.vertices[i]]++;
+				}
+			}
+			ups[v] = out;
+			downs[v] = in;
+			outs[v] = null;
+			ins[v] = null;
+		}
+
+		// This finds the shortcuts contracting a vertex would need, storing them and returning how many there are
+		private int findShortcuts(int v){
+			shortcuts = 0;
+			Arcs out = outs[v];
+			Arcs in = ins[v];
+			float maxOut = 0;
+			for(int j = 0 ; j < out.size ; j++)
+				maxOut = Math.max(maxOut, out.costs[j]);
+			for(int i = 0 ; i < in.size ; i++){
+				int u = in.vertices[i];
+				float toV = in.costs[i];
+				// On an undirected graph each pair only needs to be checked once
+				int first = undirected ? i + 1 : 0;
+				witnessSearch(u, v, toV + maxOut, out, first);
+				for(int j = first ; j < out.size ; j++){
+					int w = out.vertices[j];
+					if(w == u)
+						continue;
+					float through = toV + out.costs[j];
+					if(getDistance(w) > through){
+						addShortcut(u, w, through);
+						if(undirected)
+							addShortcut(w, u, through);
+					}
+				}
+			}
+			return undirected ? shortcuts / 2 : shortcuts;
+		}
+
+		// This records a shortcut found by findShortcuts
+		private void addShortcut(int from, int to, float cost){
+			if(shortcuts == shortcutFrom.length){
+				shortcutFrom = Arrays.copyOf(shortcutFrom, shortcuts * 2);
+				shortcutTo = Arrays.copyOf(shortcutTo, shortcuts * 2);
+				shortcutCost = Arrays.copyOf(shortcutCost, shortcuts * 2);
+			}
+			shortcutFrom[shortcuts] = from;
+			shortcutTo[shortcuts] = to;
+			shortcutCost[shortcuts] = cost;
+			shortcuts++;
+		}
+
+		// This runs a limited Dijkstra's from the source that avoids the given vertex, stopping past the given cost or once every target is settled
+		private void witnessSearch(int source, int avoid, float limit, Arcs targets, int first){
+			search++;
+			witnessOpen.clear();
+			int remaining = 0;
+			for(int j = first ; j < targets.size ; j++){
+				if((targets.vertices[j] != source) && (targetStamps[targets.vertices[j]] != search)){
+					targetStamps[targets.vertices[j]] = search;
+					remaining++;
+				}
+			}
+			stamps[source] = search;
+			dist[source] = 0;
+			witnessOpen.insertOrDecrease(source, 0);
+			int scanned = 0;
+			while((remaining > 0) && !witnessOpen.isEmpty() && (witnessOpen.peekKey() <= limit) && (scanned < WITNESS_EDGE_LIMIT)){
+				int x = witnessOpen.pop();
+				if((targetStamps[x] == search) && (--remaining == 0))
+					break;
+				float csf = dist[x];
+				Arcs arcs = outs[x];
+				scanned += arcs.size;
+				for(int i = 0 ; i < arcs.size ; i++){
+					int y = arcs.vertices[i];
+					if(y == avoid)
+						continue;
+					float cost = csf + arcs.costs[i];
+					if(cost < getDistance(y)){
+						stamps[y] = search;
+						dist[y] = cost;
+						witnessOpen.insertOrDecrease(y, cost);
+					}
+				}
+			}
+		}
+
+		// This gets the distance the last witness search found to a vertex
+		private float getDistance(int v){
+			return (stamps[v] == search) ? dist[v] : Float.MAX_VALUE;
+		}
+
+		// This packs the hierarchy edges of every vertex into flat arrays
+		private ContractionHierarchy layOut(){
+			int[] upOffsets = new int[n + 1];
+			for(int v = 0 ; v < n ; v++)
+				upOffsets[v + 1] = upOffsets[v] + ups[v].size;
+			int[] upTargets = new int[upOffsets[n]];
+			float[] upCosts = new float[upOffsets[n]];
+			int[] upMiddles = new int[upOffsets[n]];
+			for(int v = 0 ; v < n ; v++){
+				System.arraycopy(ups[v].vertices, 0, upTargets, upOffsets[v], ups[v].size);
+				System.arraycopy(ups[v].costs, 0, upCosts, upOffsets[v], ups[v].size);
+				System.arraycopy(ups[v].middles, 0, upMiddles, upOffsets[v], ups[v].size);
+			}
+			if(undirected)
+				return new ContractionHierarchy(graph, rank, coreRank, upOffsets, upTargets, upCosts, upMiddles, upOffsets, upTargets, upCosts, upMiddles);
+			int[] downOffsets = new int[n + 1];
+			for(int v = 0 ; v < n ; v++)
+				downOffsets[v + 1] = downOffsets[v] + downs[v].size;
+			int[] downSources = new int[downOffsets[n]];
+			float[] downCosts = new float[downOffsets[n]];
+			int[] downMiddles = new int[downOffsets[n]];
+			for(int v = 0 ; v < n ; v++){
+				System.arraycopy(downs[v].vertices, 0, downSources, downOffsets[v], downs[v].size);
+				System.arraycopy(downs[v].costs, 0, downCosts, downOffsets[v], downs[v].size);
+				System.arraycopy(downs[v].middles, 0, downMiddles, downOffsets[v], downs[v].size);
+			}
+			return new ContractionHierarchy(graph, rank, coreRank, upOffsets, upTargets, upCosts, upMiddles, downOffsets, downSources, downCosts, downMiddles);
+		}
+	}
+}
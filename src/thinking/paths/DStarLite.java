@@ -0,0 +1,359 @@
+package thinking.paths;
+
+import java.util.Arrays;
+
+import graphs.CSRGraph;
+import graphs.Heuristic;
+import graphs.Heuristic.H_MODE;
+
+/**
+ * This class replans the path to a moving target incrementally, with Moving Target D* Lite.
+ * It keeps the search tree from one plan to the next. When the target moves, the keys are shifted by
+ * how far it moved (instead of re-keying the whole open list), and when the searcher moves along its
+ * last path, the part of the tree that doesn't hang off its new position is thrown out in one pass,
+ * without expanding it. Then only the vertices whose costs actually changed are expanded again.
+ * Costs are measured from the first start the planner was given, so they are only meaningful relative
+ * to the current start's cost; the path is rebuilt from the parent pointers.
+ * The heuristic should be consistent; with the cluster heuristic the path may be a little longer than the shortest.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class DStarLite {
+
+	/** The cost of a vertex that hasn't been reached */
+	private static final float INF = Float.POSITIVE_INFINITY;
+	/** The mark for a vertex that hasn't been sorted yet when the start moves */
+	private static final byte UNSORTED = 0;
+	/** The mark for a vertex being sorted (seeing it again means the parents loop) */
+	private static final byte SORTING = 1;
+	/** The mark for a vertex that hangs off the new start */
+	private static final byte KEEP = 2;
+	/** The mark for a vertex that doesn't hang off the new start */
+	private static final byte DROP = 3;
+
+	/** The snapshot being searched */
+	private final CSRGraph graph;
+	/** The reverse of the snapshot, for the edges into each vertex */
+	private final CSRGraph reverse;
+	/** The type of heuristic used (null for none) */
+	private final H_MODE heuristic;
+	/** The precomputed tables for the heuristic (null if it only needs coordinates) */
+	private final PrecomputedHeuristic tables;
+	/** The cost of each vertex, as of when it was last expanded */
+	private final float[] g;
+	/** The cost of each vertex looking one step back from its best parent */
+	private final float[] rhs;
+	/** The parent of each vertex on the search tree (-1 for none) */
+	private final int[] parents;
+	/** The vertices whose cost and look-ahead cost differ */
+	private final IndexedHeap open;
+	/** The vertices that have had a parent since the tree was started (everything on the tree, and maybe a few more) */
+	private final int[] tree;
+	/** The number of vertices in the tree list */
+	private int treeSize = 0;
+	/** Whether or not each vertex is in the tree list */
+	private final boolean[] listed;
+	/** The marks used to sort the tree when the start moves */
+	private final byte[] marks;
+	/** Scratch space for walking up the tree and for the vertices thrown out of it */
+	private final int[] stack;
+	/** The sum of how far the goal has moved, by the heuristic, since the tree was started */
+	private float km = 0;
+	/** The index of the start vertex of the last plan (-1 before the first) */
+	private int start = -1;
+	/** The index of the goal vertex of the last plan (-1 before the first) */
+	private int goal = -1;
+	/** The number of vertices expanded by the last plan */
+	private int visited = 0;
+	/** Whether or not each plan collects stats (kept on the path it finds) */
+	public boolean collectStats = false;
+	/** The stats for the plan being made (null if not collecting) */
+	private SearchStats stats = null;
+
+	/**
+	 * This constructs a planner with an empty search tree.
+	 * @param graph The snapshot to search. It must have coordinates for the heuristic and path.
+	 * @param heuristic The type of heuristic to use (null for none).
+	 * @param tables The precomputed tables for the heuristic (null if it only needs coordinates).
+	 */
+	public DStarLite(CSRGraph graph, H_MODE heuristic, PrecomputedHeuristic tables){
+		int n = graph.getNumberOfVertices();
+		this.graph = graph;
+		this.reverse = graph.reverse();
+		this.heuristic = heuristic;
+		this.tables = tables;
+		g = new float[n];
+		rhs = new float[n];
+		parents = new int[n];
+		open = new IndexedHeap(n);
+		tree = new int[n];
+		listed = new boolean[n];
+		marks = new byte[n];
+		stack = new int[n];
+	}
+
+	/**
+	 * This finds the shortest path between two vertices, repairing the search tree from the last plan.
+	 * The tree is started over if the start isn't on the settled part of the last tree.
+	 * @param s The index of the vertex to start at.
+	 * @param t The index of the vertex to find the shortest path to.
+	 * @return A path object representing the shortest path, or null if there isn't one.
+	 */
+	public Path findPath(int s, int t){
+		visited = 0;
+		stats = collectStats ? SearchStats.start() : null;
+		if((start < 0) || (g[s] == INF) || (g[s] != rhs[s]))
+			restart(s, t);
+		else{
+			// Shift every key by how far the goal moved (back to the old goal), which keeps the keys already in the heap lower bounds
+			if(t != goal)
+				km += estimate(t, goal);
+			goal = t;
+			if(s != start)
+				moveStart(s);
+		}
+		computePath();
+		if(rhs[goal] == INF)
+			return null;
+		Path p = rebuildPath();
+		// A broken chain of parents means the tree is in a bad state, so start over
+		if(p == null){
+			restart(start, goal);
+			computePath();
+			p = (rhs[goal] == INF) ? null : rebuildPath();
+		}
+		if(stats != null){
+			stats.stop();
+			if(p != null)
+				p.stats = stats;
+		}
+		return p;
+	}
+
+	/**
+	 * This gets the number of vertices expanded by the last plan.
+	 * @return The number of vertices expanded.
+	 */
+	public int getVisited(){
+		return visited;
+	}
+
+	/**
+	 * This gets the snapshot this planner searches.
+	 * @return The snapshot.
+	 */
+	public CSRGraph getGraph(){
+		return graph;
+	}
+
+	/**
+	 * This gets the type of heuristic this planner uses.
+	 * @return The heuristic (null for none).
+	 */
+	public H_MODE getHeuristic(){
+		return heuristic;
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This throws out the search tree and starts a new one from the given start
+	private void restart(int s, int t){
+		Arrays.fill(g, INF);
+		Arrays.fill(rhs, INF);
+		Arrays.fill(parents, -1);
+		Arrays.fill(listed, false);
+		treeSize = 0;
+		open.clear();
+		km = 0;
+		start = s;
+		goal = t;
+		rhs[s] = 0;
+		list(s);
+		open.update(s, key(s));
+	}
+
+	// This makes the new start the root of the tree, and throws out the parts that don't hang off it
+	private void moveStart(int s){
+		start = s;
+		parents[s] = -1;
+		// Sort the tree into the vertices under the new start, whose costs are all still right
+		// relative to the new start's, and the rest (including the old start), which aren't
+		for(int i = 0 ; i < treeSize ; i++)
+			marks[tree[i]] = UNSORTED;
+		marks[s] = KEEP;
+		for(int i = 0 ; i < treeSize ; i++)
+			sort(tree[i]);
+		// Forget everything about the vertices that don't hang off the new start
+		int kept = 0;
+		int deleted = 0;
+		for(int i = 0 ; i < treeSize ; i++){
+			int v = tree[i];
+			if(marks[v] == KEEP)
+				tree[kept++] = v;
+			else{
+				g[v] = INF;
+				rhs[v] = INF;
+				parents[v] = -1;
+				listed[v] = false;
+				open.remove(v);
+				stack[deleted++] = v;
+			}
+		}
+		treeSize = kept;
+		// Give the forgotten vertices next to the kept part a way back into the tree
+		for(int i = 0 ; i < deleted ; i++){
+			int v = stack[i];
+			recomputeRhs(v);
+			if(rhs[v] < INF)
+				open.update(v, key(v));
+		}
+	}
+
+	// This marks whether a vertex hangs off the start, by walking up its parents to a vertex already marked
+	private void sort(int v){
+		int length = 0;
+		int u = v;
+		byte result = DROP;
+		while(true){
+			if(marks[u] != UNSORTED){
+				// A vertex seen on this walk means the parents loop, which can't lead to the start
+				result = (marks[u] == KEEP) ? KEEP : DROP;
+				break;
+			}
+			marks[u] = SORTING;
+			stack[length++] = u;
+			if(parents[u] < 0)
+				break;
+			u = parents[u];
+		}
+		for(int i = 0 ; i < length ; i++)
+			marks[stack[i]] = result;
+	}
+
+	// This adds a vertex to the tree list, if it isn't there already
+	private void list(int v){
+		if(!listed[v]){
+			listed[v] = true;
+			tree[treeSize++] = v;
+		}
+	}
+
+	// This expands vertices until the goal's cost is settled and nothing on the open list could beat it
+	private void computePath(){
+		while(!open.isEmpty()){
+			// With a single key, a vertex tied with the goal may still be out of date, so the
+			// path to the goal has to be settled all the way back to the start too
+			if((open.peekKey() >= key(goal)) && settled())
+				break;
+			int u = open.peek();
+			float oldKey = open.peekKey();
+			float newKey = key(u);
+			if(oldKey < newKey){
+				// The key is out of date because the goal moved
+				open.update(u, newKey);
+				continue;
+			}
+			open.pop();
+			visited++;
+			if(stats != null){
+				stats.expanded++;
+				stats.relaxed += graph.endEdge(u) - graph.firstEdge(u);
+			}
+			if(g[u] > rhs[u]){
+				// Overconsistent: settle the cost, and offer it to the successors
+				g[u] = rhs[u];
+				for(int e = graph.firstEdge(u), end = graph.endEdge(u) ; e < end ; e++){
+					int v = graph.getTarget(e);
+					float cost = g[u] + graph.getCost(e);
+					if((v != start) && (cost < rhs[v])){
+						parents[v] = u;
+						list(v);
+						rhs[v] = cost;
+						updateState(v);
+					}
+				}
+			}
+			else{
+				// Underconsistent: forget the cost, and find new parents for everything that used it
+				g[u] = INF;
+				for(int e = graph.firstEdge(u), end = graph.endEdge(u) ; e < end ; e++){
+					int v = graph.getTarget(e);
+					if((v != start) && (parents[v] == u)){
+						recomputeRhs(v);
+						updateState(v);
+					}
+				}
+				updateState(u);
+			}
+		}
+	}
+
+	// This will determine if every vertex on the path back from the goal is consistent
+	private boolean settled(){
+		int steps = 0;
+		for(int v = goal ; v != start ; v = parents[v]){
+			if((v < 0) || (g[v] != rhs[v]) || (++steps > parents.length))
+				return false;
+		}
+		return true;
+	}
+
+	// This sets the look-ahead cost and parent of a vertex from the cheapest of the edges into it
+	private void recomputeRhs(int v){
+		float best = INF;
+		int bestParent = -1;
+		for(int e = reverse.firstEdge(v), end = reverse.endEdge(v) ; e < end ; e++){
+			int p = reverse.getTarget(e);
+			float cost = g[p] + reverse.getCost(e);
+			if(cost < best){
+				best = cost;
+				bestParent = p;
+			}
+		}
+		rhs[v] = best;
+		parents[v] = bestParent;
+		if(bestParent >= 0)
+			list(v);
+	}
+
+	// This puts a vertex on the open list if it is inconsistent, and takes it off if it isn't
+	private void updateState(int v){
+		if(g[v] != rhs[v]){
+			if(stats != null)
+				stats.offer(open, v);
+			open.update(v, key(v));
+		}
+		else
+			open.remove(v);
+	}
+
+	// This gets the key of a vertex for the open list
+	private float key(int v){
+		return Math.min(g[v], rhs[v]) + estimate(v, goal) + km;
+	}
+
+	// This gets the heuristic value between two vertices
+	private float estimate(int v, int t){
+		if(heuristic == null)
+			return 0;
+		if(tables != null)
+			return tables.estimate(v, t);
+		return Heuristic.getHeuristic(graph, v, t, heuristic);
+	}
+
+	// This rebuilds the path from the start to the goal by following the parents back from the goal (null if the chain is broken)
+	private Path rebuildPath(){
+		Path p = new Path();
+		int steps = 0;
+		for(int v = goal ; v != start ; v = parents[v]){
+			if((v < 0) || (++steps > parents.length))
+				return null;
+			p.addFirst(graph.getLocation(v));
+		}
+		p.addFirst(graph.getLocation(start));
+		p.verticesVistedOnCreation = visited;
+		return p;
+	}
+}
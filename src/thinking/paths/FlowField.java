@@ -0,0 +1,256 @@
+package thinking.paths;
+
+import java.util.Arrays;
+
+import graphs.CSRGraph;
+
+/**
+ * This class is a flow field toward one goal: the shortest path tree from every vertex of a snapshot to
+ * the goal, found with one Dijkstra's search backward from the goal. Each vertex stores the next vertex
+ * on its shortest path, so any number of characters heading for the goal can follow it with one lookup
+ * per step, instead of each running its own search.
+ * When the goal moves, the field is repaired instead of rebuilt: every vertex whose next hops already
+ * lead through the new goal keeps its hop (and its distance, shifted), and only the rest are searched
+ * again. This saves the most when the goal moves to a neighboring vertex that many shortest paths
+ * already ran through.
+ * Fields are made and cached by PathFinding.getFlowField.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class FlowField {
+
+	/** The distance of a vertex that can't reach the goal */
+	private static final float INF = Float.POSITIVE_INFINITY;
+
+	/** The snapshot the field covers */
+	private final CSRGraph graph;
+	/** The reverse of the snapshot, for searching backward from the goal */
+	private final CSRGraph reverse;
+	/** The distance from each vertex to the goal */
+	private final float[] dist;
+	/** The next vertex on the shortest path from each vertex to the goal (-1 for the goal and unreachable vertices) */
+	private final int[] next;
+	/** The open list for building and repairing the field */
+	private final IndexedHeap open;
+	/** Whether or not each vertex's hops lead through the new goal, when the goal moves */
+	private final boolean[] kept;
+	/** The vertices whose hops lead through the new goal, when the goal moves */
+	private final int[] subtree;
+	/** The index of the goal vertex */
+	private int goal;
+	/** The number of vertices expanded by the last build or repair */
+	private int visited = 0;
+
+	/**
+	 * This constructs the flow field toward a goal.
+	 * @param graph The snapshot to cover. It must have coordinates for the paths.
+	 * @param goal The index of the goal vertex.
+	 */
+	public FlowField(CSRGraph graph, int goal){
+		int n = graph.getNumberOfVertices();
+		this.graph = graph;
+		this.reverse = graph.reverse();
+		dist = new float[n];
+		next = new int[n];
+		open = new IndexedHeap(n);
+		kept = new boolean[n];
+		subtree = new int[n];
+		rebuild(goal);
+	}
+
+	/**
+	 * This moves the field's goal, repairing the field instead of rebuilding it when it can.
+	 * Paths already made from the field follow the new goal from their next step.
+	 * @param newGoal The index of the new goal vertex.
+	 */
+	public void retarget(int newGoal){
+		if(newGoal == goal)
+			return;
+		// Nothing can be kept if the new goal couldn't reach the old one
+		if(dist[newGoal] == INF){
+			rebuild(newGoal);
+			return;
+		}
+		visited = 0;
+		// Find the vertices whose hops lead through the new goal (its subtree), whose distances are all still
+		// right less the new goal's distance; the rest have to be searched again
+		Arrays.fill(kept, false);
+		int size = 0;
+		kept[newGoal] = true;
+		subtree[size++] = newGoal;
+		for(int i = 0 ; i < size ; i++){
+			int x = subtree[i];
+			for(int e = reverse.firstEdge(x), end = reverse.endEdge(x) ; e < end ; e++){
+				int y = reverse.getTarget(e);
+				if((next[y] == x) && !kept[y]){
+					kept[y] = true;
+					subtree[size++] = y;
+				}
+			}
+		}
+		float shift = dist[newGoal];
+		for(int v = 0, n = dist.length ; v < n ; v++){
+			if(kept[v])
+				dist[v] -= shift;
+			else{
+				dist[v] = INF;
+				next[v] = -1;
+			}
+		}
+		goal = newGoal;
+		next[goal] = -1;
+		// Give the other vertices with an edge into the subtree their best hop into it, and search from there
+		open.clear();
+		for(int i = 0 ; i < size ; i++){
+			int x = subtree[i];
+			for(int e = reverse.firstEdge(x), end = reverse.endEdge(x) ; e < end ; e++){
+				int y = reverse.getTarget(e);
+				float cost = dist[x] + reverse.getCost(e);
+				if(!kept[y] && (cost < dist[y])){
+					dist[y] = cost;
+					next[y] = x;
+					open.insertOrDecrease(y, cost);
+				}
+			}
+		}
+		search();
+	}
+
+	/**
+	 * This gets the next vertex on the shortest path from a vertex to the goal.
+	 * @param v The index of the vertex.
+	 * @return The index of the next vertex, or -1 if the vertex is the goal or can't reach it.
+	 */
+	public int nextHop(int v){
+		return next[v];
+	}
+
+	/**
+	 * This gets the cost of the shortest path from a vertex to the goal.
+	 * @param v The index of the vertex.
+	 * @return The distance, or Float.POSITIVE_INFINITY if the vertex can't reach the goal.
+	 */
+	public float getDistance(int v){
+		return dist[v];
+	}
+
+	/**
+	 * This makes a path from a vertex to the goal that is worked out one hop at a time from the field as it is followed.
+	 * @param v The index of the vertex to start at.
+	 * @return The path, or null if the vertex can't reach the goal.
+	 */
+	public Path pathFrom(int v){
+		if(dist[v] == INF)
+			return null;
+		Path p = new Path();
+		p.add(graph.getLocation(v));
+		p.setPending(new Hops(v));
+		return p;
+	}
+
+	/**
+	 * This gets the index of the field's goal vertex.
+	 * @return The goal.
+	 */
+	public int getGoal(){
+		return goal;
+	}
+
+	/**
+	 * This gets the snapshot this field covers.
+	 * @return The snapshot.
+	 */
+	public CSRGraph getGraph(){
+		return graph;
+	}
+
+	/**
+	 * This gets the number of vertices expanded by the last build or repair of the field.
+	 * @return The number of vertices expanded.
+	 */
+	public int getVisited(){
+		return visited;
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This throws out the field and builds it again toward the given goal
+	private void rebuild(int newGoal){
+		visited = 0;
+		goal = newGoal;
+		Arrays.fill(dist, INF);
+		Arrays.fill(next, -1);
+		open.clear();
+		dist[goal] = 0;
+		open.insertOrDecrease(goal, 0);
+		search();
+	}
+
+	// This runs Dijkstra's backward from the vertices on the open list, settling every vertex that can reach them
+	private void search(){
+		while(!open.isEmpty()){
+			int x = open.pop();
+			visited++;
+			float d = dist[x];
+			// The reverse edges of x come from the vertices that have an edge to x
+			for(int e = reverse.firstEdge(x), end = reverse.endEdge(x) ; e < end ; e++){
+				int y = reverse.getTarget(e);
+				float cost = d + reverse.getCost(e);
+				if(cost < dist[y]){
+					dist[y] = cost;
+					next[y] = x;
+					open.insertOrDecrease(y, cost);
+				}
+			}
+		}
+	}
+
+	/**
+	 * This class works out a path from the field one hop at a time, as the path is followed.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	private class Hops implements Path.Segments {
+
+		/** The last vertex added to the path */
+		private int current;
+
+		/**
+		 * This constructs the hops of a path from the vertex it starts at.
+		 * @param start The index of the vertex the path starts at.
+		 */
+		Hops(int start){
+			current = start;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see thinking.paths.Path.Segments#hasNext()
+		 */
+		@Override
+		public boolean hasNext(){
+			return next[current] >= 0;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see thinking.paths.Path.Segments#copy()
+		 */
+		@Override
+		public Path.Segments copy(){
+			return new Hops(current);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see thinking.paths.Path.Segments#refineNext(thinking.paths.Path)
+		 */
+		@Override
+		public void refineNext(Path p){
+			current = next[current];
+			p.add(graph.getLocation(current));
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package thinking.paths;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.RecursiveAction;
+
+import graphs.CSRGraph;
+import manager.Settings;
+
+/**
+ * This class holds the containers for goal bounding: for every edge, the bounding box (in the translator's
+ * coordinates) of every vertex whose shortest path from the edge's source starts with that edge.
+ * A search can skip any edge whose box doesn't hold the goal, since that edge can't start a shortest
+ * path to it, and there is always a shortest path made only of edges whose boxes hold the goal.
+ * This can cut down the vertices A* expands a great deal (most on maps where the boxes overlap little),
+ * with any heuristic, and the path is still the shortest.
+ * The boxes take one Dijkstra's search from every vertex to compute (run in parallel), so they are only
+ * worth it for graphs that don't change; they are saved next to the graph file and reused while it matches.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class GoalBounds {
+
+	/** The first four bytes of every goal bounds file ("GABB") */
+	private static final int MAGIC = 0x47414242;
+	/** The version of the format this class writes */
+	public static final int FORMAT_VERSION = 1;
+
+	/** The snapshot these boxes were computed for */
+	private final CSRGraph graph;
+	/** The box of each edge, at [edge * 4] (lowest x, lowest y, highest x, highest y); empty boxes have the lowest above the highest */
+	private final float[] boxes;
+
+	// This wraps up a finished set of boxes
+	private GoalBounds(CSRGraph graph, float[] boxes){
+		this.graph = graph;
+		this.boxes = boxes;
+	}
+
+	/**
+	 * This gets the goal bounds for a snapshot, loading them from the file next to the graph file if
+	 * they are there and still match the graph, or computing them (and saving them there) if not.
+	 * @param g The snapshot to get boxes for. It must have coordinates.
+	 * @param graphFile The file the graph was loaded from (may be null to skip the disk).
+	 * @return The boxes for the snapshot.
+	 */
+	public static GoalBounds forGraph(CSRGraph g, File graphFile){
+		File f = (graphFile == null) ? null : fileFor(graphFile);
+		if((f != null) && f.isFile()){
+			try{
+				GoalBounds stored = load(g, f);
+				if(stored != null)
+					return stored;
+			} catch(IOException e){
+				Settings.fail("Unable to read goal bounds file, recomputing it!");
+			}
+		}
+		GoalBounds computed = compute(g);
+		if(f != null){
+			try{
+				computed.save(f);
+			} catch(IOException e){
+				Settings.fail("Unable to write goal bounds file!");
+			}
+		}
+		return computed;
+	}
+
+	/**
+	 * This gets the file the goal bounds for a graph file are stored in.
+	 * @param graphFile The graph file.
+	 * @return The goal bounds file next to it.
+	 */
+	public static File fileFor(File graphFile){
+		return new File(graphFile.getPath() + ".bounds");
+	}
+
+	/**
+	 * This computes the boxes for a snapshot, with one Dijkstra's search from every vertex in parallel.
+	 * Each search only grows the boxes of its own vertex's edges, so they never write to the same box.
+	 * @param g The snapshot to compute boxes for. It must have coordinates.
+	 * @return The boxes for the snapshot.
+	 */
+	public static GoalBounds compute(CSRGraph g){
+		int n = g.getNumberOfVertices();
+		float[] boxes = new float[4 * g.getNumberOfArcs()];
+		for(int i = 0 ; i < boxes.length ; i += 4){
+			boxes[i] = Float.POSITIVE_INFINITY;
+			boxes[i + 1] = Float.POSITIVE_INFINITY;
+			boxes[i + 2] = Float.NEGATIVE_INFINITY;
+			boxes[i + 3] = Float.NEGATIVE_INFINITY;
+		}
+		GoalBounds bounds = new GoalBounds(g, boxes);
+		ParallelRows<Void> rows = new ParallelRows<Void>(n);
+		for(int s = 0 ; s < n ; s++)
+			rows.submit(bounds.new RowTask(s));
+		rows.join();
+		return bounds;
+	}
+
+	/**
+	 * This loads the boxes from a file, if they were made for the given snapshot.
+	 * @param g The snapshot the boxes should belong to.
+	 * @param f The file to read.
+	 * @return The boxes, or null if the file was made for a different graph.
+	 * @throws IOException If the file can't be read.
+	 */
+	public static GoalBounds load(CSRGraph g, File f) throws IOException{
+		try(RandomAccessFile raf = new RandomAccessFile(f, "r"); FileChannel channel = raf.getChannel()){
+			MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if((bytes.remaining() < 24) || (bytes.getInt() != MAGIC) || (bytes.getInt() != FORMAT_VERSION))
+				return null;
+			int n = bytes.getInt();
+			int arcs = bytes.getInt();
+			long checksum = bytes.getLong();
+			if((n != g.getNumberOfVertices()) || (arcs != g.getNumberOfArcs()) || (checksum != g.getChecksum()))
+				return null;
+			if(bytes.remaining() != 16L * arcs)
+				return null;
+			float[] boxes = new float[4 * arcs];
+			bytes.asFloatBuffer().get(boxes);
+			return new GoalBounds(g, boxes);
+		}
+	}
+
+	/**
+	 * This saves the boxes to a file, along with enough about the graph to tell if they still match it later.
+	 * @param f The file to write.
+	 * @throws IOException If the file can't be written.
+	 */
+	public void save(File f) throws IOException{
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))){
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(graph.getNumberOfVertices());
+			out.writeInt(graph.getNumberOfArcs());
+			out.writeLong(graph.getChecksum());
+			for(float b : boxes)
+				out.writeFloat(b);
+		}
+	}
+
+	/**
+	 * This will determine if an edge's box holds a point, meaning the edge could start a shortest path to a vertex there.
+	 * @param edge The index of the edge.
+	 * @param x The x coordinate of the point (the goal's).
+	 * @param y The y coordinate of the point (the goal's).
+	 * @return True if the box holds the point, false if the edge can be skipped.
+	 */
+	public boolean contains(int edge, float x, float y){
+		int i = edge * 4;
+		return (x >= boxes[i]) && (y >= boxes[i + 1]) && (x <= boxes[i + 2]) && (y <= boxes[i + 3]);
+	}
+
+	/**
+	 * This gets the snapshot these boxes were computed for.
+	 * @return The snapshot.
+	 */
+	public CSRGraph getGraph(){
+		return graph;
+	}
+
+	/**
+	 * This gives a rough count of the bytes used by the boxes.
+	 * @return The size of the boxes in bytes.
+	 */
+	public long getMemoryFootprint(){
+		return 4L * boxes.length;
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	/**
+	 * This class grows the boxes of one vertex's edges with a Dijkstra's search from it.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	@SuppressWarnings("serial")
+	private class RowTask extends RecursiveAction {
+
+		/** The vertex to search from */
+		private final int source;
+
+		/**
+		 * This constructs a task to grow the boxes of a vertex's edges.
+		 * @param source The index of the vertex.
+		 */
+		RowTask(int source){
+			this.source = source;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute(){
+			SearchWorkspace ws = SearchWorkspace.forThread(graph.getNumberOfVertices());
+			// The edge out of the source that each reached vertex's path starts with
+			int[] first = new int[graph.getNumberOfVertices()];
+			ws.reach(source, 0, -1);
+			ws.open.insertOrDecrease(source, 0);
+			while(!ws.open.isEmpty()){
+				int x = ws.open.pop();
+				ws.close(x);
+				if(x != source){
+					int i = first[x] * 4;
+					float vx = graph.getX(x);
+					float vy = graph.getY(x);
+					boxes[i] = Math.min(boxes[i], vx);
+					boxes[i + 1] = Math.min(boxes[i + 1], vy);
+					boxes[i + 2] = Math.max(boxes[i + 2], vx);
+					boxes[i + 3] = Math.max(boxes[i + 3], vy);
+				}
+				float csf = ws.getCost(x);
+				for(int e = graph.firstEdge(x), end = graph.endEdge(x) ; e < end ; e++){
+					int y = graph.getTarget(e);
+					float cost = csf + graph.getCost(e);
+					if(!ws.isClosed(y) && (cost < ws.getCost(y))){
+						ws.reach(y, cost, x);
+						// The parent is closed, so its first edge is already final
+						first[y] = (x == source) ? e : first[x];
+						ws.open.insertOrDecrease(y, cost);
+					}
+				}
+			}
+		}
+	}
+}
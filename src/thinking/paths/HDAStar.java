@@ -0,0 +1,363 @@
+package thinking.paths;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import graphs.CSRGraph;
+import graphs.Heuristic;
+import graphs.Heuristic.H_MODE;
+
+/**
+ * This class runs one A* search on several threads at once, with Hash Distributed A* (HDA*).
+ * Every vertex is owned by one thread, picked by a hash of its index, and only that thread keeps its
+ * cost and open list entry. A thread that finds a cheaper way to a vertex it doesn't own sends it to
+ * the owner's inbox (a lock-free queue many threads can add to and only the owner takes from) instead
+ * of touching the vertex itself, so the threads never wait on each other.
+ * Since the threads don't expand vertices in one global order, vertices can be reached more cheaply
+ * after they were expanded, and are expanded again. The cheapest path to the goal found so far is
+ * shared, and anything that can't beat it is dropped. The search is over once every thread has nothing
+ * left that could beat it and no messages are on the way; the path is then the shortest (as long as the
+ * heuristic is admissible).
+ * The helper threads are kept in a pool between searches, and a thread with nothing to do parks until
+ * a message is sent to it or the search is over.
+ * This only pays off on large graphs, where each expansion is worth more than passing a message.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class HDAStar {
+
+	/** The threads that help the calling thread search, kept between searches (made by the first search that needs help) */
+	private static ExecutorService helpers = null;
+
+	/** The snapshot being searched */
+	private final CSRGraph graph;
+	/** The index of the start vertex */
+	private final int start;
+	/** The index of the goal vertex */
+	private final int goal;
+	/** The type of heuristic used (null for Dijkstra's) */
+	private final H_MODE heuristic;
+	/** The precomputed tables for the heuristic (null if it only needs coordinates) */
+	private final PrecomputedHeuristic tables;
+	/** The number of threads searching */
+	private final int threads;
+	/** The cost so far of each vertex (only ever touched by the thread that owns it) */
+	private final float[] costs;
+	/** The parent of each vertex (only ever touched by the thread that owns it) */
+	private final int[] parents;
+	/** The inbox of each thread, for the vertices other threads found for it */
+	private final Inbox[] inboxes;
+	/** The thread doing each share of the search (null until it starts), to wake it when it is parked */
+	private final AtomicReferenceArray<Thread> workers;
+	/** The number of threads still working plus the number of messages not handled yet (0 once the search is over) */
+	private final AtomicLong work;
+	/** The cost of the cheapest path to the goal found so far, as float bits */
+	private final AtomicInteger best = new AtomicInteger(Float.floatToIntBits(Float.POSITIVE_INFINITY));
+	/** The number of vertices each thread expanded */
+	private final long[] expanded;
+	/** The number of edges each thread looked at */
+	private final long[] relaxed;
+
+	// This sets up a search, ready to run
+	private HDAStar(CSRGraph graph, int start, int goal, H_MODE heuristic, PrecomputedHeuristic tables, int threads){
+		int n = graph.getNumberOfVertices();
+		this.graph = graph;
+		this.start = start;
+		this.goal = goal;
+		this.heuristic = heuristic;
+		this.tables = tables;
+		this.threads = threads;
+		costs = new float[n];
+		Arrays.fill(costs, Float.POSITIVE_INFINITY);
+		parents = new int[n];
+		inboxes = new Inbox[threads];
+		for(int i = 0 ; i < threads ; i++)
+			inboxes[i] = new Inbox();
+		workers = new AtomicReferenceArray<Thread>(threads);
+		work = new AtomicLong(threads);
+		expanded = new long[threads];
+		relaxed = new long[threads];
+	}
+
+	/**
+	 * This finds the shortest path between two vertices, searching on several threads at once.
+	 * The calling thread is one of them.
+	 * @param graph The snapshot to search. It must have coordinates for the heuristic and path.
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the vertex to find the shortest path to.
+	 * @param heuristic The type of heuristic to use (null for Dijkstra's).
+	 * @param tables The precomputed tables for the heuristic (null if it only needs coordinates).
+	 * @param threads The number of threads to search with (at least 1).
+	 * @param stats The stats to count the search into (null to not count). They are kept on the path.
+	 * @return A path object representing the shortest path, or null if there isn't one.
+	 */
+	public static Path findPath(CSRGraph graph, int start, int goal, H_MODE heuristic, PrecomputedHeuristic tables, int threads, SearchStats stats){
+		HDAStar search = new HDAStar(graph, start, goal, heuristic, tables, Math.max(1, threads));
+		return search.run(stats);
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This gets the pool of helper threads, making it the first time
+	private static synchronized ExecutorService getHelpers(){
+		if(helpers == null){
+			// Every share of a search has to run at once, so the pool makes a new thread whenever none are free
+			helpers = Executors.newCachedThreadPool(new ThreadFactory(){
+				@Override
+				public Thread newThread(Runnable r){
+					// Don't keep the game running just for the helpers
+					Thread t = new Thread(r, "hda-worker");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return helpers;
+	}
+
+	// This runs every thread's share of the search, and builds the path once they are all done
+	private Path run(SearchStats stats){
+		Future<?>[] shares = new Future<?>[threads - 1];
+		if(threads > 1){
+			ExecutorService pool = getHelpers();
+			for(int i = 1 ; i < threads ; i++){
+				final int id = i;
+				shares[i - 1] = pool.submit(new Runnable(){
+					@Override
+					public void run(){
+						work(id);
+					}
+				});
+			}
+		}
+		work(0);
+		// Waiting on the helpers' shares also makes everything they wrote visible here
+		boolean interrupted = false;
+		for(Future<?> share : shares){
+			while(true){
+				try{
+					share.get();
+					break;
+				} catch(InterruptedException e){
+					interrupted = true;
+				} catch(ExecutionException e){
+					throw new IllegalStateException("A thread helping with the search failed", e.getCause());
+				}
+			}
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+
+		int visited = 0;
+		for(int i = 0 ; i < threads ; i++){
+			visited += expanded[i];
+			if(stats != null){
+				stats.expanded += expanded[i];
+				stats.relaxed += relaxed[i];
+			}
+		}
+		if(stats != null)
+			stats.stop();
+		if(Float.intBitsToFloat(best.get()) == Float.POSITIVE_INFINITY)
+			return null;
+		int length = 1;
+		for(int v = goal ; v != start ; v = parents[v]){
+			// Edges that cost nothing could make the parents loop
+			if(++length > parents.length)
+				return null;
+		}
+		int[] vertices = new int[length];
+		vertices[0] = start;
+		for(int i = length - 1, v = goal ; i > 0 ; i--, v = parents[v])
+			vertices[i] = v;
+		Path p = Path.through(graph, vertices);
+		p.verticesVistedOnCreation = visited;
+		p.stats = stats;
+		return p;
+	}
+
+	// This is one thread's share of the search: expanding the vertices it owns until the search is over
+	private void work(int id){
+		IndexedHeap open = new IndexedHeap(costs.length);
+		Inbox inbox = inboxes[id];
+		boolean active = true;
+		workers.set(id, Thread.currentThread());
+		if(owner(start) == id)
+			relax(open, start, 0, -1);
+		while(true){
+			// Take in the vertices the other threads found
+			for(Message m = inbox.poll() ; m != null ; m = inbox.poll()){
+				if(!active){
+					work.incrementAndGet();
+					active = true;
+				}
+				relax(open, m.vertex, m.cost, m.parent);
+				work.decrementAndGet();
+			}
+			float bound = Float.intBitsToFloat(best.get());
+			if(!open.isEmpty() && (open.peekKey() < bound)){
+				int x = open.pop();
+				expanded[id]++;
+				float csf = costs[x];
+				if(x == goal){
+					lowerBest(csf);
+					continue;
+				}
+				relaxed[id] += graph.endEdge(x) - graph.firstEdge(x);
+				for(int e = graph.firstEdge(x), end = graph.endEdge(x) ; e < end ; e++){
+					int y = graph.getTarget(e);
+					float cost = csf + graph.getCost(e);
+					if(cost >= bound)
+						continue;
+					int o = owner(y);
+					if(o == id)
+						relax(open, y, cost, x);
+					else{
+						// Count the message before sending it, so the search can't look finished while it is on the way
+						work.incrementAndGet();
+						inboxes[o].offer(new Message(y, cost, x));
+						wake(o);
+					}
+				}
+				continue;
+			}
+			// Nothing left here can beat the best path, so wait for more vertices or for the search to be over
+			open.clear();
+			if(active){
+				active = false;
+				if(work.decrementAndGet() == 0){
+					// This was the last of the work, so wake the others to see the search is over
+					for(int i = 0 ; i < threads ; i++)
+						if(i != id)
+							wake(i);
+					return;
+				}
+			}
+			if(work.get() == 0)
+				return;
+			// A message sent after the inbox was checked wakes the thread right back up, so none are missed
+			LockSupport.park(this);
+		}
+	}
+
+	// This wakes the thread doing a share of the search, if it is parked (or makes its next park return)
+	private void wake(int id){
+		Thread t = workers.get(id);
+		if(t != null)
+			LockSupport.unpark(t);
+	}
+
+	// This gives a vertex this thread owns a lower cost, if it is lower, and puts it on the open list
+	private void relax(IndexedHeap open, int v, float cost, int parent){
+		if(cost < costs[v]){
+			costs[v] = cost;
+			parents[v] = parent;
+			float f = cost + estimate(v);
+			if(f < Float.intBitsToFloat(best.get()))
+				open.insertOrDecrease(v, f);
+		}
+	}
+
+	// This lowers the cost of the best path found, if the given cost is lower
+	private void lowerBest(float cost){
+		while(true){
+			int bits = best.get();
+			// Costs are never negative, so their float bits sort the same way they do
+			if((cost >= Float.intBitsToFloat(bits)) || best.compareAndSet(bits, Float.floatToIntBits(cost)))
+				return;
+		}
+	}
+
+	// This gets the thread that owns a vertex, from a hash of its index
+	private int owner(int v){
+		int h = v * 0x9E3779B1;
+		h ^= h >>> 16;
+		return (h & 0x7fffffff) % threads;
+	}
+
+	// This gets the heuristic value from a vertex to the goal
+	private float estimate(int v){
+		if(heuristic == null)
+			return 0;
+		if(tables != null)
+			return tables.estimate(v, goal);
+		return Heuristic.getHeuristic(graph, v, goal, heuristic);
+	}
+
+	/**
+	 * This class is a vertex sent to the thread that owns it, and a link in that thread's inbox.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	private static class Message {
+
+		/** The vertex found */
+		final int vertex;
+		/** The cost so far it was found with */
+		final float cost;
+		/** The vertex it was found from */
+		final int parent;
+		/** The message after this one in the inbox */
+		volatile Message next = null;
+
+		/**
+		 * This constructs a message.
+		 * @param vertex The vertex found.
+		 * @param cost The cost so far it was found with.
+		 * @param parent The vertex it was found from.
+		 */
+		Message(int vertex, float cost, int parent){
+			this.vertex = vertex;
+			this.cost = cost;
+			this.parent = parent;
+		}
+	}
+
+	/**
+	 * This class is a lock-free queue of messages that any thread can add to, but only one thread takes from.
+	 * Adding swaps the new message in as the tail in one atomic step and then links the old tail to it,
+	 * so a message can be briefly invisible to the taker; it is still counted as work, so the search
+	 * waits for it.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	private static class Inbox {
+
+		/** The last message taken (a placeholder before the first), whose next is the first waiting */
+		private Message head = new Message(-1, 0, -1);
+		/** The last message added */
+		private final AtomicReference<Message> tail = new AtomicReference<Message>(head);
+
+		/**
+		 * This adds a message to the end of the queue. Any thread can call this.
+		 * @param m The message to add.
+		 */
+		void offer(Message m){
+			Message previous = tail.getAndSet(m);
+			previous.next = m;
+		}
+
+		/**
+		 * This takes the first message off the queue. Only the owning thread can call this.
+		 * @return The first message, or null if there isn't one (yet).
+		 */
+		Message poll(){
+			Message first = head.next;
+			if(first == null)
+				return null;
+			head = first;
+			return first;
+		}
+	}
+}
@@ -0,0 +1,459 @@
+package thinking.paths;
+
+import java.util.Arrays;
+
+import graphs.CSRGraph;
+
+/**
+ * This class finds paths hierarchically (HPA*), so long paths don't have to search the whole graph.
+ * The graph is split into clusters, and every vertex with an edge into another cluster is an entrance.
+ * The abstract graph links the entrances: each entrance connects to the other entrances of its cluster,
+ * at the cost of the shortest path between them inside the cluster (computed ahead of time), and to
+ * the entrances its edges lead to in other clusters.
+ *
+ * A query connects the start and goal to the entrances of their clusters, searches the abstract graph,
+ * and returns a path that only knows its first piece. The rest of it is worked out one hop between
+ * entrances at a time as the path is followed, each with a small search that stays inside one cluster.
+ * Every shortest path is a chain of those hops, so the paths found are still shortest paths.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class HierarchicalGraph {
+
+	/** The most vertices to put in a cluster if no other size is given */
+	public static final int DEFAULT_SIZE = 16;
+
+	/** The snapshot the abstract graph was built for */
+	private final CSRGraph graph;
+	/** The snapshot with its edges reversed, for searching back from the goal */
+	private final CSRGraph reverse;
+	/** The cluster of each vertex */
+	private final int[] clusters;
+	/** The entrance number of each vertex, or -1 if it isn't an entrance */
+	private final int[] entranceOf;
+	/** The vertex of each entrance */
+	private final int[] entrances;
+	/** Where each entrance's abstract edges start in the targets and costs arrays (one extra at the end) */
+	private final int[] offsets;
+	/** The entrance each abstract edge leads to */
+	private final int[] targets;
+	/** The cost of each abstract edge */
+	private final float[] costs;
+
+	// This wraps up a finished abstract graph
+	private HierarchicalGraph(CSRGraph graph, int[] clusters, int[] entranceOf, int[] entrances, int[] offsets, int[] targets, float[] costs){
+		this.graph = graph;
+		this.reverse = graph.reverse();
+		this.clusters = clusters;
+		this.entranceOf = entranceOf;
+		this.entrances = entrances;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.costs = costs;
+	}
+
+	/**
+	 * This splits a snapshot into clusters and builds the abstract graph of their entrances.
+	 * Bigger clusters mean fewer entrances to search between, but more abstract edges between them
+	 * and longer searches to work out each hop.
+	 * @param g The snapshot to build for. It must have coordinates to build paths from.
+	 * @param clusterSize The most vertices to put in each cluster.
+	 * @return The abstract graph for the snapshot.
+	 */
+	public static HierarchicalGraph build(CSRGraph g, int clusterSize){
+		int n = g.getNumberOfVertices();
+		int[] clusters = new int[n];
+		grow(g, Math.max(1, clusterSize), clusters);
+
+		// Every vertex on either end of an edge between two clusters is an entrance
+		int[] entranceOf = new int[n];
+		Arrays.fill(entranceOf, -1);
+		int size = 0;
+		for(int v = 0 ; v < n ; v++){
+			for(int e = g.firstEdge(v), end = g.endEdge(v) ; e < end ; e++){
+				int w = g.getTarget(e);
+				if(clusters[w] == clusters[v])
+					continue;
+				if(entranceOf[v] < 0)
+					entranceOf[v] = size++;
+				if(entranceOf[w] < 0)
+					entranceOf[w] = size++;
+			}
+		}
+		int[] entrances = new int[size];
+		for(int v = 0 ; v < n ; v++){
+			if(entranceOf[v] >= 0)
+				entrances[entranceOf[v]] = v;
+		}
+
+		// Link each entrance to the rest of its cluster's entrances, and across its edges into other clusters
+		int[][] edgeTargets = new int[size][];
+		float[][] edgeCosts = new float[size][];
+		int[] found = new int[16];
+		float[] foundCosts = new float[16];
+		SearchWorkspace ws = SearchWorkspace.forThread(n);
+		int arcs = 0;
+		for(int i = 0 ; i < size ; i++){
+			int a = entrances[i];
+			int links = 0;
+			searchCluster(g, clusters, a, -1, ws, null);
+			for(int j = 0 ; j < size ; j++){
+				int b = entrances[j];
+				if((b == a) || !ws.isClosed(b))
+					continue;
+				if(links == found.length){
+					found = Arrays.copyOf(found, links * 2);
+					foundCosts = Arrays.copyOf(foundCosts, links * 2);
+				}
+				found[links] = j;
+				foundCosts[links++] = ws.getCost(b);
+			}
+			for(int e = g.firstEdge(a), end = g.endEdge(a) ; e < end ; e++){
+				int w = g.getTarget(e);
+				if(clusters[w] == clusters[a])
+					continue;
+				if(links == found.length){
+					found = Arrays.copyOf(found, links * 2);
+					foundCosts = Arrays.copyOf(foundCosts, links * 2);
+				}
+				found[links] = entranceOf[w];
+				foundCosts[links++] = g.getCost(e);
+			}
+			edgeTargets[i] = Arrays.copyOf(found, links);
+			edgeCosts[i] = Arrays.copyOf(foundCosts, links);
+			arcs += links;
+		}
+
+		// Flatten the links into the same layout as a CSR snapshot
+		int[] offsets = new int[size + 1];
+		int[] targets = new int[arcs];
+		float[] costs = new float[arcs];
+		for(int i = 0 ; i < size ; i++){
+			offsets[i + 1] = offsets[i] + edgeTargets[i].length;
+			System.arraycopy(edgeTargets[i], 0, targets, offsets[i], edgeTargets[i].length);
+			System.arraycopy(edgeCosts[i], 0, costs, offsets[i], edgeCosts[i].length);
+		}
+		return new HierarchicalGraph(g, clusters, entranceOf, entrances, offsets, targets, costs);
+	}
+
+	/**
+	 * This finds the shortest path between two vertices. Only the first hop of the path is worked out
+	 * before it is returned; the rest is worked out as the path is followed.
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the vertex to find the shortest path to.
+	 * @return A path object representing the shortest path, or null if there isn't one.
+	 */
+	public Path findPath(int start, int goal){
+		return findPath(start, goal, null);
+	}
+
+	/**
+	 * This finds the shortest path between two vertices, counting the work done to find the abstract
+	 * path (the time includes working out the first hop, but the hops aren't counted).
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the vertex to find the shortest path to.
+	 * @param stats The stats to count into (null to not count). They are stopped and kept on the path.
+	 * @return A path object representing the shortest path, or null if there isn't one.
+	 */
+	public Path findPath(int start, int goal, SearchStats stats){
+		int[] visited = new int[1];
+		int[] route = search(start, goal, visited, stats);
+		if(route == null)
+			return null;
+		Path p = new Path();
+		p.add(graph.getLocation(start));
+		p.setPending(new Route(route));
+		// Paths through the entrances are only near the shortest, so they are never cached as exact
+		p.bound = Float.POSITIVE_INFINITY;
+		p.verticesVistedOnCreation = visited[0];
+		if(stats != null){
+			stats.stop();
+			p.stats = stats;
+		}
+		return p;
+	}
+
+	/**
+	 * This finds the vertices the shortest path between two vertices hops between: the start, the
+	 * entrances it passes through, and the goal.
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the vertex to find the shortest path to.
+	 * @return The index of each vertex on the abstract path in order, or null if there isn't a path.
+	 */
+	public int[] findRoute(int start, int goal){
+		return search(start, goal, new int[1], null);
+	}
+
+	/**
+	 * This gets the snapshot the abstract graph was built for.
+	 * @return The snapshot.
+	 */
+	public CSRGraph getGraph(){
+		return graph;
+	}
+
+	/**
+	 * This gets the number of entrances (vertices of the abstract graph).
+	 * @return The number of entrances.
+	 */
+	public int getNumberOfEntrances(){
+		return entrances.length;
+	}
+
+	/**
+	 * This gets the number of edges in the abstract graph.
+	 * @return The number of abstract edges.
+	 */
+	public int getNumberOfArcs(){
+		return targets.length;
+	}
+
+	/**
+	 * This gives a rough count of the bytes used by the abstract graph and clusters.
+	 * @return The size of the arrays in bytes.
+	 */
+	public long getMemoryFootprint(){
+		return 4L * (clusters.length + entranceOf.length + entrances.length + offsets.length + targets.length + costs.length);
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This finds the abstract path between two vertices, counting the vertices visited in visited[0]
+	// (and everything else in the stats, if there are any)
+	private int[] search(int start, int goal, int[] visited, SearchStats stats){
+		if(start == goal)
+			return new int[]{start};
+		int size = entrances.length;
+		SearchWorkspace ws = SearchWorkspace.forThread(graph.getNumberOfVertices());
+
+		// Find the cost to the goal from each entrance of its cluster
+		float[] toGoal = new float[size];
+		Arrays.fill(toGoal, Float.POSITIVE_INFINITY);
+		visited[0] += searchCluster(reverse, clusters, goal, -1, ws, stats);
+		for(int i = 0 ; i < size ; i++){
+			if(ws.isClosed(entrances[i]))
+				toGoal[i] = ws.getCost(entrances[i]);
+		}
+
+		// Find the cost from the start to each entrance of its cluster (and to the goal, if it is in the same one)
+		visited[0] += searchCluster(graph, clusters, start, -1, ws, stats);
+		float direct = ws.isClosed(goal) ? ws.getCost(goal) : Float.POSITIVE_INFINITY;
+		int[] first = new int[16];
+		float[] firstCosts = new float[16];
+		int firsts = 0;
+		for(int i = 0 ; i < size ; i++){
+			if(!ws.isClosed(entrances[i]))
+				continue;
+			if(firsts == first.length){
+				first = Arrays.copyOf(first, firsts * 2);
+				firstCosts = Arrays.copyOf(firstCosts, firsts * 2);
+			}
+			first[firsts] = i;
+			firstCosts[firsts++] = ws.getCost(entrances[i]);
+		}
+
+		// Search the abstract graph, with one extra vertex (numbered after the entrances) for the goal
+		ws.begin(size + 1);
+		if(direct != Float.POSITIVE_INFINITY){
+			ws.reach(size, direct, -1);
+			ws.open.insertOrDecrease(size, direct);
+		}
+		for(int i = 0 ; i < firsts ; i++){
+			if(firstCosts[i] < ws.getCost(first[i])){
+				ws.reach(first[i], firstCosts[i], -1);
+				ws.open.insertOrDecrease(first[i], firstCosts[i]);
+			}
+		}
+		while(!ws.open.isEmpty()){
+			int x = ws.open.pop();
+			ws.close(x);
+			visited[0]++;
+			if(x == size)
+				return route(ws, start, goal);
+			if(stats != null){
+				stats.expanded++;
+				stats.relaxed += offsets[x + 1] - offsets[x];
+			}
+			float csf = ws.getCost(x);
+			for(int e = offsets[x], end = offsets[x + 1] ; e < end ; e++){
+				int y = targets[e];
+				float cost = csf + costs[e];
+				if(!ws.isClosed(y) && (cost < ws.getCost(y))){
+					ws.reach(y, cost, x);
+					if(stats != null)
+						stats.offer(ws.open, y);
+					ws.open.insertOrDecrease(y, cost);
+				}
+			}
+			float cost = csf + toGoal[x];
+			if(cost < ws.getCost(size)){
+				ws.reach(size, cost, x);
+				if(stats != null)
+					stats.offer(ws.open, size);
+				ws.open.insertOrDecrease(size, cost);
+			}
+		}
+		return null;
+	}
+
+	// This splits the graph into clusters of up to size vertices, each grown outwards from a seed cheapest first
+	// Each new seed is a vertex the last cluster ran into but couldn't take, so clusters are laid next to each other
+	private static int grow(CSRGraph g, int size, int[] clusters){
+		int n = g.getNumberOfVertices();
+		Arrays.fill(clusters, -1);
+		SearchWorkspace ws = SearchWorkspace.forThread(n);
+		int count = 0;
+		int scan = 0;
+		int seed = -1;
+		while(true){
+			if(seed < 0){
+				while((scan < n) && (clusters[scan] >= 0))
+					scan++;
+				if(scan == n)
+					return count;
+				seed = scan;
+			}
+			int taken = 0;
+			ws.begin(n);
+			ws.reach(seed, 0, -1);
+			ws.open.insertOrDecrease(seed, 0);
+			while(!ws.open.isEmpty() && (taken < size)){
+				int x = ws.open.pop();
+				ws.close(x);
+				clusters[x] = count;
+				taken++;
+				float csf = ws.getCost(x);
+				for(int e = g.firstEdge(x), end = g.endEdge(x) ; e < end ; e++){
+					int y = g.getTarget(e);
+					float cost = csf + g.getCost(e);
+					if((clusters[y] < 0) && !ws.isClosed(y) && (cost < ws.getCost(y))){
+						ws.reach(y, cost, x);
+						ws.open.insertOrDecrease(y, cost);
+					}
+				}
+			}
+			count++;
+			seed = ws.open.isEmpty() ? -1 : ws.open.pop();
+		}
+	}
+
+	// This lists the vertices of the abstract path from the search tree, with the goal's extra vertex as the last one
+	private int[] route(SearchWorkspace ws, int start, int goal){
+		int size = entrances.length;
+		int hops = 0;
+		for(int x = ws.getParent(size) ; x != -1 ; x = ws.getParent(x))
+			hops++;
+		int[] route = new int[hops + 2];
+		route[0] = start;
+		route[hops + 1] = goal;
+		for(int x = ws.getParent(size), i = hops ; x != -1 ; x = ws.getParent(x), i--)
+			route[i] = entrances[x];
+		return route;
+	}
+
+	// This runs Dijkstra's algorithm from a vertex without leaving its cluster, stopping at the goal if there is one (-1 for none)
+	// It returns the number of vertices visited (and counts everything else in the stats, if there are any)
+	private static int searchCluster(CSRGraph g, int[] clusters, int source, int goal, SearchWorkspace ws, SearchStats stats){
+		int cluster = clusters[source];
+		int visited = 0;
+		ws.begin(g.getNumberOfVertices());
+		ws.reach(source, 0, -1);
+		ws.open.insertOrDecrease(source, 0);
+		while(!ws.open.isEmpty()){
+			int x = ws.open.pop();
+			ws.close(x);
+			visited++;
+			if(x == goal)
+				break;
+			if(stats != null){
+				stats.expanded++;
+				stats.relaxed += g.endEdge(x) - g.firstEdge(x);
+			}
+			float csf = ws.getCost(x);
+			for(int e = g.firstEdge(x), end = g.endEdge(x) ; e < end ; e++){
+				int y = g.getTarget(e);
+				if((clusters[y] != cluster) || ws.isClosed(y))
+					continue;
+				float cost = csf + g.getCost(e);
+				if(cost < ws.getCost(y)){
+					ws.reach(y, cost, x);
+					if(stats != null)
+						stats.offer(ws.open, y);
+					ws.open.insertOrDecrease(y, cost);
+				}
+			}
+		}
+		return visited;
+	}
+
+	/**
+	 * This class works out the hops of an abstract path one at a time, as the path is followed.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	private class Route implements Path.Segments {
+
+		/** The vertices of the abstract path */
+		private final int[] route;
+		/** The hop to work out next (from route[next] to route[next + 1]) */
+		private int next = 0;
+
+		/**
+		 * This constructs the pieces of a path from its abstract path.
+		 * @param route The vertices of the abstract path, from the start to the goal.
+		 */
+		Route(int[] route){
+			this.route = route;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see thinking.paths.Path.Segments#hasNext()
+		 */
+		@Override
+		public boolean hasNext(){
+			return next < route.length - 1;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see thinking.paths.Path.Segments#copy()
+		 */
+		@Override
+		public Path.Segments copy(){
+			Route r = new Route(route);
+			r.next = next;
+			return r;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see thinking.paths.Path.Segments#refineNext(thinking.paths.Path)
+		 */
+		@Override
+		public void refineNext(Path p){
+			int a = route[next];
+			int b = route[++next];
+			if(a == b)
+				return;
+			// Hops between clusters are single edges
+			if(clusters[a] != clusters[b]){
+				p.add(graph.getLocation(b));
+				return;
+			}
+			// Hops inside a cluster are the shortest path through it
+			SearchWorkspace ws = SearchWorkspace.forThread(graph.getNumberOfVertices());
+			searchCluster(graph, clusters, a, b, ws, null);
+			int length = 0;
+			for(int v = b ; v != a ; v = ws.getParent(v))
+				length++;
+			int[] hop = new int[length];
+			for(int v = b, i = length - 1 ; v != a ; v = ws.getParent(v), i--)
+				hop[i] = v;
+			for(int v : hop)
+				p.add(graph.getLocation(v));
+		}
+	}
+}
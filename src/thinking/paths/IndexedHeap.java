@@ -0,0 +1,220 @@
+package thinking.paths;
+
+import java.util.Arrays;
+
+/**
+ * This class implements a binary min-heap of dense vertex indices, keyed by float priorities.
+ * Each index can be in the heap at most once, and the heap remembers where every index lives
+ * so that a lower priority can be given to an index already in the heap (decrease-key) in
+ * O(log n) time, instead of searching and re-sorting the whole open list.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class IndexedHeap {
+
+	/** The indices in the heap, in heap order */
+	private int[] heap;
+	/** The priority of each index in the heap, stored by index */
+	private float[] keys;
+	/** The position of each index in the heap array, or -1 if the index isn't in the heap */
+	private int[] positions;
+	/** The number of indices in the heap */
+	private int size = 0;
+
+	/**
+	 * This constructs an empty heap that can hold indices from 0 up to (but not including) the given capacity.
+	 * @param capacity The number of distinct indices this heap can hold.
+	 */
+	public IndexedHeap(int capacity){
+		heap = new int[capacity];
+		keys = new float[capacity];
+		positions = new int[capacity];
+		Arrays.fill(positions, -1);
+	}
+
+	/**
+	 * This will determine if the heap is empty.
+	 * @return True if there is nothing in the heap.
+	 */
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	/**
+	 * This determines how many indices are in the heap.
+	 * @return The number of indices in the heap.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * This will determine if the given index is in the heap.
+	 * @param index The index to look for.
+	 * @return True if the index is currently in the heap.
+	 */
+	public boolean contains(int index){
+		return positions[index] >= 0;
+	}
+
+	/**
+	 * This gets the priority the given index is stored with.
+	 * @param index An index that is in the heap.
+	 * @return The priority of the given index.
+	 */
+	public float getKey(int index){
+		return keys[index];
+	}
+
+	/**
+	 * This gets the lowest priority in the heap without removing anything.
+	 * @return The priority of the first index in the heap.
+	 */
+	public float peekKey(){
+		return keys[heap[0]];
+	}
+
+	/**
+	 * This gets the index with the lowest priority without removing it.
+	 * @return The first index in the heap.
+	 */
+	public int peek(){
+		return heap[0];
+	}
+
+	/**
+	 * This gets the index at the given position in the heap, for looking at everything in it without removing anything.
+	 * @param position A position from 0 up to (but not including) the size of the heap.
+	 * @return The index at that position.
+	 */
+	public int get(int position){
+		return heap[position];
+	}
+
+	/**
+	 * This adds the given index to the heap, or lowers its priority if it is already there with a higher one.
+	 * @param index The index to add.
+	 * @param key The priority of the index.
+	 * @return True if the heap changed.
+	 */
+	public boolean insertOrDecrease(int index, float key){
+		int pos = positions[index];
+		if(pos < 0){
+			keys[index] = key;
+			heap[size] = index;
+			positions[index] = size;
+			siftUp(size++);
+			return true;
+		}
+		if(key < keys[index]){
+			keys[index] = key;
+			siftUp(pos);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * This adds the given index to the heap, or changes its priority (up or down) if it is already there.
+	 * @param index The index to add or update.
+	 * @param key The new priority of the index.
+	 */
+	public void update(int index, float key){
+		int pos = positions[index];
+		if((pos < 0) || (key < keys[index])){
+			insertOrDecrease(index, key);
+			return;
+		}
+		keys[index] = key;
+		siftDown(pos);
+	}
+
+	/**
+	 * This will get and remove the index with the lowest priority.
+	 * @return The first index in the heap.
+	 */
+	public int pop(){
+		int first = heap[0];
+		positions[first] = -1;
+		size--;
+		if(size > 0){
+			heap[0] = heap[size];
+			positions[heap[0]] = 0;
+			siftDown(0);
+		}
+		return first;
+	}
+
+	/**
+	 * This removes the given index from the heap, if it is there.
+	 * @param index The index to remove.
+	 */
+	public void remove(int index){
+		int pos = positions[index];
+		if(pos < 0)
+			return;
+		positions[index] = -1;
+		size--;
+		if(pos < size){
+			// Fill the hole with the last index, and move it whichever way it needs to go
+			int last = heap[size];
+			heap[pos] = last;
+			positions[last] = pos;
+			siftDown(pos);
+			siftUp(positions[last]);
+		}
+	}
+
+	/**
+	 * This removes everything from the heap.
+	 */
+	public void clear(){
+		for(int i = 0 ; i < size ; i++)
+			positions[heap[i]] = -1;
+		size = 0;
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This moves the index at the given heap position up until its parent has a lower priority
+	private void siftUp(int pos){
+		int index = heap[pos];
+		float key = keys[index];
+		while(pos > 0){
+			int parentPos = (pos - 1) >>> 1;
+			int parent = heap[parentPos];
+			if(keys[parent] <= key)
+				break;
+			heap[pos] = parent;
+			positions[parent] = pos;
+			pos = parentPos;
+		}
+		heap[pos] = index;
+		positions[index] = pos;
+	}
+
+	// This moves the index at the given heap position down until both children have higher priorities
+	private void siftDown(int pos){
+		int index = heap[pos];
+		float key = keys[index];
+		int half = size >>> 1;
+		while(pos < half){
+			int childPos = (pos << 1) + 1;
+			int child = heap[childPos];
+			int rightPos = childPos + 1;
+			if((rightPos < size) && (keys[heap[rightPos]] < keys[child])){
+				childPos = rightPos;
+				child = heap[childPos];
+			}
+			if(key <= keys[child])
+				break;
+			heap[pos] = child;
+			positions[child] = pos;
+			pos = childPos;
+		}
+		heap[pos] = index;
+		positions[index] = pos;
+	}
+}
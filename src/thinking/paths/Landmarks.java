@@ -0,0 +1,311 @@
+package thinking.paths;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+import graphs.CSRGraph;
+import manager.Settings;
+
+/**
+ * This class holds the tables for the ALT (A*, Landmarks, Triangle inequality) heuristic.
+ * A handful of landmark vertices are picked far apart from each other, and the shortest distance
+ * from every landmark to every vertex (and from every vertex to every landmark, if the graph is
+ * directed) is computed ahead of time. By the triangle inequality, d(L, goal) - d(L, v) and
+ * d(v, L) - d(goal, L) are both lower bounds on d(v, goal) for any landmark L, so the largest of
+ * them is an admissible and consistent heuristic that follows the actual edge costs.
+ *
+ * The distances are stored vertex by vertex (all the landmarks for vertex 0, then for vertex 1, ...)
+ * so estimating a vertex only touches one small run of each table.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class Landmarks implements PrecomputedHeuristic {
+
+	/** The number of landmarks to pick if no other number is given */
+	public static final int DEFAULT_COUNT = 8;
+	/** The first four bytes of every landmark file ("GALT") */
+	private static final int MAGIC = 0x47414c54;
+	/** The version of the format this class writes */
+	public static final int FORMAT_VERSION = 1;
+
+	/** The snapshot these tables were computed for */
+	private final CSRGraph graph;
+	/** The index of each landmark */
+	private final int[] landmarks;
+	/** The distance from each landmark to each vertex, at [vertex * count + landmark] */
+	private final float[] from;
+	/** The distance from each vertex to each landmark, at [vertex * count + landmark] (the same table as from if the graph is undirected) */
+	private final float[] to;
+
+	// This wraps up a finished set of tables
+	private Landmarks(CSRGraph graph, int[] landmarks, float[] from, float[] to){
+		this.graph = graph;
+		this.landmarks = landmarks;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * This gets the landmark tables for a snapshot, loading them from the file next to the graph
+	 * file if they are there and still match the graph, or computing them (and saving them there) if not.
+	 * @param g The snapshot to get tables for.
+	 * @param graphFile The file the graph was loaded from (may be null to skip the disk).
+	 * @param count The number of landmarks to use if the tables have to be computed.
+	 * @return The tables for the snapshot.
+	 */
+	public static Landmarks forGraph(CSRGraph g, File graphFile, int count){
+		File f = (graphFile == null) ? null : fileFor(graphFile);
+		if((f != null) && f.isFile()){
+			try{
+				Landmarks stored = load(g, f);
+				if(stored != null)
+					return stored;
+			} catch(IOException e){
+				Settings.fail("Unable to read landmark file, recomputing it!");
+			}
+		}
+		Landmarks computed = compute(g, count);
+		if(f != null){
+			try{
+				computed.save(f);
+			} catch(IOException e){
+				Settings.fail("Unable to write landmark file!");
+			}
+		}
+		return computed;
+	}
+
+	/**
+	 * This gets the file the landmark tables for a graph file are stored in.
+	 * @param graphFile The graph file.
+	 * @return The landmark file next to it.
+	 */
+	public static File fileFor(File graphFile){
+		return new File(graphFile.getPath() + ".landmarks");
+	}
+
+	/**
+	 * This picks landmarks for a snapshot and computes their tables.
+	 * Landmarks are picked farthest-point first: the first one is the vertex farthest from vertex 0,
+	 * and each one after that is the vertex farthest from all the landmarks picked so far. Each pick
+	 * needs the distances from the last one, so the picks run one at a time, but the distances back
+	 * to each landmark on a directed graph are computed in parallel alongside them.
+	 * @param g The snapshot to compute tables for.
+	 * @param count The number of landmarks to pick (fewer are picked if the graph is smaller).
+	 * @return The tables for the snapshot.
+	 */
+	public static Landmarks compute(CSRGraph g, int count){
+		int n = g.getNumberOfVertices();
+		count = Math.max(0, Math.min(count, n));
+		int[] landmarks = new int[count];
+		float[][] fromRows = new float[count][];
+		ParallelRows<float[]> toTasks = new ParallelRows<float[]>(count);
+		CSRGraph reverse = g.reverse();
+
+		// The distance from each vertex to the closest landmark picked so far
+		float[] closest = (count > 0) ? PathFinding.distancesFrom(g, 0) : new float[0];
+		for(int i = 0 ; i < count ; i++){
+			landmarks[i] = farthest(closest);
+			fromRows[i] = PathFinding.distancesFrom(g, landmarks[i]);
+			if(!g.isUndirected())
+				toTasks.submit(new DistanceTask(reverse, landmarks[i]));
+			// The first pick is only measured from vertex 0, so start the closest distances over
+			if(i == 0)
+				Arrays.fill(closest, Float.POSITIVE_INFINITY);
+			for(int v = 0 ; v < n ; v++)
+				closest[v] = Math.min(closest[v], fromRows[i][v]);
+		}
+
+		float[] from = interleave(fromRows, n);
+		float[] to = from;
+		if(!g.isUndirected()){
+			List<float[]> toRows = toTasks.join();
+			to = interleave(toRows.toArray(new float[count][]), n);
+		}
+		return new Landmarks(g, landmarks, from, to);
+	}
+
+	/**
+	 * This loads landmark tables from a file, if they were made for the given snapshot.
+	 * @param g The snapshot the tables should belong to.
+	 * @param f The file to read.
+	 * @return The tables, or null if the file was made for a different graph.
+	 * @throws IOException If the file can't be read.
+	 */
+	public static Landmarks load(CSRGraph g, File f) throws IOException{
+		try(RandomAccessFile raf = new RandomAccessFile(f, "r"); FileChannel channel = raf.getChannel()){
+			MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if((bytes.remaining() < 28) || (bytes.getInt() != MAGIC) || (bytes.getInt() != FORMAT_VERSION))
+				return null;
+			int n = bytes.getInt();
+			int arcs = bytes.getInt();
+			long checksum = bytes.getLong();
+			int count = bytes.getInt();
+			if((n != g.getNumberOfVertices()) || (arcs != g.getNumberOfArcs()) || (checksum != g.getChecksum()))
+				return null;
+			long expected = 4L * (count + (long) n * count * (g.isUndirected() ? 1 : 2));
+			if((count < 0) || (bytes.remaining() != expected))
+				return null;
+			int[] landmarks = new int[count];
+			bytes.asIntBuffer().get(landmarks);
+			bytes.position(bytes.position() + 4 * count);
+			float[] from = new float[n * count];
+			bytes.asFloatBuffer().get(from);
+			bytes.position(bytes.position() + 4 * from.length);
+			float[] to = from;
+			if(!g.isUndirected()){
+				to = new float[n * count];
+				bytes.asFloatBuffer().get(to);
+			}
+			return new Landmarks(g, landmarks, from, to);
+		}
+	}
+
+	/**
+	 * This saves the tables to a file, along with enough about the graph to tell if they still match it later.
+	 * @param f The file to write.
+	 * @throws IOException If the file can't be written.
+	 */
+	public void save(File f) throws IOException{
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))){
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(graph.getNumberOfVertices());
+			out.writeInt(graph.getNumberOfArcs());
+			out.writeLong(graph.getChecksum());
+			out.writeInt(landmarks.length);
+			for(int l : landmarks)
+				out.writeInt(l);
+			for(float d : from)
+				out.writeFloat(d);
+			if(to != from){
+				for(float d : to)
+					out.writeFloat(d);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see thinking.paths.PrecomputedHeuristic#estimate(int, int)
+	 */
+	@Override
+	public float estimate(int v, int goal){
+		int count = landmarks.length;
+		int vRow = v * count;
+		int goalRow = goal * count;
+		float best = 0;
+		for(int i = 0 ; i < count ; i++){
+			// Landmarks that can't reach (or be reached from) either vertex don't bound anything
+			float ahead = from[goalRow + i] - from[vRow + i];
+			if((ahead > best) && (ahead != Float.POSITIVE_INFINITY))
+				best = ahead;
+			float behind = to[vRow + i] - to[goalRow + i];
+			if((behind > best) && (behind != Float.POSITIVE_INFINITY))
+				best = behind;
+		}
+		return best;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see thinking.paths.PrecomputedHeuristic#getGraph()
+	 */
+	@Override
+	public CSRGraph getGraph(){
+		return graph;
+	}
+
+	/**
+	 * This gets the number of landmarks.
+	 * @return The number of landmarks.
+	 */
+	public int getCount(){
+		return landmarks.length;
+	}
+
+	/**
+	 * This gets one of the landmarks.
+	 * @param i Which landmark to get.
+	 * @return The index of the landmark vertex.
+	 */
+	public int getLandmark(int i){
+		return landmarks[i];
+	}
+
+	/**
+	 * This gives a rough count of the bytes used by the tables.
+	 * @return The size of the tables in bytes.
+	 */
+	public long getMemoryFootprint(){
+		return 4L * (landmarks.length + from.length + ((to == from) ? 0 : to.length));
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This finds the vertex with the largest distance, counting unreachable vertices as the farthest of all
+	private static int farthest(float[] dist){
+		int best = 0;
+		for(int v = 1 ; v < dist.length ; v++){
+			if(dist[v] > dist[best])
+				best = v;
+		}
+		return best;
+	}
+
+	// This lays out one row of distances per landmark as one table ordered by vertex
+	private static float[] interleave(float[][] rows, int n){
+		int count = rows.length;
+		float[] table = new float[n * count];
+		for(int i = 0 ; i < count ; i++){
+			float[] row = rows[i];
+			for(int v = 0 ; v < n ; v++)
+				table[v * count + i] = row[v];
+		}
+		return table;
+	}
+
+	/**
+	 * This task computes the shortest distance from one vertex to every other vertex.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	@SuppressWarnings("serial")
+	private static class DistanceTask extends RecursiveTask<float[]> {
+
+		/** The graph to search */
+		private final CSRGraph graph;
+		/** The vertex to measure from */
+		private final int source;
+
+		/**
+		 * This constructs a task to measure distances from a vertex.
+		 * @param graph The graph to search.
+		 * @param source The index of the vertex to measure from.
+		 */
+		DistanceTask(CSRGraph graph, int source){
+			this.graph = graph;
+			this.source = source;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveTask#compute()
+		 */
+		@Override
+		protected float[] compute(){
+			return PathFinding.distancesFrom(graph, source);
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package thinking.paths;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This class runs the rows of a precomputed table in parallel, as tasks on the common fork-join pool.
+ * Each row starts as soon as it is submitted, so the caller can keep working while they run, and
+ * their results are collected in the order they were submitted.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ * @param <V> The type of result each row gives (Void for rows that only fill in a shared table).
+ */
+class ParallelRows<V> {
+
+	/** The rows submitted so far, in order */
+	private final ArrayList<ForkJoinTask<V>> rows;
+
+	/**
+	 * This constructs an empty set of rows.
+	 * @param expected The number of rows that will be submitted.
+	 */
+	ParallelRows(int expected){
+		rows = new ArrayList<ForkJoinTask<V>>(Math.max(0, expected));
+	}
+
+	/**
+	 * This starts a row running on the common pool.
+	 * @param row The task that computes the row.
+	 */
+	void submit(ForkJoinTask<V> row){
+		rows.add(ForkJoinPool.commonPool().submit(row));
+	}
+
+	/**
+	 * This waits for every row submitted to finish.
+	 * @return The result of each row, in the order they were submitted.
+	 */
+	List<V> join(){
+		List<V> results = new ArrayList<V>(rows.size());
+		for(ForkJoinTask<V> row : rows)
+			results.add(row.join());
+		return results;
+	}
+}
@@ -3,6 +3,7 @@ package thinking.paths;
 import java.util.Iterator;
 import java.util.LinkedList;
 
+import graphs.CSRGraph;
 import manager.Sketch;
 import model.Animation;
 import model.Circle;
@@ -23,8 +24,104 @@ public class Path implements Iterable<Target>{
 	private LinkedList<Target> targets = new LinkedList<Target>();
 	/** The number of vertices visited while making this path (for stats) */
 	public int verticesVistedOnCreation = 0;
-	/** The number of megabytes of memory used while making this path (for stats) */
-	public long megsUsed = -1;
+	/** The counts collected by the search that made this path (null unless stats were collected) */
+	public SearchStats stats = null;
+	/** The most this path's cost can be over the shortest path's cost, as a multiple (1 if it is the shortest) */
+	public float bound = 1;
+	/** The pieces of the path that haven't been worked out yet (null once the whole path is known) */
+	private Segments pending = null;
+	/** The index of each vertex on the path in order, in the snapshot it was found on (null if not known, or once the targets change) */
+	private int[] vertices = null;
+	
+	/**
+	 * This interface is for paths that are worked out a piece at a time, as they are followed.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	public interface Segments {
+		
+		/**
+		 * This will determine if there are any pieces of the path left to work out.
+		 * @return True if there are more pieces.
+		 */
+		public boolean hasNext();
+		
+		/**
+		 * This works out the next piece of the path and adds its targets to the end of the path.
+		 * @param p The path to add to.
+		 */
+		public void refineNext(Path p);
+		
+		/**
+		 * This makes a copy of the pieces left, which can be worked out separately from these.
+		 * @return The copy.
+		 */
+		public Segments copy();
+	}
+	
+	/**
+	 * This makes a path through the given vertices of a snapshot, keeping their indices (for the path cache).
+	 * @param graph The snapshot the vertices are in. It must have coordinates.
+	 * @param vertices The index of each vertex on the path in order.
+	 * @return The path.
+	 */
+	static Path through(CSRGraph graph, int[] vertices){
+		Path p = new Path();
+		for(int v : vertices)
+			p.add(graph.getLocation(v));
+		p.vertices = vertices;
+		return p;
+	}
+	
+	/**
+	 * This makes a copy of this path that can be followed separately from it.
+	 * @return A path with the same targets left (and the same pieces left to work out) as this one.
+	 */
+	public Path copy(){
+		Path p = new Path();
+		for(Target t : targets)
+			p.add(t.position);
+		p.pending = (pending == null) ? null : pending.copy();
+		p.vertices = vertices;
+		p.verticesVistedOnCreation = verticesVistedOnCreation;
+		p.stats = stats;
+		p.bound = bound;
+		return p;
+	}
+	
+	/**
+	 * This sets the pieces of the path that still have to be worked out. They are worked out one at a
+	 * time, whenever the path runs low on targets.
+	 * @param segments The pieces left to work out after the targets already on the path.
+	 */
+	public void setPending(Segments segments){
+		pending = segments;
+		refineAhead();
+	}
+	
+	/**
+	 * This gets the index of each vertex on the path, if the search that made it kept them and the targets haven't changed since.
+	 * @return The indices of the vertices in order, or null if they aren't known.
+	 */
+	int[] getVertices(){
+		return vertices;
+	}
+	
+	/**
+	 * This sets the index of each vertex on the path, once all of its targets have been added.
+	 * @param vertices The indices of the vertices in order.
+	 */
+	void setVertices(int[] vertices){
+		this.vertices = vertices;
+	}
+	
+	/**
+	 * This will determine if the whole path has been worked out yet.
+	 * @return True if there are no pieces of the path left to work out.
+	 */
+	public boolean isComplete(){
+		return pending == null;
+	}
 	
 	/**
 	 * This method add the given vector to the end of the list of targets.
@@ -32,6 +129,7 @@ public class Path implements Iterable<Target>{
 	 */
 	public void add(PVector vector){
 		targets.add(new Target(vector));
+		vertices = null;
 	}
 	
 	/**
@@ -40,6 +138,7 @@ public class Path implements Iterable<Target>{
 	 */
 	public void addFirst(PVector vector){
 		targets.addFirst(new Target(vector));
+		vertices = null;
 	}
 	
 	/**
@@ -48,6 +147,8 @@ public class Path implements Iterable<Target>{
 	 */
 	public Target removeFirst(){
 		lastRemoved = targets.removeFirst();
+		vertices = null;
+		refineAhead();
 		return lastRemoved;
 	}
 	
@@ -57,7 +158,7 @@ public class Path implements Iterable<Target>{
 	 * @return True if the given target is currently the last one on the path.
 	 */
 	public boolean isLast(Target t){
-		return targets.getLast().equals(t);
+		return (pending == null) && targets.getLast().equals(t);
 	}
 	
 	/**
@@ -115,6 +216,18 @@ public class Path implements Iterable<Target>{
 		return list;
 	}
 
+	// This works out pieces of the path until there is a target to head for after the current one
+	private void refineAhead(){
+		while((pending != null) && (targets.size() < 2)){
+			if(pending.hasNext())
+				pending.refineNext(this);
+			else
+				pending = null;
+		}
+		if((pending != null) && !pending.hasNext())
+			pending = null;
+	}
+	
 	/**
 	 * This will determine if there are any targets left.
 	 * @return True if there are no more targets on the path.
@@ -0,0 +1,191 @@
+package thinking.paths;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import graphs.Heuristic.H_MODE;
+
+/**
+ * This class remembers recently found paths, so asking for the same path again (like a character
+ * making the same trip between two fixed spots) doesn't search the graph again.
+ * Paths are stored as the indices of their vertices, keyed by their start, goal, and heuristic, and
+ * the least recently used path is forgotten once the cache is full. On an undirected graph a path is
+ * also used backwards for the trip the other way. Every path belongs to one version of the graph, so
+ * the whole cache is cleared as soon as the graph changes. A search that was still running on an older
+ * version when the graph changed is late, so its path isn't remembered and its lookups always miss.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class PathCache {
+
+	/** The number of paths to remember if no other number is given */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/** The most paths to remember at once */
+	private final int capacity;
+	/** The paths remembered, least recently used first */
+	private final LinkedHashMap<Key, int[]> paths;
+	/** The version of the graph the remembered paths were found on */
+	private int version = -1;
+	/** The number of lookups that found a path */
+	private long hits = 0;
+	/** The number of lookups that didn't */
+	private long misses = 0;
+
+	/**
+	 * This constructs an empty cache.
+	 * @param capacity The most paths to remember at once.
+	 */
+	public PathCache(final int capacity){
+		this.capacity = capacity;
+		this.paths = new LinkedHashMap<Key, int[]>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest){
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * This looks up a path, trying it backwards from the goal to the start too if the graph is undirected.
+	 * @param start The index of the vertex the path starts at.
+	 * @param goal The index of the vertex the path ends at.
+	 * @param heuristic The heuristic the path was found with.
+	 * @param graphVersion The current version of the graph.
+	 * @param undirected Whether or not the graph is undirected.
+	 * @return The indices of the vertices on the path in order, or null if it isn't in the cache.
+	 */
+	public synchronized int[] get(int start, int goal, H_MODE heuristic, int graphVersion, boolean undirected){
+		if(!checkVersion(graphVersion)){
+			misses++;
+			return null;
+		}
+		int[] path = paths.get(new Key(start, goal, heuristic));
+		if(path != null){
+			hits++;
+			return path.clone();
+		}
+		if(undirected){
+			path = paths.get(new Key(goal, start, heuristic));
+			if(path != null){
+				hits++;
+				int[] reversed = new int[path.length];
+				for(int i = 0 ; i < path.length ; i++)
+					reversed[i] = path[path.length - 1 - i];
+				return reversed;
+			}
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * This remembers a path, unless it was found on an older version of the graph than the cache is on.
+	 * @param start The index of the vertex the path starts at.
+	 * @param goal The index of the vertex the path ends at.
+	 * @param heuristic The heuristic the path was found with.
+	 * @param graphVersion The version of the graph the path was found on.
+	 * @param vertices The indices of the vertices on the path in order.
+	 */
+	public synchronized void put(int start, int goal, H_MODE heuristic, int graphVersion, int[] vertices){
+		if(checkVersion(graphVersion) && (capacity > 0))
+			paths.put(new Key(start, goal, heuristic), vertices.clone());
+	}
+
+	/**
+	 * This forgets every path, but keeps the hit and miss counts.
+	 */
+	public synchronized void clear(){
+		paths.clear();
+	}
+
+	/**
+	 * This gets the number of paths remembered.
+	 * @return The number of paths in the cache.
+	 */
+	public synchronized int size(){
+		return paths.size();
+	}
+
+	/**
+	 * This gets the number of lookups that found a path.
+	 * @return The number of hits.
+	 */
+	public synchronized long getHits(){
+		return hits;
+	}
+
+	/**
+	 * This gets the number of lookups that didn't find a path.
+	 * @return The number of misses.
+	 */
+	public synchronized long getMisses(){
+		return misses;
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This forgets every path if the graph has changed since they were found, and returns false if the
+	// given version is older than the cache's (the graph only moves forward, so it is from a late search)
+	private boolean checkVersion(int graphVersion){
+		if(graphVersion < version)
+			return false;
+		if(graphVersion > version){
+			paths.clear();
+			version = graphVersion;
+		}
+		return true;
+	}
+
+	/**
+	 * This class is the key a path is remembered under.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	private static class Key {
+
+		/** The index of the start vertex */
+		private final int start;
+		/** The index of the goal vertex */
+		private final int goal;
+		/** The heuristic the path was found with (may be null) */
+		private final H_MODE heuristic;
+
+		/**
+		 * This constructs a key for a path.
+		 * @param start The index of the start vertex.
+		 * @param goal The index of the goal vertex.
+		 * @param heuristic The heuristic the path was found with.
+		 */
+		Key(int start, int goal, H_MODE heuristic){
+			this.start = start;
+			this.goal = goal;
+			this.heuristic = heuristic;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode(){
+			return (31 * start + goal) * 31 + ((heuristic == null) ? 0 : heuristic.ordinal() + 1);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object o){
+			if(!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return (start == k.start) && (goal == k.goal) && (heuristic == k.heuristic);
+		}
+	}
+}
@@ -1,11 +1,19 @@
 package thinking.paths;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import graphs.*;
 import graphs.Heuristic.H_MODE;
+import manager.Settings;
 
 /**
  * This class contains methods for path finding,
@@ -15,8 +23,129 @@ import graphs.Heuristic.H_MODE;
  */
 public class PathFinding {
 	
+	/**
+	 * This type defines how the open list is kept while searching.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	public enum OPEN_SET{
+		/** A list that is re-sorted every expansion (the original implementation) */
+		SORTED_LIST,
+		/** An indexed binary heap with decrease-key */
+		BINARY_HEAP
+	}
+	
+	/**
+	 * This type defines which search findPath runs.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	public enum ALGORITHM{
+		/** A* from the start to the goal */
+		ASTAR,
+		/** Dijkstra's algorithm from the start to the goal */
+		DIJKSTRA,
+		/** Dijkstra's algorithm from both ends at once, meeting in the middle */
+		BIDIRECTIONAL_DIJKSTRA,
+		/** A* from both ends at once, using the average of both heuristics as a balanced potential */
+		BIDIRECTIONAL_ASTAR,
+		/** An upward search from both ends of a precomputed Contraction Hierarchy */
+		CONTRACTION_HIERARCHY,
+		/** A search over the entrances between clusters (HPA*), worked out into a full path as it is followed */
+		HIERARCHICAL,
+		/** A* with the heuristic multiplied by the weight, which expands fewer vertices for a path at most that many times longer */
+		WEIGHTED_ASTAR,
+		/** Anytime Repairing A*, which finds a weighted path first and improves it until the time for it runs out */
+		ARA,
+		/** Following the first hops in a precomputed table of every shortest path (A* on graphs too big for one) */
+		ALL_PAIRS,
+		/** A* on several threads at once, each expanding the vertices it owns (HDA*) */
+		PARALLEL_ASTAR,
+		/** Real-time search (RTAA*), which works out the path a bounded step at a time as it is followed */
+		REAL_TIME
+	}
+	
+	/**
+	 * This class is one path to find in a batch of queries run by findAll.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	public static class Query {
+		
+		/** The vertex to start searching at */
+		public final Vertex start;
+		/** The vertex to find the shortest path to */
+		public final Vertex goal;
+		/** The type of heuristic to use (null for Dijkstra's) */
+		public final H_MODE heuristic;
+		
+		/**
+		 * This constructs a query.
+		 * @param start The vertex to start searching at.
+		 * @param goal The vertex to find the shortest path to.
+		 * @param heuristic The type of heuristic to use (null for Dijkstra's).
+		 */
+		public Query(Vertex start, Vertex goal, H_MODE heuristic){
+			this.start = start;
+			this.goal = goal;
+			this.heuristic = heuristic;
+		}
+	}
+	
 	/** The translator for this instance of PathFinding, used to quantize points and localize vertices */
 	public Translator translator;
+	/** The search findPath runs */
+	public ALGORITHM algorithm = ALGORITHM.ASTAR;
+	/** The type of open list the searches use */
+	public OPEN_SET openSet = OPEN_SET.BINARY_HEAP;
+	/** The frozen copy of the translator's graph that the heap searches run on */
+	private CSRGraph snapshot = null;
+	/** The landmark tables for the LANDMARK heuristic (computed or loaded when first needed) */
+	private Landmarks landmarks = null;
+	/** The number of landmarks to pick when the landmark tables have to be computed */
+	public int landmarkCount = Landmarks.DEFAULT_COUNT;
+	/** The cluster tables for the CLUSTER heuristic (computed or loaded when first needed) */
+	private ClusterTable clusters = null;
+	/** The number of clusters to make when the cluster tables have to be computed */
+	public int clusterCount = ClusterTable.DEFAULT_COUNT;
+	/** The query engine for the Contraction Hierarchy of the snapshot (built or loaded when first needed) */
+	private CHQuery hierarchy = null;
+	/** The goal bounding boxes for skipping edges in heap searches (computed or loaded when first needed) */
+	private GoalBounds goalBounds = null;
+	/** Whether or not the heap searches skip edges that can't start a shortest path to the goal (for graphs that don't change) */
+	public boolean goalBounding = false;
+	/** The abstract graph of cluster entrances for hierarchical path finding (built when first needed) */
+	private HierarchicalGraph abstractGraph = null;
+	/** The most vertices to put in each cluster when the abstract graph has to be built */
+	public int abstractClusterSize = HierarchicalGraph.DEFAULT_SIZE;
+	/** The shortest paths between every pair of vertices of the snapshot (computed when first needed) */
+	private AllPairsTable pairTable = null;
+	/** The snapshot that was too big for an all-pairs table, so it isn't tried (or reported) again */
+	private CSRGraph pairTableRefused = null;
+	/** The most vertices to build an all-pairs table for */
+	public int allPairsLimit = AllPairsTable.DEFAULT_LIMIT;
+	/** The flow fields made for recent goals, most recently used first */
+	private LinkedList<FlowField> flowFields = new LinkedList<FlowField>();
+	/** The most flow fields to keep (one per goal) */
+	public int flowFieldCount = 4;
+	/** The real-time searches made for recent goals, with what they learned, most recently used first */
+	private LinkedList<RealTimeSearch> realTimeSearches = new LinkedList<RealTimeSearch>();
+	/** The most real-time searches to keep (one per goal) */
+	public int realTimeCount = 16;
+	/** The number of vertices each step of a real-time search expands */
+	public int lookahead = RealTimeSearch.DEFAULT_LOOKAHEAD;
+	/** The recently found paths findPath reuses (null to always search) */
+	public PathCache cache = new PathCache(PathCache.DEFAULT_CAPACITY);
+	/** Whether or not searches collect stats (kept on the paths they find) */
+	public boolean collectStats = false;
+	/** The weight on the heuristic for weighted A*, and the starting weight for ARA* (at least 1) */
+	public float weight = 2.0f;
+	/** How much ARA* lowers the weight after each path it finds */
+	public float weightStep = 0.5f;
+	/** How long ARA* keeps improving its path after the first one, in nanoseconds */
+	public long anytimeBudget = 5000000L;
+	/** The number of threads parallel A* searches with */
+	public int searchThreads = Runtime.getRuntime().availableProcessors();
 	
 	/**
 	 * This constructs a PathFinding object with the given parameters.
@@ -27,6 +156,568 @@ public class PathFinding {
 		translator = t;
 	}
 	
+	/**
+	 * This constructs a PathFinding object that starts out with an already built snapshot of the
+	 * translator's graph, such as one loaded from a binary graph file.
+	 * @param t The translator to use for this PathFinding instance.
+	 * @param snapshot A snapshot of the translator's graph, made at its current version.
+	 */
+	public PathFinding(Translator t, CSRGraph snapshot){
+		translator = t;
+		this.snapshot = snapshot;
+	}
+	
+	/**
+	 * This gets a CSR snapshot of the translator's graph, rebuilding it if the graph has
+	 * changed since the last one was made.
+	 * @return An up to date snapshot of the graph being searched.
+	 */
+	public synchronized CSRGraph getSnapshot(){
+		Graph graph = translator.getGraph();
+		if((snapshot == null) || (snapshot.getVersion() != graph.getVersion()))
+			snapshot = new CSRGraph(graph, translator);
+		return snapshot;
+	}
+	
+	/**
+	 * This gets the landmark tables for the given snapshot, loading them from next to the graph
+	 * file (or computing and saving them) the first time they are needed for that snapshot.
+	 * @param graph The snapshot to get tables for.
+	 * @return The landmark tables for the snapshot.
+	 */
+	public synchronized Landmarks getLandmarks(CSRGraph graph){
+		if((landmarks == null) || (landmarks.getGraph() != graph))
+			landmarks = Landmarks.forGraph(graph, translator.getGraph().getFile(), landmarkCount);
+		return landmarks;
+	}
+	
+	/**
+	 * This gets the cluster tables for the given snapshot, loading them from next to the graph
+	 * file (or computing and saving them) the first time they are needed for that snapshot.
+	 * @param graph The snapshot to get tables for.
+	 * @return The cluster tables for the snapshot.
+	 */
+	public synchronized ClusterTable getClusters(CSRGraph graph){
+		if((clusters == null) || (clusters.getGraph() != graph))
+			clusters = ClusterTable.forGraph(graph, translator.getGraph().getFile(), clusterCount);
+		return clusters;
+	}
+	
+	/**
+	 * This gets the Contraction Hierarchy query engine for the given snapshot, loading the hierarchy from
+	 * next to the graph file (or building and saving it) the first time it is needed for that snapshot.
+	 * @param graph The snapshot to get a hierarchy for.
+	 * @return The query engine for the snapshot's hierarchy.
+	 */
+	public synchronized CHQuery getHierarchy(CSRGraph graph){
+		if((hierarchy == null) || (hierarchy.getGraph() != graph))
+			hierarchy = new CHQuery(ContractionHierarchy.forGraph(graph, translator.getGraph().getFile()));
+		return hierarchy;
+	}
+	
+	/**
+	 * This gets the goal bounding boxes for the given snapshot, loading them from next to the graph
+	 * file (or computing and saving them) the first time they are needed for that snapshot.
+	 * @param graph The snapshot to get boxes for.
+	 * @return The goal bounding boxes for the snapshot.
+	 */
+	public synchronized GoalBounds getGoalBounds(CSRGraph graph){
+		if((goalBounds == null) || (goalBounds.getGraph() != graph))
+			goalBounds = GoalBounds.forGraph(graph, translator.getGraph().getFile());
+		return goalBounds;
+	}
+	
+	/**
+	 * This gets the abstract graph of cluster entrances for the given snapshot, building it the
+	 * first time it is needed for that snapshot.
+	 * @param graph The snapshot to get an abstract graph for.
+	 * @return The abstract graph for the snapshot.
+	 */
+	public synchronized HierarchicalGraph getAbstractGraph(CSRGraph graph){
+		if((abstractGraph == null) || (abstractGraph.getGraph() != graph))
+			abstractGraph = HierarchicalGraph.build(graph, abstractClusterSize);
+		return abstractGraph;
+	}
+	
+	/**
+	 * This gets the all-pairs table for the given snapshot, computing it the first time it is needed for
+	 * that snapshot. Snapshots with more vertices than the limit don't get one.
+	 * @param graph The snapshot to get a table for.
+	 * @return The table for the snapshot, or null if it has too many vertices.
+	 */
+	public synchronized AllPairsTable getAllPairs(CSRGraph graph){
+		if((pairTable != null) && (pairTable.getGraph() == graph))
+			return pairTable;
+		if(pairTableRefused == graph)
+			return null;
+		pairTable = AllPairsTable.compute(graph, allPairsLimit);
+		if(pairTable == null){
+			pairTableRefused = graph;
+			Settings.fail("Graph has more than " + allPairsLimit + " vertices, not building an all-pairs table!");
+		}
+		else
+			Settings.statusMessage("Built all-pairs table using " + (pairTable.getMemoryFootprint() / 1024) + "KB");
+		return pairTable;
+	}
+	
+	/**
+	 * This gets the flow field toward a goal on the current snapshot, for any number of characters heading there.
+	 * Fields are kept for the last few goals. If there isn't one for this goal but there is one for a neighboring
+	 * vertex (the goal moved a step), that field is repaired for the new goal instead of building a new one.
+	 * @param goal The vertex the field leads to.
+	 * @return The flow field toward the goal.
+	 */
+	public synchronized FlowField getFlowField(Vertex goal){
+		CSRGraph graph = getSnapshot();
+		int t = goal.getIndex();
+		FlowField neighbor = null;
+		for(Iterator<FlowField> it = flowFields.iterator() ; it.hasNext() ; ){
+			FlowField f = it.next();
+			// Fields for old snapshots are thrown out
+			if(f.getGraph() != graph)
+				it.remove();
+			else if(f.getGoal() == t){
+				it.remove();
+				flowFields.addFirst(f);
+				return f;
+			}
+			else if((neighbor == null) && (adjacent(graph, f.getGoal(), t) || adjacent(graph, t, f.getGoal())))
+				neighbor = f;
+		}
+		FlowField field;
+		if(neighbor != null){
+			flowFields.remove(neighbor);
+			neighbor.retarget(t);
+			field = neighbor;
+		}
+		else{
+			field = new FlowField(graph, t);
+			while(!flowFields.isEmpty() && (flowFields.size() >= flowFieldCount))
+				flowFields.removeLast();
+		}
+		flowFields.addFirst(field);
+		return field;
+	}
+	
+	/**
+	 * This gets the real-time search toward a goal on the current snapshot, with everything it has learned
+	 * so far, making it if there isn't one. Searches for the last few goals are kept, so characters heading
+	 * to the same place share (and add to) what was learned. Searches for old snapshots are thrown out.
+	 * @param goal The vertex to search toward.
+	 * @param heuristic The type of heuristic to start learning from.
+	 * @return The real-time search.
+	 */
+	public synchronized RealTimeSearch getRealTimeSearch(Vertex goal, H_MODE heuristic){
+		CSRGraph graph = getSnapshot();
+		int t = goal.getIndex();
+		for(Iterator<RealTimeSearch> it = realTimeSearches.iterator() ; it.hasNext() ; ){
+			RealTimeSearch r = it.next();
+			if(r.getGraph() != graph)
+				it.remove();
+			else if((r.getGoal() == t) && (r.getHeuristic() == heuristic)){
+				it.remove();
+				realTimeSearches.addFirst(r);
+				return r;
+			}
+		}
+		RealTimeSearch search = new RealTimeSearch(graph, t, heuristic, tablesFor(graph, heuristic));
+		while(!realTimeSearches.isEmpty() && (realTimeSearches.size() >= realTimeCount))
+			realTimeSearches.removeLast();
+		realTimeSearches.addFirst(search);
+		return search;
+	}
+	
+	/**
+	 * This computes the cost of the shortest path from one vertex to every other vertex of a snapshot.
+	 * @param graph The snapshot to search.
+	 * @param source The index of the vertex to measure from.
+	 * @return The distance to each vertex by index, or Float.POSITIVE_INFINITY for vertices that can't be reached.
+	 */
+	public static float[] distancesFrom(CSRGraph graph, int source){
+		int n = graph.getNumberOfVertices();
+		SearchWorkspace ws = SearchWorkspace.forThread(n);
+		float[] dist = new float[n];
+		Arrays.fill(dist, Float.POSITIVE_INFINITY);
+		ws.reach(source, 0, -1);
+		ws.open.insertOrDecrease(source, 0);
+		while(!ws.open.isEmpty()){
+			int x = ws.open.pop();
+			ws.close(x);
+			float csf = ws.getCost(x);
+			dist[x] = csf;
+			for(int e = graph.firstEdge(x), end = graph.endEdge(x) ; e < end ; e++){
+				int y = graph.getTarget(e);
+				float g = csf + graph.getCost(e);
+				if(!ws.isClosed(y) && (g < ws.getCost(y))){
+					ws.reach(y, g, x);
+					ws.open.insertOrDecrease(y, g);
+				}
+			}
+		}
+		return dist;
+	}
+	
+	/**
+	 * This method finds a path between two vertices with whichever search is selected in the algorithm field.
+	 * If the path is in the cache (or its reverse is, on an undirected graph) it is reused instead of searching,
+	 * and the paths this finds are added to the cache.
+	 * @param start The vertex to start searching at.
+	 * @param goal The vertex to find the shortest path to.
+	 * @param heuristic The type of heuristic to use (ignored by the Dijkstra searches).
+	 * @return A path object representing the path we find.
+	 */
+	public Path findPath(Vertex start, Vertex goal, H_MODE heuristic){
+		int version = translator.getGraph().getVersion();
+		Path p = recall(start, goal, heuristic);
+		if(p != null)
+			return p;
+		switch(algorithm){
+			case DIJKSTRA:					p = dijkstras(start, goal); break;
+			case BIDIRECTIONAL_DIJKSTRA:	p = bidirectionalDijkstras(start, goal); break;
+			case BIDIRECTIONAL_ASTAR:		p = bidirectionalAStar(start, goal, heuristic); break;
+			case CONTRACTION_HIERARCHY:		p = contractionHierarchy(start, goal); break;
+			case HIERARCHICAL:				p = hierarchical(start, goal); break;
+			case WEIGHTED_ASTAR:			p = weightedAStar(start, goal, heuristic); break;
+			case ARA:						p = anytimeAStar(start, goal, heuristic); break;
+			case ALL_PAIRS:					p = allPairs(start, goal, heuristic); break;
+			case PARALLEL_ASTAR:			p = parallelAStar(start, goal, heuristic); break;
+			case REAL_TIME:					p = realTime(start, goal, heuristic); break;
+			default:						p = aStar(start, goal, heuristic); break;
+		}
+		remember(start.getIndex(), goal.getIndex(), heuristic, version, p);
+		return p;
+	}
+	
+	/**
+	 * This starts an A* search (or Dijkstra's, with no heuristic) that is run a few vertices at a time by
+	 * calling its step method, instead of all at once. It searches whichever snapshot is current now, and
+	 * has arrays of its own, so other searches can run between its steps.
+	 * It searches the same way the heap searches do: if the algorithm is weighted A* the heuristic is
+	 * weighted, and if goal bounding is on edges are skipped with it.
+	 * If the path is in the cache, the search returned is already done.
+	 * @param start The vertex to start searching at.
+	 * @param goal The vertex to find the shortest path to.
+	 * @param heuristic The type of heuristic to use (null for Dijkstra's).
+	 * @return The search, ready for its first step.
+	 */
+	public TimeSlicedSearch beginSearch(Vertex start, Vertex goal, H_MODE heuristic){
+		return beginSearch(start, goal, heuristic, new SearchWorkspace());
+	}
+	
+	/**
+	 * This starts a search that is run a few vertices at a time, using the given workspace for its arrays.
+	 * @param start The vertex to start searching at.
+	 * @param goal The vertex to find the shortest path to.
+	 * @param heuristic The type of heuristic to use (null for Dijkstra's).
+	 * @param ws The workspace to keep the search in. Nothing else may use it until the search is done.
+	 * @return The search, ready for its first step.
+	 */
+	TimeSlicedSearch beginSearch(Vertex start, Vertex goal, H_MODE heuristic, SearchWorkspace ws){
+		Path p = recall(start, goal, heuristic);
+		if(p != null)
+			return new TimeSlicedSearch(p, ws);
+		CSRGraph graph = getSnapshot();
+		PrecomputedHeuristic tables = tablesFor(graph, heuristic);
+		float w = (algorithm == ALGORITHM.WEIGHTED_ASTAR) ? Math.max(1, weight) : 1;
+		GoalBounds bounds = goalBounding ? getGoalBounds(graph) : null;
+		return new TimeSlicedSearch(this, graph, start.getIndex(), goal.getIndex(), heuristic, tables, w, bounds, ws, collectStats ? new SearchStats() : null);
+	}
+	
+	/**
+	 * This makes a planner that keeps its search tree between plans, for following a target that moves.
+	 * It searches whichever snapshot is current now.
+	 * @param heuristic The type of heuristic to use (null for none).
+	 * @return A planner with an empty search tree.
+	 */
+	public DStarLite beginReplanning(H_MODE heuristic){
+		CSRGraph graph = getSnapshot();
+		DStarLite planner = new DStarLite(graph, heuristic, tablesFor(graph, heuristic));
+		planner.collectStats = collectStats;
+		return planner;
+	}
+	
+	/**
+	 * This starts an Anytime Repairing A* search, which is run by calling its improve method: the first call
+	 * finds a path with the weight field as its bound, and each call after that finds a better one, down to the
+	 * shortest. It searches whichever snapshot is current now.
+	 * @param start The vertex to start searching at.
+	 * @param goal The vertex to find a path to.
+	 * @param heuristic The type of heuristic to use (null for none, which makes every pass Dijkstra's).
+	 * @return The search, ready for its first pass.
+	 */
+	public ARAStar beginAnytime(Vertex start, Vertex goal, H_MODE heuristic){
+		CSRGraph graph = getSnapshot();
+		PrecomputedHeuristic tables = tablesFor(graph, heuristic);
+		return new ARAStar(graph, start.getIndex(), goal.getIndex(), heuristic, tables, weight, weightStep, collectStats ? new SearchStats() : null);
+	}
+	
+	/**
+	 * This method runs Anytime Repairing A*: it finds a path within the weight field's bound right away, then
+	 * keeps improving it until the shortest path is found or the anytime budget runs out.
+	 * The path's bound field tells how far from the shortest path the one returned may be.
+	 * @param start The vertex to start searching at.
+	 * @param goal The vertex to find a path to.
+	 * @param heuristic The type of heuristic to use.
+	 * @return The best path found in the time given, or null if there is no path.
+	 */
+	public Path anytimeAStar(Vertex start, Vertex goal, H_MODE heuristic){
+		ARAStar search = beginAnytime(start, goal, heuristic);
+		long deadline = System.nanoTime() + anytimeBudget;
+		Path p = search.improve();
+		while((p != null) && !search.isOptimal() && (System.nanoTime() < deadline))
+			p = search.improve();
+		return p;
+	}
+	
+	/**
+	 * This method finds the paths for a batch of queries at once, spread over the threads of the common
+	 * ForkJoin pool. Every query runs A* (or Dijkstra's, with no heuristic) on the same snapshot, which
+	 * nothing changes, with the arrays of whichever thread runs it, so the queries don't share anything
+	 * they write to. The cache isn't used.
+	 * @param queries The paths to find.
+	 * @return The path for each query, in the order they were given, with totals for the batch.
+	 */
+	public BatchResult findAll(List<Query> queries){
+		CSRGraph graph = getSnapshot();
+		Query[] batch = queries.toArray(new Query[queries.size()]);
+		// Get any tables the queries need first, so the threads don't all wait on computing them
+		for(Query q : batch)
+			tablesFor(graph, q.heuristic);
+		if(goalBounding)
+			getGoalBounds(graph);
+		Path[] paths = new Path[batch.length];
+		long timer = System.nanoTime();
+		if(batch.length > 0)
+			ForkJoinPool.commonPool().invoke(new QueryTask(graph, batch, paths, 0, batch.length));
+		timer = System.nanoTime() - timer;
+		BatchResult result = new BatchResult(paths);
+		result.nanos = timer;
+		result.threads = Math.min(batch.length, ForkJoinPool.commonPool().getParallelism());
+		return result;
+	}
+	
+	/**
+	 * This method builds the shortest path from the all-pairs table by following its first hops, without searching.
+	 * If the graph is too big for a table, it runs A* instead.
+	 * @param start The vertex to start at.
+	 * @param goal The vertex to find the shortest path to.
+	 * @param heuristic The type of heuristic for A* to use if there is no table.
+	 * @return A path object representing the shortest path, or null if there isn't one.
+	 */
+	public Path allPairs(Vertex start, Vertex goal, H_MODE heuristic){
+		AllPairsTable table = getAllPairs(getSnapshot());
+		if(table == null)
+			return aStar(start, goal, heuristic);
+		SearchStats stats = collectStats ? SearchStats.start() : null;
+		Path p = table.findPath(start.getIndex(), goal.getIndex());
+		if(p != null)
+			p.stats = finish(stats);
+		return p;
+	}
+	
+	/**
+	 * This method runs A* with the heuristic multiplied by the weight field. With an admissible heuristic
+	 * the path is at most that many times longer than the shortest, and its bound field says so.
+	 * @param start The vertex to start searching at.
+	 * @param goal The vertex to find a path to.
+	 * @param heuristic The type of heuristic to use.
+	 * @return A path object representing the path we find.
+	 */
+	public Path weightedAStar(Vertex start, Vertex goal, H_MODE heuristic){
+		return heapSearch(getSnapshot(), start.getIndex(), goal.getIndex(), heuristic, Math.max(1, weight));
+	}
+	
+	/**
+	 * This method makes a path to the goal that is worked out by a real-time search as it is followed, one
+	 * step of lookahead vertices at a time, so it can be followed at once. What each step learns is shared
+	 * with every other real-time path to the same goal, so the paths get shorter the more they are followed.
+	 * @param start The vertex to start at.
+	 * @param goal The vertex to find a path to.
+	 * @param heuristic The type of heuristic to start learning from.
+	 * @return A path object that works out the rest of the path as it is followed.
+	 */
+	public Path realTime(Vertex start, Vertex goal, H_MODE heuristic){
+		return getRealTimeSearch(goal, heuristic).pathFrom(start.getIndex(), lookahead);
+	}
+
+	/**
+	 * This method finds the shortest path to whichever of the goals is closest, with one search instead of one per goal.
+	 * The heuristic used is the lowest of its values to each goal, so it stays admissible for all of them.
+	 * @param start The vertex to start searching at.
+	 * @param goals The vertices to find the closest of.
+	 * @param heuristic The type of heuristic to use (null for Dijkstra's).
+	 * @return A path object representing the shortest path to the closest goal, or null if none can be reached.
+	 */
+	public Path findNearest(Vertex start, Collection<Vertex> goals, H_MODE heuristic){
+		List<Path> paths = findNearest(start, goals, 1, heuristic);
+		return paths.isEmpty() ? null : paths.get(0);
+	}
+	
+	/**
+	 * This method finds the shortest paths to the closest few of the goals, with one search instead of one per goal.
+	 * The search keeps going after the closest goal until it has found as many as were asked for.
+	 * @param start The vertex to start searching at.
+	 * @param goals The vertices to find the closest of.
+	 * @param k The most goals to find paths to.
+	 * @param heuristic The type of heuristic to use (null for Dijkstra's).
+	 * @return The shortest paths to the closest goals, closest first (fewer than k if fewer can be reached).
+	 */
+	public List<Path> findNearest(Vertex start, Collection<Vertex> goals, int k, H_MODE heuristic){
+		int version = translator.getGraph().getVersion();
+		int[] targets = new int[goals.size()];
+		int i = 0;
+		for(Vertex v : goals)
+			targets[i++] = v.getIndex();
+		List<Path> paths = nearestSearch(getSnapshot(), start.getIndex(), targets, k, heuristic);
+		for(Path p : paths){
+			int[] vertices = p.getVertices();
+			remember(start.getIndex(), vertices[vertices.length - 1], heuristic, version, p);
+		}
+		return paths;
+	}
+	
+	/**
+	 * This looks up a path in the cache (or its reverse, on an undirected graph).
+	 * @param start The vertex the path starts at.
+	 * @param goal The vertex the path ends at.
+	 * @param heuristic The type of heuristic the path was found with.
+	 * @return The path, or null if there is no cache or the path isn't in it.
+	 */
+	Path recall(Vertex start, Vertex goal, H_MODE heuristic){
+		if(cache == null)
+			return null;
+		Graph graph = translator.getGraph();
+		int[] vertices = cache.get(start.getIndex(), goal.getIndex(), heuristic, graph.getVersion(), graph.isUndirected());
+		if(vertices == null)
+			return null;
+		Path p = new Path();
+		for(int v : vertices)
+			p.add(translator.localize(graph.getVertexAt(v)));
+		p.setVertices(vertices);
+		return p;
+	}
+	
+	/**
+	 * This adds a path to the cache, if there is one and the path is complete, the shortest, and knows its vertices.
+	 * @param start The index of the vertex the path starts at.
+	 * @param goal The index of the vertex the path ends at.
+	 * @param heuristic The type of heuristic the path was found with.
+	 * @param version The version of the graph the path was found on.
+	 * @param p The path found (may be null).
+	 */
+	void remember(int start, int goal, H_MODE heuristic, int version, Path p){
+		// Paths still being worked out as they are followed can't be stored yet, and paths that may be
+		// longer than the shortest would be handed out to searches that want the shortest
+		if((cache == null) || (p == null) || !p.isComplete() || (p.bound > 1))
+			return;
+		// Only the search knows which vertices its path went through (more than one can be at the same spot)
+		int[] vertices = p.getVertices();
+		if(vertices == null)
+			return;
+		cache.put(start, goal, heuristic, version, vertices);
+	}
+	
+	/**
+	 * This method runs Dijkstra's algorithm from both the start and the goal at once, and stops once the
+	 * two searches have met and no shorter connection is possible.
+	 * @param start Where the algorithm starts.
+	 * @param goal Where to compute the shortest path to.
+	 * @return A path object representing the shortest path we find.
+	 */
+	public Path bidirectionalDijkstras(Vertex start, Vertex goal){
+		return bidirectionalSearch(getSnapshot(), start.getIndex(), goal.getIndex(), null);
+	}
+	
+	/**
+	 * This method runs A* from both the start and the goal at once. Both searches use the same balanced
+	 * potential, half the difference between the estimate to the goal and the estimate to the start,
+	 * which stays consistent whenever the heuristic is, so the searches can stop as soon as they meet
+	 * and no shorter connection is possible. The cluster heuristic isn't consistent, so with it the
+	 * path found may be a little longer than the shortest.
+	 * @param start The vertex to start searching at.
+	 * @param goal The vertex to find the shortest path to.
+	 * @param heuristic The type of heuristic to use.
+	 * @return A path object representing the shortest path we find.
+	 */
+	public Path bidirectionalAStar(Vertex start, Vertex goal, H_MODE heuristic){
+		return bidirectionalSearch(getSnapshot(), start.getIndex(), goal.getIndex(), heuristic);
+	}
+	
+	/**
+	 * This method finds the shortest path with the Contraction Hierarchy of the graph. The hierarchy
+	 * is built the first time it is needed (or loaded from next to the graph file), after which each
+	 * query only searches a few hundred vertices.
+	 * @param start The vertex to start searching at.
+	 * @param goal The vertex to find the shortest path to.
+	 * @return A path object representing the shortest path we find.
+	 */
+	public Path contractionHierarchy(Vertex start, Vertex goal){
+		CHQuery query = getHierarchy(getSnapshot());
+		return query.findPath(start.getIndex(), goal.getIndex(), collectStats ? SearchStats.start() : null);
+	}
+	
+	/**
+	 * This method finds the shortest path hierarchically, by searching between the entrances of clusters
+	 * of the graph. Only the first hop of the path is worked out before it is returned, so a character can
+	 * start following it right away; the rest is worked out as the path is followed.
+	 * @param start The vertex to start searching at.
+	 * @param goal The vertex to find the shortest path to.
+	 * @return A path object representing the shortest path we find.
+	 */
+	public Path hierarchical(Vertex start, Vertex goal){
+		HierarchicalGraph abstractGraph = getAbstractGraph(getSnapshot());
+		return abstractGraph.findPath(start.getIndex(), goal.getIndex(), collectStats ? SearchStats.start() : null);
+	}
+	
+	/**
+	 * This method runs Dijkstra's algorithm directly on a CSR snapshot.
+	 * @param graph The snapshot to search. It must have coordinates to build the path from.
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the vertex to find the shortest path to.
+	 * @return A path object representing the shortest path we find.
+	 */
+	public Path dijkstras(CSRGraph graph, int start, int goal){
+		return heapSearch(graph, start, goal, null, 1);
+	}
+	
+	/**
+	 * This method runs A* directly on a CSR snapshot.
+	 * @param graph The snapshot to search. It must have coordinates for the heuristic and path.
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the vertex to find the shortest path to.
+	 * @param heuristic The type of heuristic to use.
+	 * @return A path object representing the shortest path we find.
+	 */
+	public Path aStar(CSRGraph graph, int start, int goal, H_MODE heuristic){
+		return heapSearch(graph, start, goal, heuristic, 1);
+	}
+	
+	/**
+	 * This method runs A* on several threads at once (HDA*), with the number of threads in searchThreads.
+	 * It finds the same shortest path as A*, but only saves time on large graphs.
+	 * @param start The vertex to start searching at.
+	 * @param goal The vertex to find the shortest path to.
+	 * @param heuristic The type of heuristic to use (null for Dijkstra's).
+	 * @return A path object representing the shortest path to the goal.
+	 */
+	public Path parallelAStar(Vertex start, Vertex goal, H_MODE heuristic){
+		return parallelAStar(getSnapshot(), start.getIndex(), goal.getIndex(), heuristic, searchThreads);
+	}
+	
+	/**
+	 * This method runs A* on several threads at once (HDA*) directly on a CSR snapshot.
+	 * @param graph The snapshot to search. It must have coordinates for the heuristic and path.
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the vertex to find the shortest path to.
+	 * @param heuristic The type of heuristic to use (null for Dijkstra's).
+	 * @param threads The number of threads to search with.
+	 * @return A path object representing the shortest path we find.
+	 */
+	public Path parallelAStar(CSRGraph graph, int start, int goal, H_MODE heuristic, int threads){
+		PrecomputedHeuristic tables = tablesFor(graph, heuristic);
+		return HDAStar.findPath(graph, start, goal, heuristic, tables, threads, collectStats ? SearchStats.start() : null);
+	}
+	
 	/**
 	 * This method runs Dijkstra's algorithm to determine the shortest path to the goal.
 	 * NOTE: The start and goal vertices MUST exist in the same graph, and that graph must 
@@ -36,29 +727,26 @@ public class PathFinding {
 	 * @return A path object representing the shortest path we find.
 	 */
 	public Path dijkstras(Vertex start, Vertex goal){
+		if(openSet == OPEN_SET.BINARY_HEAP)
+			return heapSearch(getSnapshot(), start.getIndex(), goal.getIndex(), null, 1);
 		// Create the open list, closed list, and path map
-		LinkedList<SortableVertex> openSet = new LinkedList<SortableVertex>();
+		LinkedList<SortableVertex> openList = new LinkedList<SortableVertex>();
 		HashSet<Vertex> closedSet = new HashSet<Vertex>();
 		HashMap<Vertex, Vertex> path = new HashMap<Vertex, Vertex>();
 		
-		Runtime rt = Runtime.getRuntime();
-		long usedMB = (rt.totalMemory() - rt.freeMemory()) / 1024 /1024;
-		openSet.add(new SortableVertex(start, 0));
-		while(!openSet.isEmpty()){
+		SearchStats stats = collectStats ? SearchStats.start() : null;
+		openList.add(new SortableVertex(start, 0));
+		while(!openList.isEmpty()){
 			// Sort the open list by cost so far, and get the lowest
-			Collections.sort(openSet);
-			SortableVertex sv_x = openSet.removeFirst();
+			Collections.sort(openList);
+			SortableVertex sv_x = openList.removeFirst();
 			Vertex v_x = sv_x.v;
 			
 			// Add the current vertex to the closed list
 			closedSet.add(v_x);
 			// Check if we have arrived at the goal
-			if(v_x.equals(goal)){
-				long current = (rt.totalMemory() - rt.freeMemory()) / 1024 /1024;
-				if(current > usedMB)
-					usedMB = current;
-				return rebuildPath(path, start, v_x, closedSet.size(), usedMB);
-			}
+			if(v_x.equals(goal))
+				return rebuildPath(path, start, v_x, closedSet.size(), stats);
 			
 			// Examine all neighbors of this vertex
 			for(Edge e : v_x.edges){
@@ -69,23 +757,25 @@ public class PathFinding {
 				// Add to the open list if not present
 				// Replace the value on the open list if there is a lower cost so far
 				SortableVertex sv_y = new SortableVertex(v_y, sv_x.csf + e.getCost());
-				int index = openSet.indexOf(sv_y);
+				int index = openList.indexOf(sv_y);
 				if(index >= 0){
-					SortableVertex sv_y_old = openSet.get(index);
+					SortableVertex sv_y_old = openList.get(index);
 					if(sv_y.csf < sv_y_old.csf){
-						openSet.add(index, sv_y);
+						openList.add(index, sv_y);
 						path.put(v_y, v_x);
+						if(stats != null)
+							stats.decreaseKeys++;
 					}
 				}
 				else{
-					openSet.add(sv_y);
+					openList.add(sv_y);
 					path.put(v_y, v_x);
+					if(stats != null)
+						stats.pushes++;
 				}
-				long current = (rt.totalMemory() - rt.freeMemory()) / 1024 /1024;
-				if(current > usedMB)
-					usedMB = current;
 			}
-			
+			if(stats != null)
+				countExpansion(stats, v_x.edges.size(), openList.size());
 		}
 		return null;
 	}
@@ -99,28 +789,33 @@ public class PathFinding {
 	 * @return A path object representing the shortest path to the goal.
 	 */
 	public Path aStar(Vertex start, Vertex goal, H_MODE heuristic){
+		if(openSet == OPEN_SET.BINARY_HEAP)
+			return heapSearch(getSnapshot(), start.getIndex(), goal.getIndex(), heuristic, 1);
 		// Create the open list, closed list, and path map
-		LinkedList<SortableVertex> openSet = new LinkedList<SortableVertex>();
+		LinkedList<SortableVertex> openList = new LinkedList<SortableVertex>();
 		HashSet<Vertex> closedSet = new HashSet<Vertex>();
 		HashMap<Vertex, Vertex> path = new HashMap<Vertex, Vertex>();
 		
-		Runtime rt = Runtime.getRuntime();
-		long usedMB = (rt.totalMemory() - rt.freeMemory()) / 1024 /1024;
-		openSet.add(new SortableVertex(start, 0, Heuristic.getHeuristic(start, goal, translator, heuristic)));
-		while(!openSet.isEmpty()){
+		// Get the heuristic's tables once, rather than for every neighbor
+		PrecomputedHeuristic tables = tablesFor(getSnapshot(), heuristic);
+		
+		SearchStats stats = collectStats ? SearchStats.start() : null;
+		openList.add(new SortableVertex(start, 0, estimate(tables, start, goal, heuristic)));
+		while(!openList.isEmpty()){
 			// Sort the open list by f-score, and get the vertex with the lowest
-			Collections.sort(openSet);
-			SortableVertex sv_x = openSet.removeFirst();
+			Collections.sort(openList);
+			SortableVertex sv_x = openList.removeFirst();
 			Vertex v_x = sv_x.v;
 			
 			// Add the current vertex to the closed list
 			closedSet.add(v_x);
 			// Check if we are at the goal
 			if(v_x.equals(goal)){
-				long current = (rt.totalMemory() - rt.freeMemory()) / 1024 /1024;
-				if(current > usedMB)
-					usedMB = current;
-				return rebuildPath(path, start, v_x, closedSet.size(), usedMB);
+				Path p = rebuildPath(path, start, v_x, closedSet.size(), stats);
+				// The cluster heuristic isn't consistent, and closed vertices aren't opened again here, so the path may not be the shortest
+				if(heuristic == H_MODE.CLUSTER)
+					p.bound = Float.POSITIVE_INFINITY;
+				return p;
 			}
 			
 			// Look at all the neighbors of this vertex
@@ -130,39 +825,276 @@ public class PathFinding {
 				if(closedSet.contains(v_y))
 					continue;
 				
-				SortableVertex sv_y = new SortableVertex(v_y, sv_x.csf + e.getCost(), Heuristic.getHeuristic(v_y, goal, translator, heuristic));
+				SortableVertex sv_y = new SortableVertex(v_y, sv_x.csf + e.getCost(), estimate(tables, v_y, goal, heuristic));
 				
 				// Add neighbors to the open list if not there
 				// Replace neighbors on the open list if there is a lower f-score from this vertex
-				int index = openSet.indexOf(sv_y);
+				int index = openList.indexOf(sv_y);
 				if(index >= 0){
-					SortableVertex sv_y_old = openSet.get(index);
+					SortableVertex sv_y_old = openList.get(index);
 					if(sv_y.fscore < sv_y_old.fscore){
-						openSet.add(index, sv_y);
+						openList.add(index, sv_y);
 						path.put(v_y, v_x);
+						if(stats != null)
+							stats.decreaseKeys++;
 					}
 				}
 				else{
-					openSet.add(sv_y);
+					openList.add(sv_y);
 					path.put(v_y, v_x);
+					if(stats != null)
+						stats.pushes++;
 				}
-				long current = (rt.totalMemory() - rt.freeMemory()) / 1024 /1024;
-				if(current > usedMB)
-					usedMB = current;
 			}
+			if(stats != null)
+				countExpansion(stats, v_x.edges.size(), openList.size());
 		}
 		return null;
 	}
 	
+	// This method runs A* (or Dijkstra's when no heuristic is given) with an indexed heap for the open list,
+	// with the heuristic multiplied by the given weight (1 for the shortest path)
+	private Path heapSearch(CSRGraph graph, int s, int t, H_MODE heuristic, float weight){
+		// Get any tables first, since computing them runs searches of its own
+		PrecomputedHeuristic tables = tablesFor(graph, heuristic);
+		GoalBounds bounds = goalBounding ? getGoalBounds(graph) : null;
+		// Reuse this thread's arrays instead of allocating new ones
+		SearchWorkspace ws = SearchWorkspace.forThread(graph.getNumberOfVertices());
+		
+		// Run the time-sliced search's loop all at once, so both always search the same way
+		SearchStats stats = collectStats ? SearchStats.start() : null;
+		TimeSlicedSearch.open(graph, ws, s, t, heuristic, tables, weight, stats);
+		int visited = TimeSlicedSearch.expand(graph, ws, t, heuristic, tables, weight, bounds, Integer.MAX_VALUE, stats);
+		if(!ws.isClosed(t)){
+			finish(stats);
+			return null;
+		}
+		Path p = rebuildPath(graph, ws, s, t, visited, stats);
+		if(heuristic != null)
+			p.bound = weight;
+		return p;
+	}
+	
+	// This method runs A* (or Dijkstra's when no heuristic is given) toward a set of goals, until the closest k have been reached
+	private List<Path> nearestSearch(CSRGraph graph, int s, int[] goals, int k, H_MODE heuristic){
+		PrecomputedHeuristic tables = tablesFor(graph, heuristic);
+		boolean reopen = (heuristic == H_MODE.CLUSTER);
+		SearchWorkspace ws = SearchWorkspace.forThread(graph.getNumberOfVertices());
+		IndexedHeap open = ws.open;
+		List<Path> paths = new ArrayList<Path>();
+		if((goals.length == 0) || (k < 1))
+			return paths;
+		// Sort the goals so each expanded vertex can be checked against them quickly (and the same goal isn't found twice)
+		int[] targets = goals.clone();
+		Arrays.sort(targets);
+		int visited = 0;
+		
+		SearchStats stats = collectStats ? SearchStats.start() : null;
+		ws.reach(s, 0, -1);
+		if(stats != null)
+			stats.offer(open, s);
+		open.insertOrDecrease(s, estimateNearest(graph, tables, s, targets, heuristic));
+		while(!open.isEmpty()){
+			int x = open.pop();
+			ws.close(x);
+			visited++;
+			// Goals are popped closest first, since the heuristic is zero at every goal, and are still
+			// searched from in case the paths to farther goals go through them
+			if(Arrays.binarySearch(targets, x) >= 0){
+				paths.add(rebuildPath(graph, ws, s, x, visited, null));
+				if(paths.size() == k)
+					break;
+			}
+			
+			float csf = ws.getCost(x);
+			for(int e = graph.firstEdge(x), end = graph.endEdge(x) ; e < end ; e++){
+				int y = graph.getTarget(e);
+				if(ws.isClosed(y) && !reopen)
+					continue;
+				float g = csf + graph.getCost(e);
+				if(g < ws.getCost(y)){
+					ws.reopen(y);
+					ws.reach(y, g, x);
+					if(stats != null)
+						stats.offer(open, y);
+					open.insertOrDecrease(y, g + estimateNearest(graph, tables, y, targets, heuristic));
+				}
+			}
+			if(stats != null)
+				countExpansion(stats, graph.endEdge(x) - graph.firstEdge(x), 0);
+		}
+		// Every path shares the stats for the one search
+		finish(stats);
+		for(Path p : paths)
+			p.stats = stats;
+		return paths;
+	}
+	
+	// This method runs a bidirectional search, which is Dijkstra's when no heuristic is given
+	private Path bidirectionalSearch(CSRGraph graph, int s, int t, H_MODE heuristic){
+		int n = graph.getNumberOfVertices();
+		CSRGraph reverse = graph.reverse();
+		PrecomputedHeuristic tables = tablesFor(graph, heuristic);
+		SearchWorkspace fwd = SearchWorkspace.forThread(n, SearchWorkspace.FORWARD);
+		SearchWorkspace bwd = SearchWorkspace.forThread(n, SearchWorkspace.BACKWARD);
+		int visited = 0;
+		SearchStats stats = collectStats ? SearchStats.start() : null;
+		
+		// The shortest connection found so far, and where the two searches meet on it
+		float best = Float.MAX_VALUE;
+		int meet = -1;
+		if(s == t){
+			best = 0;
+			meet = s;
+		}
+		fwd.reach(s, 0, -1);
+		fwd.open.insertOrDecrease(s, potential(graph, tables, s, s, t, heuristic));
+		bwd.reach(t, 0, -1);
+		bwd.open.insertOrDecrease(t, -potential(graph, tables, t, s, t, heuristic));
+		while(!fwd.open.isEmpty() && !bwd.open.isEmpty()){
+			// Stop when no path through either frontier can beat the best connection
+			if(fwd.open.peekKey() + bwd.open.peekKey() >= best)
+				break;
+			// Grow the search with the smaller frontier
+			boolean forward = fwd.open.size() <= bwd.open.size();
+			SearchWorkspace ws = forward ? fwd : bwd;
+			SearchWorkspace other = forward ? bwd : fwd;
+			CSRGraph g = forward ? graph : reverse;
+			int x = ws.open.pop();
+			ws.close(x);
+			visited++;
+			float csf = ws.getCost(x);
+			for(int e = g.firstEdge(x), end = g.endEdge(x) ; e < end ; e++){
+				int y = g.getTarget(e);
+				if(ws.isClosed(y))
+					continue;
+				float cost = csf + g.getCost(e);
+				if(cost < ws.getCost(y)){
+					ws.reach(y, cost, x);
+					if(stats != null)
+						stats.offer(ws.open, y);
+					float p = potential(graph, tables, y, s, t, heuristic);
+					ws.open.insertOrDecrease(y, cost + (forward ? p : -p));
+					// Check if this makes a shorter connection with the other search
+					if(other.isReached(y) && (cost + other.getCost(y) < best)){
+						best = cost + other.getCost(y);
+						meet = y;
+					}
+				}
+			}
+			if(stats != null)
+				countExpansion(stats, g.endEdge(x) - g.firstEdge(x), 0);
+		}
+		if(meet < 0)
+			return null;
+		
+		// Stitch the two halves together at the meeting vertex
+		int[] half = fwd.chainTo(meet);
+		int length = half.length;
+		for(int v = bwd.getParent(meet) ; v != -1 ; v = bwd.getParent(v))
+			length++;
+		int[] vertices = Arrays.copyOf(half, length);
+		int i = half.length;
+		for(int v = bwd.getParent(meet) ; v != -1 ; v = bwd.getParent(v))
+			vertices[i++] = v;
+		Path p = Path.through(graph, vertices);
+		p.verticesVistedOnCreation = visited;
+		p.stats = finish(stats);
+		// Closed vertices aren't opened again, which only gives the shortest path if the heuristic is consistent
+		if(heuristic == H_MODE.CLUSTER)
+			p.bound = Float.POSITIVE_INFINITY;
+		return p;
+	}
+	
+	// This gets the balanced potential of a vertex for a bidirectional search (the backward search uses the negative)
+	private float potential(CSRGraph graph, PrecomputedHeuristic tables, int v, int s, int t, H_MODE heuristic){
+		if(heuristic == null)
+			return 0;
+		return (estimate(graph, tables, v, t, heuristic) - estimate(graph, tables, s, v, heuristic)) / 2;
+	}
+	
+	// This gets the precomputed tables a heuristic needs for a snapshot, or null if it only needs coordinates
+	private PrecomputedHeuristic tablesFor(CSRGraph graph, H_MODE heuristic){
+		if(heuristic == H_MODE.LANDMARK)
+			return getLandmarks(graph);
+		if(heuristic == H_MODE.CLUSTER)
+			return getClusters(graph);
+		return null;
+	}
+	
+	// This gets the heuristic value between two vertices of a snapshot, using the precomputed tables if the heuristic has them
+	private float estimate(CSRGraph graph, PrecomputedHeuristic tables, int v, int goal, H_MODE heuristic){
+		if(tables != null)
+			return tables.estimate(v, goal);
+		return Heuristic.getHeuristic(graph, v, goal, heuristic);
+	}
+	
+	// This will determine if a snapshot has an edge from one vertex to another
+	private static boolean adjacent(CSRGraph graph, int from, int to){
+		for(int e = graph.firstEdge(from), end = graph.endEdge(from) ; e < end ; e++){
+			if(graph.getTarget(e) == to)
+				return true;
+		}
+		return false;
+	}
+	
+	// This gets the lowest heuristic value from a vertex to any of the goals
+	private float estimateNearest(CSRGraph graph, PrecomputedHeuristic tables, int v, int[] goals, H_MODE heuristic){
+		if(heuristic == null)
+			return 0;
+		float lowest = Float.POSITIVE_INFINITY;
+		for(int goal : goals)
+			lowest = Math.min(lowest, estimate(graph, tables, v, goal, heuristic));
+		return lowest;
+	}
+	
+	// This gets the heuristic value between two vertices for the sorted list searches, using the precomputed tables if there are any
+	private float estimate(PrecomputedHeuristic tables, Vertex v, Vertex goal, H_MODE heuristic){
+		if(tables != null)
+			return tables.estimate(v.getIndex(), goal.getIndex());
+		return Heuristic.getHeuristic(v, goal, translator, heuristic);
+	}
+	
+	// This counts an expanded vertex and its edges, and how big the open list is (if it isn't already counted)
+	private static void countExpansion(SearchStats stats, int edges, int openSize){
+		stats.expanded++;
+		stats.relaxed += edges;
+		if(openSize > stats.peakOpen)
+			stats.peakOpen = openSize;
+	}
+	
+	// This stops the clock on a search's stats (if it has any), and gives them back for its path
+	private static SearchStats finish(SearchStats stats){
+		if(stats != null)
+			stats.stop();
+		return stats;
+	}
+	
+	// This method will rebuild the path from start to goal, using the parents in a search workspace
+	private Path rebuildPath(CSRGraph graph, SearchWorkspace ws, int start, int goal, int nodesVisited, SearchStats stats){
+		Path p = Path.through(graph, ws.chainTo(goal));
+		p.verticesVistedOnCreation = nodesVisited;
+		p.stats = finish(stats);
+		return p;
+	}
+	
 	// The method will rebuild the path from start to goal, using a path map
-	private Path rebuildPath(HashMap<Vertex, Vertex> path, Vertex start, Vertex current, int nodesVisited, long maxmem){
-		Path p  = new Path();
-		p.addFirst(translator.localize(current));
+	private Path rebuildPath(HashMap<Vertex, Vertex> path, Vertex start, Vertex current, int nodesVisited, SearchStats stats){
+		LinkedList<Vertex> chain = new LinkedList<Vertex>();
+		chain.addFirst(current);
 		for(Vertex v = path.get(current) ; !(v == null) && !v.equals(start) ; v = path.get(v))
-			p.addFirst(translator.localize(v));
-		p.addFirst(translator.localize(start));
+			chain.addFirst(v);
+		chain.addFirst(start);
+		Path p  = new Path();
+		int[] vertices = new int[chain.size()];
+		int i = 0;
+		for(Vertex v : chain){
+			p.add(translator.localize(v));
+			vertices[i++] = v.getIndex();
+		}
+		p.setVertices(vertices);
 		p.verticesVistedOnCreation = nodesVisited;
-		p.megsUsed = maxmem;
+		p.stats = finish(stats);
 		return p;
 	}
 	
@@ -244,4 +1176,55 @@ public class PathFinding {
 		}
 		
 	}
+	
+	/**
+	 * This class runs a range of the queries in a batch, splitting it in half until each piece is one query.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	@SuppressWarnings("serial")
+	private class QueryTask extends RecursiveAction {
+		
+		/** The snapshot to search */
+		private final CSRGraph graph;
+		/** Every query in the batch */
+		private final Query[] queries;
+		/** Where the path for each query goes */
+		private final Path[] paths;
+		/** The first query in this task's range */
+		private final int first;
+		/** The end of this task's range (not included) */
+		private final int last;
+		
+		/**
+		 * This constructs a task to run a range of the queries.
+		 * @param graph The snapshot to search.
+		 * @param queries Every query in the batch.
+		 * @param paths Where the path for each query goes.
+		 * @param first The first query in the range.
+		 * @param last The end of the range (not included).
+		 */
+		QueryTask(CSRGraph graph, Query[] queries, Path[] paths, int first, int last){
+			this.graph = graph;
+			this.queries = queries;
+			this.paths = paths;
+			this.first = first;
+			this.last = last;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute(){
+			if(last - first > 1){
+				int middle = (first + last) >>> 1;
+				invokeAll(new QueryTask(graph, queries, paths, first, middle), new QueryTask(graph, queries, paths, middle, last));
+				return;
+			}
+			Query q = queries[first];
+			paths[first] = heapSearch(graph, q.start.getIndex(), q.goal.getIndex(), q.heuristic, 1);
+		}
+	}
 }
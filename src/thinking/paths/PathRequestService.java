@@ -0,0 +1,270 @@
+package thinking.paths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import graphs.Vertex;
+import graphs.Heuristic.H_MODE;
+
+/**
+ * This class finds paths on worker threads, so a long search doesn't stall the game loop.
+ * Characters ask for a path and get back a future for it. The searches run on a small pool of worker
+ * threads, but the futures are only completed when the game loop calls deliver() at the start of a
+ * tick, so anything waiting on a path runs on the game loop's thread and never in the middle of an
+ * update. Each tick only delivers paths until its time budget is used up; the rest wait for the next.
+ *
+ * Characters can also ask for the path to whichever of several goals is closest, which is one search too.
+ * Asking for a path that is already being searched for (same path finder, start, goals, and heuristic)
+ * doesn't start another search. Every request waiting on it gets its own copy of the path when it's found.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class PathRequestService {
+
+	/** The number of worker threads to use if no other number is given */
+	public static final int DEFAULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+	/** The time to spend delivering paths each tick if no other budget is given (in nanoseconds) */
+	public static final long DEFAULT_BUDGET = 2000000L;
+
+	/** The time to spend delivering paths each tick, in nanoseconds (at least one path is always delivered) */
+	public long budget = DEFAULT_BUDGET;
+	/** The worker threads */
+	private final ExecutorService workers;
+	/** The searches that haven't finished yet, by what they are searching for */
+	private final HashMap<Key, Request> inFlight = new HashMap<Key, Request>();
+	/** The searches that have finished but haven't been delivered yet */
+	private final ConcurrentLinkedQueue<Request> finished = new ConcurrentLinkedQueue<Request>();
+
+	/**
+	 * This constructs a service with the default number of worker threads.
+	 */
+	public PathRequestService(){
+		this(DEFAULT_THREADS);
+	}
+
+	/**
+	 * This constructs a service.
+	 * @param threads The number of worker threads to search on.
+	 */
+	public PathRequestService(int threads){
+		workers = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r){
+				// Don't keep the game running just for the workers
+				Thread t = new Thread(r, "path-worker");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * This asks for a path to be found. The future is completed during a later call to deliver(),
+	 * with the path found (null if there isn't one).
+	 * @param finder The path finder to search with (its findPath method is used).
+	 * @param start The vertex to start at.
+	 * @param goal The vertex to find a path to.
+	 * @param heuristic The type of heuristic to use.
+	 * @return A future for the path.
+	 */
+	public CompletableFuture<Path> request(PathFinding finder, Vertex start, Vertex goal, H_MODE heuristic){
+		return submit(new Key(finder, start, new Vertex[]{ goal }, false, heuristic));
+	}
+
+	/**
+	 * This asks for the path to whichever of several goals is closest to be found, with one search.
+	 * The future is completed during a later call to deliver(), with the path found (null if none of
+	 * the goals can be reached).
+	 * @param finder The path finder to search with (its findNearest method is used).
+	 * @param start The vertex to start at.
+	 * @param goals The vertices to find the closest of.
+	 * @param heuristic The type of heuristic to use.
+	 * @return A future for the path.
+	 */
+	public CompletableFuture<Path> requestNearest(PathFinding finder, Vertex start, Collection<Vertex> goals, H_MODE heuristic){
+		return submit(new Key(finder, start, goals.toArray(new Vertex[goals.size()]), true, heuristic));
+	}
+
+	/**
+	 * This completes the futures for finished searches, until this tick's budget is used up.
+	 * It should be called once at the start of every tick, on the game loop's thread.
+	 * @return The number of searches delivered.
+	 */
+	public int deliver(){
+		long stop = System.nanoTime() + budget;
+		int delivered = 0;
+		Request request;
+		while(((delivered == 0) || (System.nanoTime() < stop)) && ((request = finished.poll()) != null)){
+			for(int i = 0 ; i < request.waiting.size() ; i++){
+				CompletableFuture<Path> future = request.waiting.get(i);
+				if(request.error != null)
+					future.completeExceptionally(request.error);
+				else
+					future.complete(((i == 0) || (request.path == null)) ? request.path : request.path.copy());
+			}
+			delivered++;
+		}
+		return delivered;
+	}
+
+	/**
+	 * This gets the number of searches that are running or waiting to be delivered.
+	 * @return The number of requests not delivered yet (merged requests count once).
+	 */
+	public int getPendingCount(){
+		synchronized(inFlight){
+			return inFlight.size() + finished.size();
+		}
+	}
+
+	/**
+	 * This stops the worker threads. Searches already running are finished, but nothing new is started.
+	 */
+	public void shutdown(){
+		workers.shutdown();
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This starts a search, or joins the same search if it's already running, and gives back a future for its path
+	private CompletableFuture<Path> submit(Key key){
+		CompletableFuture<Path> future = new CompletableFuture<Path>();
+		synchronized(inFlight){
+			// Wait on the same search if it's already running
+			Request running = inFlight.get(key);
+			if(running != null){
+				running.waiting.add(future);
+				return future;
+			}
+			final Request request = new Request(key);
+			request.waiting.add(future);
+			inFlight.put(key, request);
+			workers.execute(new Runnable(){
+				@Override
+				public void run(){
+					try{
+						request.path = request.key.search();
+					} catch(RuntimeException e){
+						request.error = e;
+					}
+					// Nothing else can join this search once it's finished
+					synchronized(inFlight){
+						inFlight.remove(request.key);
+					}
+					finished.add(request);
+				}
+			});
+		}
+		return future;
+	}
+
+	/**
+	 * This class holds one search and the requests waiting on it.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	private static class Request {
+
+		/** What the search is for */
+		final Key key;
+		/** The futures waiting on the search (only changed while holding the in-flight lock) */
+		final ArrayList<CompletableFuture<Path>> waiting = new ArrayList<CompletableFuture<Path>>(1);
+		/** The path found */
+		volatile Path path = null;
+		/** The exception the search threw, if it failed */
+		volatile RuntimeException error = null;
+
+		/**
+		 * This constructs a search.
+		 * @param key What the search is for.
+		 */
+		Request(Key key){
+			this.key = key;
+		}
+	}
+
+	/**
+	 * This class is what a search is for, so requests for the same path can be merged.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	private static class Key {
+
+		/** The path finder searching */
+		private final PathFinding finder;
+		/** The start vertex */
+		private final Vertex start;
+		/** The goal vertices (just one unless searching for the nearest) */
+		private final Vertex[] goals;
+		/** Whether or not the search is for the nearest of the goals */
+		private final boolean nearest;
+		/** The heuristic used (may be null) */
+		private final H_MODE heuristic;
+
+		/**
+		 * This constructs the key for a search.
+		 * @param finder The path finder searching.
+		 * @param start The start vertex.
+		 * @param goals The goal vertices.
+		 * @param nearest Whether or not the search is for the nearest of the goals.
+		 * @param heuristic The heuristic used.
+		 */
+		Key(PathFinding finder, Vertex start, Vertex[] goals, boolean nearest, H_MODE heuristic){
+			this.finder = finder;
+			this.start = start;
+			this.goals = goals;
+			this.nearest = nearest;
+			this.heuristic = heuristic;
+		}
+
+		/**
+		 * This runs the search this key is for.
+		 * @return The path found (null if there isn't one).
+		 */
+		Path search(){
+			if(nearest)
+				return finder.findNearest(start, Arrays.asList(goals), heuristic);
+			return finder.findPath(start, goals[0], heuristic);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode(){
+			int h = System.identityHashCode(finder) * 31 + System.identityHashCode(start);
+			for(Vertex goal : goals)
+				h = h * 31 + System.identityHashCode(goal);
+			return (h * 31 + (nearest ? 1 : 0)) * 31 + ((heuristic == null) ? 0 : heuristic.ordinal() + 1);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object o){
+			if(!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			if((finder != k.finder) || (start != k.start) || (nearest != k.nearest) || (heuristic != k.heuristic) || (goals.length != k.goals.length))
+				return false;
+			// Vertices are compared by identity, like the start
+			for(int i = 0 ; i < goals.length ; i++){
+				if(goals[i] != k.goals[i])
+					return false;
+			}
+			return true;
+		}
+	}
+}
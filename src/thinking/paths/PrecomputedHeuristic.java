@@ -0,0 +1,26 @@
+package thinking.paths;
+
+import graphs.CSRGraph;
+
+/**
+ * This interface is for heuristics that estimate from tables computed ahead of time for one
+ * snapshot of a graph, instead of from the vertex coordinates alone.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public interface PrecomputedHeuristic {
+
+	/**
+	 * This estimates the cost of the shortest path between two vertices.
+	 * @param v The index of the vertex to estimate from.
+	 * @param goal The index of the vertex to estimate to.
+	 * @return A lower bound on the cost from v to the goal.
+	 */
+	public float estimate(int v, int goal);
+
+	/**
+	 * This gets the snapshot the tables were computed for.
+	 * @return The snapshot.
+	 */
+	public CSRGraph getGraph();
+}
@@ -0,0 +1,230 @@
+package thinking.paths;
+
+import graphs.CSRGraph;
+import graphs.Heuristic;
+import graphs.Heuristic.H_MODE;
+
+/**
+ * This class runs a real-time search (RTAA*) toward one goal: instead of finding the whole path before
+ * moving, each step searches only a few vertices ahead of the character (the lookahead) and heads for
+ * the most promising one, so the character starts moving at once and no step costs more than the lookahead.
+ * After each step, the heuristic of every vertex it expanded is raised to what the step learned about it.
+ * The learned values are kept in one array for the goal, shared by every character heading there and
+ * kept between paths, so the paths get shorter the more they are followed (with an admissible heuristic,
+ * they settle on the shortest paths after enough trips).
+ * With a lookahead of 1 this is the same as LRTA*.
+ * The learned values are only right for the snapshot they were learned on. The searches are made and
+ * cached by PathFinding.getRealTimeSearch.
+ * Any thread may take steps (paths are worked out on path request workers as well as the game loop),
+ * so steps are taken one at a time, holding the search's lock while they read and learn values.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class RealTimeSearch {
+
+	/** The number of vertices each step expands if no other lookahead is given */
+	public static final int DEFAULT_LOOKAHEAD = 32;
+
+	/** The snapshot being searched */
+	private final CSRGraph graph;
+	/** The index of the goal vertex */
+	private final int goal;
+	/** The type of heuristic the learned values start from */
+	private final H_MODE heuristic;
+	/** The precomputed tables for the heuristic (null if it only needs coordinates) */
+	private final PrecomputedHeuristic tables;
+	/** The heuristic learned for each vertex (0 where nothing has been learned, so the heuristic is used) */
+	private final float[] learned;
+	/** The number of vertices expanded by every step so far */
+	private long visited = 0;
+
+	/**
+	 * This constructs a real-time search toward a goal, with nothing learned yet.
+	 * @param graph The snapshot to search. It must have coordinates for the heuristic and paths.
+	 * @param goal The index of the goal vertex.
+	 * @param heuristic The type of heuristic to start from (null to start from nothing).
+	 * @param tables The precomputed tables for the heuristic (null if it only needs coordinates).
+	 */
+	public RealTimeSearch(CSRGraph graph, int goal, H_MODE heuristic, PrecomputedHeuristic tables){
+		this.graph = graph;
+		this.goal = goal;
+		this.heuristic = heuristic;
+		this.tables = tables;
+		learned = new float[graph.getNumberOfVertices()];
+	}
+
+	/**
+	 * This takes one step toward the goal: a search of a few vertices ahead, which updates the learned
+	 * heuristic and picks the next vertex to go to. Any thread may call this; steps on other threads wait for it.
+	 * @param current The index of the vertex the character is at.
+	 * @param lookahead The most vertices to expand (at least 1).
+	 * @return The index of the next vertex to go to, or -1 if the character is at the goal or can't reach it.
+	 */
+	public synchronized int step(int current, int lookahead){
+		if(current == goal)
+			return -1;
+		lookahead = Math.max(1, lookahead);
+		SearchWorkspace ws = SearchWorkspace.forThread(graph.getNumberOfVertices());
+		int[] interior = ws.getScratch(lookahead);
+		int count = 0;
+		ws.reach(current, 0, -1);
+		ws.open.insertOrDecrease(current, estimate(current));
+		while(!ws.open.isEmpty() && (count < lookahead) && (ws.open.peek() != goal)){
+			int x = ws.open.pop();
+			ws.close(x);
+			interior[count++] = x;
+			float csf = ws.getCost(x);
+			for(int e = graph.firstEdge(x), end = graph.endEdge(x) ; e < end ; e++){
+				int y = graph.getTarget(e);
+				float cost = csf + graph.getCost(e);
+				if(!ws.isClosed(y) && (cost < ws.getCost(y))){
+					ws.reach(y, cost, x);
+					ws.open.insertOrDecrease(y, cost + estimate(y));
+				}
+			}
+		}
+		visited += count;
+		// Nothing left to search means the goal can't be reached from here, which is worth learning too
+		float f = ws.open.isEmpty() ? Float.POSITIVE_INFINITY : ws.open.peekKey();
+		for(int i = 0 ; i < count ; i++){
+			int x = interior[i];
+			learned[x] = Math.max(learned[x], f - ws.getCost(x));
+		}
+		if(ws.open.isEmpty())
+			return -1;
+		// Head for the first vertex on the way to the most promising vertex found
+		int v = ws.open.peek();
+		while(ws.getParent(v) != current)
+			v = ws.getParent(v);
+		return v;
+	}
+
+	/**
+	 * This makes a path from a vertex to the goal that is worked out one step at a time as it is followed.
+	 * If the goal turns out to be unreachable, the path ends where the character is.
+	 * @param start The index of the vertex to start at.
+	 * @param lookahead The most vertices each step expands.
+	 * @return The path.
+	 */
+	public Path pathFrom(int start, int lookahead){
+		Path p = new Path();
+		p.add(graph.getLocation(start));
+		p.setPending(new Steps(start, lookahead));
+		return p;
+	}
+
+	/**
+	 * This gets the heuristic value from a vertex to the goal: the most learned about it so far.
+	 * @param v The index of the vertex.
+	 * @return The heuristic value, or Float.POSITIVE_INFINITY if the vertex is known not to reach the goal.
+	 */
+	public synchronized float getLearned(int v){
+		return estimate(v);
+	}
+
+	/**
+	 * This gets the index of the goal vertex.
+	 * @return The goal.
+	 */
+	public int getGoal(){
+		return goal;
+	}
+
+	/**
+	 * This gets the snapshot this search learned on.
+	 * @return The snapshot.
+	 */
+	public CSRGraph getGraph(){
+		return graph;
+	}
+
+	/**
+	 * This gets the type of heuristic the learned values started from.
+	 * @return The type of heuristic (null if none).
+	 */
+	public H_MODE getHeuristic(){
+		return heuristic;
+	}
+
+	/**
+	 * This gets the number of vertices expanded by every step taken so far.
+	 * @return The number of vertices expanded.
+	 */
+	public synchronized long getVisited(){
+		return visited;
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This gets the heuristic value of a vertex: the higher of the heuristic and what was learned
+	private float estimate(int v){
+		float h = learned[v];
+		if(heuristic == null)
+			return h;
+		if(tables != null)
+			return Math.max(h, tables.estimate(v, goal));
+		return Math.max(h, Heuristic.getHeuristic(graph, v, goal, heuristic));
+	}
+
+	/**
+	 * This class works out a path one step at a time, as the path is followed.
+	 * @author Derek Batts - dsbatts@ncsu.edu
+	 *
+	 */
+	private class Steps implements Path.Segments {
+
+		/** The last vertex added to the path */
+		private int current;
+		/** The most vertices each step expands */
+		private final int lookahead;
+		/** Whether or not a step found the goal can't be reached */
+		private boolean stuck = false;
+
+		/**
+		 * This constructs the steps of a path from the vertex it starts at.
+		 * @param start The index of the vertex the path starts at.
+		 * @param lookahead The most vertices each step expands.
+		 */
+		Steps(int start, int lookahead){
+			current = start;
+			this.lookahead = lookahead;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see thinking.paths.Path.Segments#hasNext()
+		 */
+		@Override
+		public boolean hasNext(){
+			return !stuck && (current != goal);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see thinking.paths.Path.Segments#copy()
+		 */
+		@Override
+		public Path.Segments copy(){
+			return new Steps(current, lookahead);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see thinking.paths.Path.Segments#refineNext(thinking.paths.Path)
+		 */
+		@Override
+		public void refineNext(Path p){
+			int next = step(current, lookahead);
+			if(next < 0){
+				// End the path where the character already is
+				stuck = true;
+				p.add(graph.getLocation(current));
+				return;
+			}
+			current = next;
+			p.add(graph.getLocation(current));
+		}
+	}
+}
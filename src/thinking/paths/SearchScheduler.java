@@ -0,0 +1,98 @@
+package thinking.paths;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+import graphs.Vertex;
+import graphs.Heuristic.H_MODE;
+
+/**
+ * This class runs time-sliced searches for every character on one thread, sharing a fixed number of
+ * vertex expansions per tick between them. However many characters ask for paths in the same tick, a
+ * tick never does more than the budget's worth of searching; the searches that don't finish just pick
+ * up where they left off next tick. The budget is split evenly between the running searches, and the
+ * order they are run in rotates every tick, so no search is starved when there are more searches than
+ * expansions.
+ * The workspaces of finished searches are kept and reused, so only as many sets of search arrays are
+ * ever allocated as there are searches running at once.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class SearchScheduler {
+
+	/** The number of vertex expansions to share each tick if no other budget is given */
+	public static final int DEFAULT_BUDGET = 2000;
+
+	/** The number of vertex expansions shared by all searches each tick */
+	public int budget = DEFAULT_BUDGET;
+	/** The searches that haven't finished, in the order they are run next tick */
+	private final LinkedList<TimeSlicedSearch> running = new LinkedList<TimeSlicedSearch>();
+	/** The workspaces of finished searches, waiting to be reused */
+	private final LinkedList<SearchWorkspace> spare = new LinkedList<SearchWorkspace>();
+
+	/**
+	 * This starts a search, which is run a little every tick until it is done.
+	 * @param finder The path finder to search with (its current snapshot is searched).
+	 * @param start The vertex to start at.
+	 * @param goal The vertex to find a path to.
+	 * @param heuristic The type of heuristic to use (null for Dijkstra's).
+	 * @return The search, which the caller can check on every tick.
+	 */
+	public TimeSlicedSearch submit(PathFinding finder, Vertex start, Vertex goal, H_MODE heuristic){
+		SearchWorkspace ws = spare.isEmpty() ? new SearchWorkspace() : spare.removeFirst();
+		TimeSlicedSearch search = finder.beginSearch(start, goal, heuristic, ws);
+		if(search.isDone())
+			spare.add(search.release());
+		else
+			running.add(search);
+		return search;
+	}
+
+	/**
+	 * This runs the searches for one tick, expanding no more vertices in total than the budget.
+	 * It should be called once at the start of every tick.
+	 * @return The number of vertices expanded.
+	 */
+	public int tick(){
+		int remaining = budget;
+		// Keep splitting what's left until it's used up, since finished searches leave some of their share
+		while((remaining > 0) && !running.isEmpty()){
+			int share = Math.max(1, remaining / running.size());
+			ArrayList<TimeSlicedSearch> order = new ArrayList<TimeSlicedSearch>(running);
+			for(TimeSlicedSearch search : order){
+				if(remaining <= 0)
+					break;
+				if(!search.isDone())
+					remaining -= search.step(Math.min(share, remaining));
+				if(search.isDone()){
+					running.remove(search);
+					spare.add(search.release());
+				}
+			}
+		}
+		// Let a different search go first next tick
+		if(running.size() > 1)
+			running.addLast(running.removeFirst());
+		return budget - remaining;
+	}
+
+	/**
+	 * This stops a search, if it is still running.
+	 * @param search The search to stop.
+	 */
+	public void cancel(TimeSlicedSearch search){
+		if(search.isDone())
+			return;
+		search.cancel();
+		if(running.remove(search))
+			spare.add(search.release());
+	}
+
+	/**
+	 * This gets the number of searches that haven't finished yet.
+	 * @return The number of running searches.
+	 */
+	public int getRunningCount(){
+		return running.size();
+	}
+}
@@ -0,0 +1,122 @@
+package thinking.paths;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * This class holds the counts a search collects while it runs: the vertices it expanded, the edges it
+ * relaxed, the pushes and decrease-keys on its open list, the largest its open list got, the bytes the
+ * searching thread allocated, and how long it took.
+ * Searches only collect stats when they are given an instance (PathFinding.collectStats turns this
+ * on), and skip all of it when they aren't, so leaving stats off costs nothing.
+ * A search that runs a piece at a time is paused between pieces, so the time and bytes only count the
+ * search itself.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class SearchStats {
+
+	/** The thread bean that counts allocated bytes (null if this JVM can't) */
+	private static final com.sun.management.ThreadMXBean allocations = allocationBean();
+
+	/** The number of vertices expanded (taken off the open list and searched from) */
+	public long expanded = 0;
+	/** The number of edges looked at from expanded vertices */
+	public long relaxed = 0;
+	/** The number of vertices put on an open list */
+	public long pushes = 0;
+	/** The number of times a vertex already on an open list was given a lower key */
+	public long decreaseKeys = 0;
+	/** The largest an open list got (the larger of the two for searches with two) */
+	public int peakOpen = 0;
+	/** The number of bytes allocated by the searching thread (-1 if the JVM can't count them) */
+	public long bytesAllocated = -1;
+	/** The time spent searching, in nanoseconds */
+	public long nanos = 0;
+	/** When the current piece of the search started */
+	private long startNanos = 0;
+	/** The bytes the thread had allocated when the current piece of the search started */
+	private long startBytes = -1;
+
+	/**
+	 * This makes a new set of stats and starts timing.
+	 * @return The stats, counting from now.
+	 */
+	public static SearchStats start(){
+		SearchStats stats = new SearchStats();
+		stats.resume();
+		return stats;
+	}
+
+	/**
+	 * This starts timing (and counting bytes) again after a pause.
+	 */
+	public void resume(){
+		startBytes = threadBytes();
+		startNanos = System.nanoTime();
+	}
+
+	/**
+	 * This stops timing (and counting bytes), adding what was used since the search started or resumed.
+	 */
+	public void stop(){
+		nanos += System.nanoTime() - startNanos;
+		long bytes = threadBytes();
+		if((bytes >= 0) && (startBytes >= 0))
+			bytesAllocated = Math.max(bytesAllocated, 0) + (bytes - startBytes);
+	}
+
+	/**
+	 * This counts a vertex being offered to an open list. It must be called before the vertex is added.
+	 * @param open The open list.
+	 * @param v The vertex about to be added (or given a lower key).
+	 */
+	public void offer(IndexedHeap open, int v){
+		if(open.contains(v))
+			decreaseKeys++;
+		else{
+			pushes++;
+			if(open.size() >= peakOpen)
+				peakOpen = open.size() + 1;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString(){
+		return "Expanded: " + expanded + "\n"
+			 + "Edges Relaxed: " + relaxed + "\n"
+			 + "Pushes: " + pushes + "\n"
+			 + "Decrease-Keys: " + decreaseKeys + "\n"
+			 + "Peak Open List: " + peakOpen + "\n"
+			 + "Bytes Allocated: " + ((bytesAllocated < 0) ? "unknown" : Long.toString(bytesAllocated)) + "\n"
+			 + "Search Time: " + (nanos / 1000) + "us";
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This gets the bytes allocated by the calling thread so far, or -1 if they can't be counted
+	private static long threadBytes(){
+		if(allocations == null)
+			return -1;
+		return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	// This gets the thread bean if it can count allocated bytes, turning the counting on if it has to
+	private static com.sun.management.ThreadMXBean allocationBean(){
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(!(bean instanceof com.sun.management.ThreadMXBean))
+			return null;
+		com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+		if(!sun.isThreadAllocatedMemorySupported())
+			return null;
+		if(!sun.isThreadAllocatedMemoryEnabled())
+			sun.setThreadAllocatedMemoryEnabled(true);
+		return sun;
+	}
+}
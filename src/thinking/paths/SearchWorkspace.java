@@ -0,0 +1,179 @@
+package thinking.paths;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the per-vertex arrays a search needs (cost so far, parent, closed flags, and the
+ * open list) so they can be reused from one search to the next instead of being allocated every time.
+ * Instead of clearing the arrays between searches, every search gets a new generation number, and an
+ * entry only counts if it was stamped with the current generation.
+ * Each thread gets its own workspace, so searches on different threads never share one.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class SearchWorkspace {
+
+	/** The slot for a forward search (and for any search that only needs one workspace) */
+	public static final int FORWARD = 0;
+	/** The slot for the backward half of a bidirectional search */
+	public static final int BACKWARD = 1;
+	/** The workspaces for each thread, one per slot */
+	private static final ThreadLocal<SearchWorkspace[]> workspaces = new ThreadLocal<SearchWorkspace[]>(){
+		@Override
+		protected SearchWorkspace[] initialValue(){
+			return new SearchWorkspace[]{new SearchWorkspace(), new SearchWorkspace()};
+		}
+	};
+
+	/** The cost so far of each vertex (only valid if stamped with this generation) */
+	float[] csf = new float[0];
+	/** The parent of each vertex on the search tree (only valid if stamped with this generation) */
+	int[] parents = new int[0];
+	/** The generation each vertex was last reached in */
+	private int[] reached = new int[0];
+	/** The generation each vertex was last closed in */
+	private int[] closed = new int[0];
+	/** The open list */
+	IndexedHeap open = new IndexedHeap(0);
+	/** A spare list of vertex indices, for searches that need to keep some of the vertices they reach */
+	private int[] scratch = new int[0];
+	/** The generation of the current search */
+	private int generation = 0;
+
+	/**
+	 * This gets the calling thread's workspace, ready for a new search over the given number of vertices.
+	 * @param n The number of vertices in the graph being searched.
+	 * @return A workspace with every vertex unreached and an empty open list.
+	 */
+	public static SearchWorkspace forThread(int n){
+		return forThread(n, FORWARD);
+	}
+
+	/**
+	 * This gets one of the calling thread's workspaces, ready for a new search over the given number of vertices.
+	 * Searches that run two searches at once (like bidirectional searches) use a different slot for each.
+	 * @param n The number of vertices in the graph being searched.
+	 * @param slot Which of the thread's workspaces to use (FORWARD or BACKWARD).
+	 * @return A workspace with every vertex unreached and an empty open list.
+	 */
+	public static SearchWorkspace forThread(int n, int slot){
+		SearchWorkspace ws = workspaces.get()[slot];
+		ws.begin(n);
+		return ws;
+	}
+
+	/**
+	 * This readies this workspace for a new search over the given number of vertices.
+	 * @param n The number of vertices in the graph being searched.
+	 */
+	public void begin(int n){
+		if(csf.length < n){
+			csf = new float[n];
+			parents = new int[n];
+			reached = new int[n];
+			closed = new int[n];
+			open = new IndexedHeap(n);
+			generation = 0;
+		}
+		else
+			open.clear();
+		generation++;
+		// Start the stamps over if the generation ever wraps around
+		if(generation == Integer.MAX_VALUE){
+			Arrays.fill(reached, 0);
+			Arrays.fill(closed, 0);
+			generation = 1;
+		}
+	}
+
+	/**
+	 * This gets the cost so far of a vertex.
+	 * @param v The index of the vertex.
+	 * @return The cost so far, or Float.MAX_VALUE if the vertex hasn't been reached in this search.
+	 */
+	public float getCost(int v){
+		return (reached[v] == generation) ? csf[v] : Float.MAX_VALUE;
+	}
+
+	/**
+	 * This records a new cost so far and parent for a vertex.
+	 * @param v The index of the vertex.
+	 * @param cost The cost so far of the vertex.
+	 * @param parent The index of the vertex it was reached from (-1 for the start).
+	 */
+	public void reach(int v, float cost, int parent){
+		reached[v] = generation;
+		csf[v] = cost;
+		parents[v] = parent;
+	}
+
+	/**
+	 * This gets the vertices on the search tree from the root (the vertex reached with no parent) to a vertex.
+	 * @param v The index of the vertex, which must have been reached in this search.
+	 * @return The index of each vertex on the way in order, from the root to the given vertex.
+	 */
+	public int[] chainTo(int v){
+		int length = 0;
+		for(int u = v ; u != -1 ; u = getParent(u))
+			length++;
+		int[] chain = new int[length];
+		for(int u = v ; u != -1 ; u = getParent(u))
+			chain[--length] = u;
+		return chain;
+	}
+
+	/**
+	 * This will determine if a vertex has been reached in this search.
+	 * @param v The index of the vertex.
+	 * @return True if the vertex has a cost so far.
+	 */
+	public boolean isReached(int v){
+		return reached[v] == generation;
+	}
+
+	/**
+	 * This gets the parent of a vertex on the search tree.
+	 * @param v The index of a reached vertex.
+	 * @return The index of the vertex it was reached from.
+	 */
+	public int getParent(int v){
+		return parents[v];
+	}
+
+	/**
+	 * This marks a vertex as closed.
+	 * @param v The index of the vertex.
+	 */
+	public void close(int v){
+		closed[v] = generation;
+	}
+
+	/**
+	 * This marks a closed vertex as open again.
+	 * @param v The index of the vertex.
+	 */
+	public void reopen(int v){
+		closed[v] = 0;
+	}
+
+	/**
+	 * This gets the workspace's spare list of vertex indices, so a search doesn't have to allocate one every time.
+	 * It still holds whatever the last search to use it left in it.
+	 * @param n The least number of vertices the list must hold.
+	 * @return The list.
+	 */
+	public int[] getScratch(int n){
+		if(scratch.length < n)
+			scratch = new int[n];
+		return scratch;
+	}
+
+	/**
+	 * This will determine if a vertex has been closed in this search.
+	 * @param v The index of the vertex.
+	 * @return True if the vertex is closed.
+	 */
+	public boolean isClosed(int v){
+		return closed[v] == generation;
+	}
+}
@@ -0,0 +1,275 @@
+package thinking.paths;
+
+import graphs.CSRGraph;
+import graphs.Heuristic;
+import graphs.Heuristic.H_MODE;
+
+/**
+ * This class is an A* search (or Dijkstra's, with no heuristic) that can be stopped and picked back up.
+ * Each call to step expands at most the given number of vertices, and the open list, costs, and parents
+ * are kept in the search's own workspace until the next call, so a long search can be spread over many
+ * frames without ever taking more than a fixed amount of work in one.
+ * The heuristic can be weighted, and edges can be skipped with goal bounding. The expansion loop itself
+ * is static, so PathFinding's heap searches run the very same loop on their own workspace all at once,
+ * without making a search object.
+ * Searches are made by PathFinding.beginSearch, and are usually run by a SearchScheduler.
+ * @author Derek Batts - dsbatts@ncsu.edu
+ *
+ */
+public class TimeSlicedSearch {
+
+	/** The path finder that started the search (null if the path came from the cache) */
+	private final PathFinding finder;
+	/** The snapshot being searched */
+	private final CSRGraph graph;
+	/** The index of the start vertex */
+	private final int start;
+	/** The index of the goal vertex */
+	private final int goal;
+	/** The type of heuristic used (null for Dijkstra's) */
+	private final H_MODE heuristic;
+	/** The precomputed tables for the heuristic (null if it only needs coordinates) */
+	private final PrecomputedHeuristic tables;
+	/** The weight the heuristic is multiplied by (1 for the shortest path) */
+	private final float weight;
+	/** The goal bounding boxes for skipping edges (null to not skip any) */
+	private final GoalBounds bounds;
+	/** The arrays the search is kept in between steps */
+	private SearchWorkspace ws;
+	/** The number of vertices expanded so far */
+	private int visited = 0;
+	/** Whether or not the search is over */
+	private boolean done = false;
+	/** The path found (null until the search is done, or if there is none) */
+	private Path path = null;
+	/** The stats collected over every step so far (null if not collecting) */
+	private final SearchStats stats;
+
+	/**
+	 * This constructs a search, ready for its first step.
+	 * @param finder The path finder starting the search (its cache gets the path when it's found).
+	 * @param graph The snapshot to search.
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the vertex to find the shortest path to.
+	 * @param heuristic The type of heuristic to use (null for Dijkstra's).
+	 * @param tables The precomputed tables for the heuristic (null if it only needs coordinates).
+	 * @param weight The weight to multiply the heuristic by (1 for the shortest path). It becomes the path's bound.
+	 * @param bounds The goal bounding boxes to skip edges with (null to not skip any).
+	 * @param ws The workspace to keep the search in.
+	 * @param stats The stats to count every step into (null to not count). They are kept on the path.
+	 */
+	TimeSlicedSearch(PathFinding finder, CSRGraph graph, int start, int goal, H_MODE heuristic, PrecomputedHeuristic tables,
+			float weight, GoalBounds bounds, SearchWorkspace ws, SearchStats stats){
+		this.finder = finder;
+		this.graph = graph;
+		this.start = start;
+		this.goal = goal;
+		this.heuristic = heuristic;
+		this.tables = tables;
+		this.weight = weight;
+		this.bounds = bounds;
+		this.ws = ws;
+		this.stats = stats;
+		ws.begin(graph.getNumberOfVertices());
+		open(graph, ws, start, goal, heuristic, tables, weight, stats);
+	}
+
+	/**
+	 * This constructs a search that is already done, for a path that was already known.
+	 * @param p The path.
+	 * @param ws The workspace the search would have been kept in.
+	 */
+	TimeSlicedSearch(Path p, SearchWorkspace ws){
+		this.finder = null;
+		this.graph = null;
+		this.start = -1;
+		this.goal = -1;
+		this.heuristic = null;
+		this.tables = null;
+		this.weight = 1;
+		this.bounds = null;
+		this.ws = ws;
+		this.stats = null;
+		path = p;
+		done = true;
+	}
+
+	/**
+	 * This puts the start of a search on a fresh workspace's open list.
+	 * @param graph The snapshot to search.
+	 * @param ws The workspace to search in, just begun.
+	 * @param start The index of the vertex to start at.
+	 * @param goal The index of the goal vertex.
+	 * @param heuristic The type of heuristic to use (null for Dijkstra's).
+	 * @param tables The precomputed tables for the heuristic (null if it only needs coordinates).
+	 * @param weight The weight to multiply the heuristic by.
+	 * @param stats The stats to count into (null to not count).
+	 */
+	static void open(CSRGraph graph, SearchWorkspace ws, int start, int goal, H_MODE heuristic, PrecomputedHeuristic tables, float weight, SearchStats stats){
+		ws.reach(start, 0, -1);
+		if(stats != null)
+			stats.offer(ws.open, start);
+		ws.open.insertOrDecrease(start, estimate(graph, tables, heuristic, weight, start, goal));
+	}
+
+	/**
+	 * This expands vertices from a workspace's open list in A* order, until the goal is expanded, the open
+	 * list runs out, or the given number of vertices have been expanded. Once it returns, the goal is
+	 * closed in the workspace if and only if it was found.
+	 * @param graph The snapshot being searched.
+	 * @param ws The workspace the search is kept in.
+	 * @param goal The index of the goal vertex.
+	 * @param heuristic The type of heuristic used (null for Dijkstra's).
+	 * @param tables The precomputed tables for the heuristic (null if it only needs coordinates).
+	 * @param weight The weight the heuristic is multiplied by.
+	 * @param bounds The goal bounding boxes to skip edges with (null to not skip any).
+	 * @param maxExpansions The most vertices to expand.
+	 * @param stats The stats to count into (null to not count).
+	 * @return The number of vertices expanded.
+	 */
+	static int expand(CSRGraph graph, SearchWorkspace ws, int goal, H_MODE heuristic, PrecomputedHeuristic tables, float weight,
+			GoalBounds bounds, int maxExpansions, SearchStats stats){
+		IndexedHeap open = ws.open;
+		// The cluster heuristic isn't consistent, so a vertex can be reached more cheaply after it is closed
+		boolean reopen = (heuristic == H_MODE.CLUSTER);
+		float goalX = (bounds != null) ? graph.getX(goal) : 0;
+		float goalY = (bounds != null) ? graph.getY(goal) : 0;
+		int expanded = 0;
+		while((expanded < maxExpansions) && !open.isEmpty()){
+			// Get the vertex with the lowest f-score and close it
+			int x = open.pop();
+			ws.close(x);
+			expanded++;
+			// Check if we are at the goal (it counts as expanded, though its edges aren't relaxed)
+			if(x == goal){
+				if(stats != null)
+					stats.expanded++;
+				break;
+			}
+
+			// Relax the edges to every neighbor that isn't closed
+			float csf = ws.getCost(x);
+			for(int e = graph.firstEdge(x), end = graph.endEdge(x) ; e < end ; e++){
+				int y = graph.getTarget(e);
+				if(ws.isClosed(y) && !reopen)
+					continue;
+				// Skip edges that can't start a shortest path to the goal
+				if((bounds != null) && !bounds.contains(e, goalX, goalY))
+					continue;
+				float g = csf + graph.getCost(e);
+				if(g < ws.getCost(y)){
+					ws.reopen(y);
+					ws.reach(y, g, x);
+					if(stats != null)
+						stats.offer(open, y);
+					open.insertOrDecrease(y, g + estimate(graph, tables, heuristic, weight, y, goal));
+				}
+			}
+			if(stats != null){
+				stats.expanded++;
+				stats.relaxed += graph.endEdge(x) - graph.firstEdge(x);
+			}
+		}
+		return expanded;
+	}
+
+	/**
+	 * This expands up to the given number of vertices, and stops early if the search finishes.
+	 * @param maxExpansions The most vertices to expand.
+	 * @return The number of vertices expanded.
+	 */
+	public int step(int maxExpansions){
+		if(done)
+			return 0;
+		if(stats != null)
+			stats.resume();
+		int expanded = expand(graph, ws, goal, heuristic, tables, weight, bounds, maxExpansions, stats);
+		visited += expanded;
+		if(ws.isClosed(goal))
+			finish(rebuildPath());
+		else if(ws.open.isEmpty())
+			finish(null);
+		else if(stats != null)
+			stats.stop();
+		return expanded;
+	}
+
+	/**
+	 * This stops the search without finding a path.
+	 */
+	public void cancel(){
+		if(!done){
+			done = true;
+			path = null;
+		}
+	}
+
+	/**
+	 * This will determine if the search is over, either because it finished or was cancelled.
+	 * @return True if the search won't expand any more vertices.
+	 */
+	public boolean isDone(){
+		return done;
+	}
+
+	/**
+	 * This gets the path found.
+	 * @return The path, or null if the search isn't done, was cancelled, or there is no path.
+	 */
+	public Path getPath(){
+		return path;
+	}
+
+	/**
+	 * This gets the number of vertices expanded so far.
+	 * @return The number of vertices expanded.
+	 */
+	public int getVisited(){
+		return visited;
+	}
+
+	/**
+	 * This gives up the search's workspace once it is done, so it can be used for another search.
+	 * @return The workspace, or null if the search isn't done or already gave it up.
+	 */
+	SearchWorkspace release(){
+		if(!done)
+			return null;
+		SearchWorkspace w = ws;
+		ws = null;
+		return w;
+	}
+
+
+	// Helper Methods --------------------------------------------------------
+
+
+	// This ends the search with the given path, and adds it to the path finder's cache
+	private void finish(Path p){
+		done = true;
+		path = p;
+		if(stats != null)
+			stats.stop();
+		if(p != null){
+			p.verticesVistedOnCreation = visited;
+			p.stats = stats;
+			if(heuristic != null)
+				p.bound = weight;
+			finder.remember(start, goal, heuristic, graph.getVersion(), p);
+		}
+	}
+
+	// This gets the heuristic value from a vertex to the goal, multiplied by the weight
+	private static float estimate(CSRGraph graph, PrecomputedHeuristic tables, H_MODE heuristic, float weight, int v, int goal){
+		if(heuristic == null)
+			return 0;
+		if(tables != null)
+			return weight * tables.estimate(v, goal);
+		return weight * Heuristic.getHeuristic(graph, v, goal, heuristic);
+	}
+
+	// This rebuilds the path from the start to the goal from the parents in the workspace
+	private Path rebuildPath(){
+		return Path.through(graph, ws.chainTo(goal));
+	}
+}
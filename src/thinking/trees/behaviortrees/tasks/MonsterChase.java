@@ -44,12 +44,13 @@ public class MonsterChase extends MonsterTask {
 		else if(PVector.dist(player.position, actor.position) > Monster.LOOKRADIUS)
 			state = NODE_STATE.FAIL;
 		else{
-			if((((NormalAI) actor.thinker).getActivePath() == null) || !hasRun){
-				((NormalAI) actor.thinker).pathFollowTo(new Target(player.position), PATHMODE.FORGET);
+			if(!((NormalAI) actor.thinker).hasPath() || !hasRun){
 				if(BehaviorLog.isLogging())
 					BehaviorLog.logState(dist, ((Monster) actor).needsFood(), ACTION.SEEK_PLAYER);
 				hasRun = true;
 			}
+			// Replanning only does work when the player reaches a new vertex, so it can be done every visit
+			((NormalAI) actor.thinker).pathFollowTo(new Target(player.position), PATHMODE.REPLAN);
 			state = NODE_STATE.RUNNING;
 		}
 		return state;
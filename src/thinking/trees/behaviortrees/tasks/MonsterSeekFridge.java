@@ -1,5 +1,8 @@
 package thinking.trees.behaviortrees.tasks;
 
+import java.util.LinkedList;
+import java.util.List;
+
 import graphs.Graph;
 import graphs.Translator;
 import model.Actor;
@@ -7,7 +10,6 @@ import model.Monster;
 import model.Target;
 import processing.core.PVector;
 import thinking.NormalAI;
-import thinking.NormalAI.PATHMODE;
 import thinking.trees.BehaviorLog;
 import thinking.trees.BehaviorLog.ACTION;
 import thinking.trees.behaviortrees.nodes.BehaviorTreeNode;
@@ -19,12 +21,10 @@ import thinking.trees.behaviortrees.nodes.BehaviorTreeNode;
  */
 public class MonsterSeekFridge extends MonsterTask {
 	
-	/** The ID of the vertex where the fridge is at */
-	private static final int FRIDGE = 42;
-	/** The graph for the game world */
-	private Graph graph;
-	/** The translator for the graph */
-	private Translator translator;
+	/** The IDs of the vertices where there is food (the monster goes to the closest) */
+	private static final int[] FRIDGES = { 42 };
+	/** The targets representing where there is food */
+	private List<Target> fridgeLocations = new LinkedList<Target>();
 
 	/**
 	 * This constructs the fridge seeking task for the monster.
@@ -36,8 +36,8 @@ public class MonsterSeekFridge extends MonsterTask {
 	 */
 	public MonsterSeekFridge(Actor a, Actor player, BehaviorTreeNode parent, Graph g, Translator t) {
 		super(a, player, parent);
-		graph = g;
-		translator = t;
+		for(int id : FRIDGES)
+			fridgeLocations.add(new Target(t.localize(g.getVertex(id))));
 	}
 
 	/**
@@ -48,7 +48,7 @@ public class MonsterSeekFridge extends MonsterTask {
 	@Override
 	public NODE_STATE visit() {
 		if(((Monster) actor).needsFood()){
-			((NormalAI) actor.thinker).pathFollowTo(new Target(translator.localize(graph.getVertex(FRIDGE))), PATHMODE.FORGET);
+			((NormalAI) actor.thinker).pathFollowToNearest(fridgeLocations);
 			if(BehaviorLog.isLogging())
 				BehaviorLog.logState(PVector.dist(player.position, actor.position), ((Monster) actor).needsFood(), ACTION.SEEK_FRIDGE);
 			state = NODE_STATE.SUCCESS;
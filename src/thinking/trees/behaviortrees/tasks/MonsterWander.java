@@ -50,7 +50,7 @@ public class MonsterWander extends MonsterTask {
 	@Override
 	public NODE_STATE visit() {
 		((Monster) actor).stepHunger();
-		if(((NormalAI) actor.thinker).getActivePath() != null){
+		if(((NormalAI) actor.thinker).hasPath()){
 			state = NODE_STATE.RUNNING;
 			return state;
 		}
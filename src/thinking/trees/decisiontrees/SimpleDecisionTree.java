@@ -1,5 +1,8 @@
 package thinking.trees.decisiontrees;
 
+import java.util.LinkedList;
+import java.util.List;
+
 import graphs.Graph;
 import graphs.Translator;
 import manager.Sketch;
@@ -14,7 +17,6 @@ import thinking.Behavior;
 import thinking.NormalAI;
 import thinking.Output;
 import thinking.NormalAI.PATHMODE;
-import thinking.paths.Path;
 
 /**
  * This class implements a very simple decision tree for a character's AI.
@@ -30,10 +32,10 @@ public class SimpleDecisionTree extends Behavior {
 	private static final int ID_TOILET = 97;
 	/** The vertex ID for where the computer is */
 	private static final int ID_COMPUTER = 5;
-	/** The vertex ID for where the refrigerator is */
-	private static final int ID_FRIDGE = 42;
-	/** The vertex ID for where the Bed is */
-	private static final int ID_BED = 19;
+	/** The vertex IDs for where there is food, like the refrigerator (the character goes to the closest) */
+	private static final int[] IDS_FOOD = { 42 };
+	/** The vertex IDs for where the Bed is (the character goes to the closest) */
+	private static final int[] IDS_BED = { 19 };
 	/** The point at which the character will try to get food */
 	private static final int HUNGER_THRESHOLD = 50;
 	/** The point at which the character will try to go to the bathroom */
@@ -96,13 +98,13 @@ public class SimpleDecisionTree extends Behavior {
 	private Target t_Toilet;
 	/** The target object representing where the computer is in the game world */
 	private Target t_Computer;
-	/** The target object representing where the refrigerator is in the game world */
-	private Target t_Fridge;
-	/** The target object representing where the bed is in the game world */
-	private Target t_Bed;
+	/** The target objects representing where there is food in the game world */
+	private List<Target> t_Food;
+	/** The target objects representing where the bed is in the game world */
+	private List<Target> t_Bed;
 	
-	/** The path the character is currently following */
-	private Path currentPath;
+	/** Whether or not the character is on its way somewhere (its path may still be being found) */
+	private boolean onTrip = false;
 	
 	/** The level of hunger for the character */
 	private int hunger = 0;
@@ -146,8 +148,8 @@ public class SimpleDecisionTree extends Behavior {
 		// Get targets from vertices
 		t_Toilet = new Target(translator.localize(g.getVertex(ID_TOILET)));
 		t_Computer = new Target(translator.localize(g.getVertex(ID_COMPUTER)));
-		t_Fridge = new Target(translator.localize(g.getVertex(ID_FRIDGE)));
-		t_Bed = new Target(translator.localize(g.getVertex(ID_BED)));
+		t_Food = targetsAt(g, IDS_FOOD);
+		t_Bed = targetsAt(g, IDS_BED);
 		
 		// Construct and setup text headers
 		hungerText = new SimpleText(parent, parent.guidMarker++, "Hunger Level:");
@@ -223,8 +225,8 @@ public class SimpleDecisionTree extends Behavior {
 		sleepBar.setSize(new PVector(100 * ((float) sleep / SLEEP_THRESHOLD), barMaxSize.y));
 		bathroomBar.setSize(new PVector(100 * ((float) bathroom / BATHROOM_THRESHOLD), barMaxSize.y));
 		// Check if we are at the end of the path
-		if(currentPath != null){
-			if(!(((NormalAI) actor.thinker).getActivePath() == null) || (actor.velocity.mag() > .1f))
+		if(onTrip){
+			if(((NormalAI) actor.thinker).hasPath() || (actor.velocity.mag() > .1f))
 				return null;
 			// Change flags if we finished a path
 			else {
@@ -240,7 +242,7 @@ public class SimpleDecisionTree extends Behavior {
 					goingToBathroom = false;
 					usingBathroom = true;
 				}
-				currentPath = null;
+				onTrip = false;
 			}
 		}
 		// Decrement the sleeper timer if we are sleeping
@@ -263,25 +265,29 @@ public class SimpleDecisionTree extends Behavior {
 		}
 		// Check if we need to go eat
 		else if(hunger >= HUNGER_THRESHOLD){
-			currentPath = ((NormalAI) actor.thinker).pathFollowTo(t_Fridge, PATHMODE.FORGET);
+			((NormalAI) actor.thinker).pathFollowToNearest(t_Food);
+			onTrip = true;
 			gettingFood = true;
 			playMessage(msg_Fridge);
 		}
 		// Check if we need to sleep
 		else if(sleep >= SLEEP_THRESHOLD){
-			currentPath = ((NormalAI) actor.thinker).pathFollowTo(t_Bed, PATHMODE.FORGET);
+			((NormalAI) actor.thinker).pathFollowToNearest(t_Bed);
+			onTrip = true;
 			goingToBed = true;
 			playMessage(msg_Sleep);
 		}
 		// Check if we need to use the restroom
 		else if(bathroom >= BATHROOM_THRESHOLD){
-			currentPath = ((NormalAI) actor.thinker).pathFollowTo(t_Toilet, PATHMODE.FORGET);
+			((NormalAI) actor.thinker).pathFollowTo(t_Toilet, PATHMODE.FORGET);
+			onTrip = true;
 			goingToBathroom = true;
 			playMessage(msg_Bathroom);
 		}
 		// If nothing else, check if we are at the computer, if not head there
 		else if(PVector.dist(actor.position, t_Computer.position) > 75.0f){
-			currentPath = ((NormalAI) actor.thinker).pathFollowTo(t_Computer, PATHMODE.FORGET);
+			((NormalAI) actor.thinker).pathFollowTo(t_Computer, PATHMODE.FORGET);
+			onTrip = true;
 			playMessage(msg_Computer);
 		}
 		// Increment needs
@@ -293,6 +299,19 @@ public class SimpleDecisionTree extends Behavior {
 		return null;
 	}
 
+	/**
+	 * A helper method to make targets for a set of vertices.
+	 * @param g The graph the vertices are in.
+	 * @param ids The IDs of the vertices.
+	 * @return The targets representing where the vertices are in the game world.
+	 */
+	private List<Target> targetsAt(Graph g, int[] ids){
+		List<Target> targets = new LinkedList<Target>();
+		for(int id : ids)
+			targets.add(new Target(translator.localize(g.getVertex(id))));
+		return targets;
+	}
+
 	/**
 	 * A helper method to make it easier to play text animations in the parent sketch.
 	 * @param msg The text message to play.
@@ -38,10 +38,9 @@ public class MonsterChase extends DecisionTreeNode {
 	 */
 	@Override
 	public int evaluateNode() {
-		if((((NormalAI) m.thinker).getActivePath() == null) || !hasRun){
-			((NormalAI)m.thinker).pathFollowTo(new Target(player.position), PATHMODE.FORGET);
-			hasRun = true;
-		}
+		// Replanning only does work when the player reaches a new vertex, so it can be done every time
+		((NormalAI)m.thinker).pathFollowTo(new Target(player.position), PATHMODE.REPLAN);
+		hasRun = true;
 		return DONE;
 	}
 
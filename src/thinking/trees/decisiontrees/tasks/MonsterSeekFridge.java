@@ -1,12 +1,13 @@
 package thinking.trees.decisiontrees.tasks;
 
+import java.util.LinkedList;
+import java.util.List;
+
 import graphs.Graph;
 import graphs.Translator;
 import model.Monster;
 import model.Target;
-import processing.core.PVector;
 import thinking.NormalAI;
-import thinking.NormalAI.PATHMODE;
 import thinking.trees.decisiontrees.nodes.DecisionTreeNode;
 
 /**
@@ -16,12 +17,12 @@ import thinking.trees.decisiontrees.nodes.DecisionTreeNode;
  */
 public class MonsterSeekFridge extends DecisionTreeNode {
 
-	/** The ID of the vertex where the fridge is at */
-	private static final int FRIDGE = 42;
+	/** The IDs of the vertices where there is food (the monster goes to the closest) */
+	private static final int[] FRIDGES = { 42 };
 	/** The monster we are controlling */
 	private Monster m;
-	/** The vector representing the fridge's location */
-	private PVector fridgeLocation;
+	/** The targets representing where there is food */
+	private List<Target> fridgeLocations = new LinkedList<Target>();
 	/** A flag for whether or not this action has run */
 	public static boolean hasRun = false;
 	
@@ -33,7 +34,8 @@ public class MonsterSeekFridge extends DecisionTreeNode {
 	 */
 	public MonsterSeekFridge(Monster m, Graph g, Translator t){
 		this.m = m;
-		fridgeLocation = t.localize(g.getVertex(FRIDGE));
+		for(int id : FRIDGES)
+			fridgeLocations.add(new Target(t.localize(g.getVertex(id))));
 	}
 
 	/*
@@ -43,7 +45,7 @@ public class MonsterSeekFridge extends DecisionTreeNode {
 	@Override
 	public int evaluateNode() {
 		if(!hasRun){
-			((NormalAI) m.thinker).pathFollowTo(new Target(fridgeLocation), PATHMODE.FORGET);
+			((NormalAI) m.thinker).pathFollowToNearest(fridgeLocations);
 			hasRun = true;
 		}
 		return DONE;
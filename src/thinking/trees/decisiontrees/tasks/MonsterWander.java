@@ -44,7 +44,7 @@ public class MonsterWander extends DecisionTreeNode {
 	 */
 	@Override
 	public int evaluateNode() {
-		if(((NormalAI) m.thinker).getActivePath() == null)
+		if(!((NormalAI) m.thinker).hasPath())
 			((NormalAI) m.thinker).pathFollowTo(new Target(t.localize(g.getVertex(r.nextInt(g.getNumberOfVertices())))), PATHMODE.FORGET);
 		return DONE;
 	}